@@ -1,40 +1,53 @@
 package ch.sbb.matsim.umlego;
 
-import ch.sbb.matsim.routing.pt.raptor.RaptorRoute;
-import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
-import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import ch.sbb.matsim.routing.pt.raptor.InitialStop;
+import ch.sbb.matsim.umlego.config.RoutePostprocessing;
+import ch.sbb.matsim.umlego.config.RouteSearchMode;
 import ch.sbb.matsim.umlego.config.UmlegoParameters;
+import ch.sbb.matsim.umlego.config.UmlegoWriterType;
 import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
 import ch.sbb.matsim.umlego.demand.UnroutableDemand;
 import ch.sbb.matsim.umlego.demand.UnroutableDemandPart;
+import ch.sbb.matsim.umlego.matrix.DemandIndex;
+import ch.sbb.matsim.umlego.matrix.DemandMatrix;
 import ch.sbb.matsim.umlego.matrix.DemandMatrixMultiplier;
 import ch.sbb.matsim.umlego.matrix.Matrices;
+import ch.sbb.matsim.umlego.matrix.ShareMatrix;
 import ch.sbb.matsim.umlego.matrix.TimeWindow;
 import ch.sbb.matsim.umlego.matrix.ZoneNotFoundException;
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import ch.sbb.matsim.umlego.routing.RouteFingerprintSet;
+import ch.sbb.matsim.umlego.routing.RouteSetCache;
+import ch.sbb.matsim.umlego.skims.SkimBlock;
+import ch.sbb.matsim.umlego.skims.UmlegoSkimCalculator;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkItem;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.api.core.v01.TransportMode;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
- * Base class for workers that process work items from a blocking queue. The worker also provides commonly used methods used in the work flows.
+ * Base class for workers that process work items, one at a time. The worker also provides commonly used methods used in the work flows.
  */
-public abstract class AbstractWorker<T extends WorkItem> implements Runnable {
+public abstract class AbstractWorker<T extends WorkItem> {
 
     private static final Logger log = LogManager.getLogger(AbstractWorker.class);
 
-    private final BlockingQueue<T> workerQueue;
+    /**
+     * The stops of a zone without connectors, must not be modified.
+     */
+    private static final BitSet NO_STOPS = new BitSet(0);
 
     protected final UmlegoParameters params;
     protected final List<String> destinationZoneIds;
@@ -42,142 +55,498 @@ public abstract class AbstractWorker<T extends WorkItem> implements Runnable {
     protected final RouteUtilityCalculator utilityCalculator;
     protected final DeltaTCalculator deltaTCalculator;
 
-    protected AbstractWorker(BlockingQueue<T> workerQueue, UmlegoParameters params, List<String> destinationZoneIds, Matrices demand, RouteUtilityCalculator utilityCalculator,
+    /**
+     * The {@link ZonesLookup} index of each entry in {@link #destinationZoneIds}, created on first use.
+     */
+    private int[] destinationZoneIndices;
+
+    /**
+     * Whether the zone with the {@link ZonesLookup} index is a destination zone, created together with {@link #destinationZoneIndices}.
+     */
+    private boolean[] isDestinationZone;
+
+    /**
+     * Reused for the routes of each origin-destination pair.
+     */
+    private final RouteCharacteristics routeCharacteristics = new RouteCharacteristics();
+
+    /**
+     * Reused for the candidate routes of each origin-destination pair.
+     */
+    private final RouteHandles routeHandles = new RouteHandles();
+
+    /**
+     * Reused for the preselection of each origin-destination pair, by both the staged and the fused postprocessing.
+     */
+    private final RoutePreselection routePreselection;
+
+    /**
+     * Distributes the demand of each time window over the routes.
+     */
+    private final RouteShares routeShares;
+
+    /**
+     * Reused for the routes of each origin-destination pair during the sweep over its time windows, with their departure time from the origin zone.
+     */
+    private FoundRoute[] sweepRoutes = new FoundRoute[16];
+    private double[] sweepDepartures = new double[16];
+
+    /**
+     * The share matrices to split the demand of each route into segments, empty if no segment is written.
+     */
+    private final List<ShareMatrix> segmentShares;
+    private final double[] odSegmentShares;
+
+    private static final Comparator<FoundRoute> BY_DEPARTURE_FROM_ORIGIN = Comparator.comparingDouble(AbstractWorker::departureFromOrigin);
+
+    protected AbstractWorker(UmlegoParameters params, List<String> destinationZoneIds, Matrices demand, RouteUtilityCalculator utilityCalculator,
         DeltaTCalculator deltaTCalculator) {
-        this.workerQueue = workerQueue;
         this.params = params;
         this.destinationZoneIds = destinationZoneIds;
         this.demand = demand;
         this.utilityCalculator = utilityCalculator;
         this.deltaTCalculator = deltaTCalculator;
+        this.routePreselection = new RoutePreselection(params.preselection());
+        this.routeShares = new RouteShares(params.impedance(), utilityCalculator, deltaTCalculator, params.routeSelection().shares(),
+            params.routeSelection().shareTolerance());
+        this.segmentShares = params.writer().writerTypes().contains(UmlegoWriterType.SegmentBLP) ? demand.getShareMatrices() : List.of();
+        this.odSegmentShares = new double[this.segmentShares.size()];
     }
 
-    @Override
-    public final void run() {
-        while (true) {
-            T item = null;
-            try {
-                item = this.workerQueue.take();
-                if (item.originZone() == null) {
-                    return;
+    /**
+     * Processes the work item and completes all its results.
+     */
+    abstract protected void processOriginZone(T item);
+
+    private int[] getDestinationZoneIndices() {
+        if (this.destinationZoneIndices == null) {
+            ZonesLookup zonesLookup = this.demand.getZonesLookup();
+            int[] indices = new int[this.destinationZoneIds.size()];
+            boolean[] isDestination = new boolean[zonesLookup.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = zonesLookup.getIndex(this.destinationZoneIds.get(i));
+                isDestination[indices[i]] = true;
+            }
+            this.isDestinationZone = isDestination;
+            this.destinationZoneIndices = indices;
+        }
+        return this.destinationZoneIndices;
+    }
+
+    private boolean[] getDestinationZoneMask() {
+        getDestinationZoneIndices();
+        return this.isDestinationZone;
+    }
+
+    protected final ZoneRoutes calculateRoutesForZone(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
+        return aggregateOnZoneLevel(ctx, originZone, searchRoutes(ctx, originZone), false);
+    }
+
+    /**
+     * Finds the routes from the origin zone to all destination zones and prepares them for assigning the demand, with the same result as
+     * {@link #calculateRoutesForZone(RoutingContext, String)} followed by {@link #processRoutes(ZoneRoutes)}. With {@link RoutePostprocessing#FUSED}, the
+     * routes of each destination are filtered as {@link RouteHandles} and a {@link FoundRoute} is only created for the routes that are kept.
+     */
+    protected final ZoneRoutes findRoutesForZone(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
+        ZoneRoutes foundRoutes;
+        if (this.params.routing().postprocessing() == RoutePostprocessing.FUSED) {
+            foundRoutes = aggregateOnZoneLevel(ctx, originZone, searchRoutes(ctx, originZone), true);
+        } else {
+            foundRoutes = calculateRoutesForZone(ctx, originZone);
+            processRoutes(foundRoutes);
+        }
+        if (ctx.routeCache() == null) {
+            compactRoutes(ctx.routeArena(), foundRoutes);
+        }
+        return foundRoutes;
+    }
+
+    /**
+     * Moves the legs of the kept routes into one chunk of exactly the required size. The chunks of the arena are shared by all routes a thread finds, so
+     * without moving, a single kept route would keep the legs of all dropped routes in its chunk alive as long as the result of the work item. Cached routes
+     * are not moved, the cache keeps their chunks alive anyway and other workers may read them at the same time.
+     */
+    private static void compactRoutes(RouteArena arena, ZoneRoutes foundRoutes) {
+        // routes between the same stops are shared by all zones connected to these stops
+        Set<Stop2StopRoute> routes = Collections.newSetFromMap(new IdentityHashMap<>());
+        int legCount = 0;
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            List<FoundRoute> routesToDestination = foundRoutes.get(i);
+            if (routesToDestination != null) {
+                for (FoundRoute route : routesToDestination) {
+                    if (routes.add(route.stop2stopRoute)) {
+                        legCount += route.stop2stopRoute.legCount();
+                    }
                 }
-                processOriginZone(item);
-            } catch (InterruptedException | ZoneNotFoundException e) {
-                throw new RuntimeException(e);
+            }
+        }
+        if (legCount > 0) {
+            RouteArena.Chunk chunk = arena.compactChunk(legCount);
+            for (Stop2StopRoute route : routes) {
+                route.moveTo(chunk);
             }
         }
     }
 
-    abstract protected void processOriginZone(T item);
+    private StopRoutes searchRoutes(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
+        BitSet activeDestinationStops = getActiveDestinationStops(ctx, originZone);
+        // without the selection limit, every route of the day is a candidate for every time window, so the search must cover the whole day
+        boolean limitRange = this.params.routing().limitToDemandWindows() && this.params.routeSelection().limitSelectionToTimewindow();
+        DepartureRange range = limitRange ? getDemandDepartureRange(originZone) : DepartureRange.WHOLE_DAY;
+        StopRoutes foundRoutes = new StopRoutes(this.params.routing().pruneDominatedRoutes() && RouteFrontier.canPrune(this.params.search()));
+        List<Connectors.ConnectedStop> originStops = ctx.stopsPerZone().getOrDefault(originZone, Collections.emptyList());
+        if (!range.isEmpty()) {
+            if (this.params.routing().searchMode() == RouteSearchMode.ZONE && originStops.size() > 1) {
+                searchRoutesFromZone(ctx, originStops, range, activeDestinationStops, foundRoutes);
+            } else {
+                for (Connectors.ConnectedStop stop : originStops) {
+                    calcRoutesFromStop(ctx, stop.stopFacility(), range.atStop(stop.walkTime()), activeDestinationStops, foundRoutes);
+                }
+            }
+        }
+        return foundRoutes;
+    }
+
+    /**
+     * Range of departure times in seconds, either from the origin zone or, after {@link #atStop(double)}, from an origin stop.
+     */
+    private record DepartureRange(double earliest, double latest) {
 
-    protected final Map<String, List<FoundRoute>> calculateRoutesForZone(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
-        IntSet activeDestinationStopIndices = getActiveDestinationStopIndices(ctx, originZone);
-        Map<TransitStopFacility, Map<TransitStopFacility, Map<Stop2StopRoute, Boolean>>> foundRoutes = new HashMap<>();
-        for (Connectors.ConnectedStop stop : ctx.stopsPerZone().getOrDefault(originZone, Collections.emptyList())) {
-            calcRoutesFromStop(ctx, stop.stopFacility(), activeDestinationStopIndices, foundRoutes);
+        static final DepartureRange WHOLE_DAY = new DepartureRange(0, Double.POSITIVE_INFINITY);
+
+        boolean isEmpty() {
+            return this.earliest > this.latest;
+        }
+
+        boolean contains(double departureTime) {
+            return departureTime >= this.earliest && departureTime <= this.latest;
+        }
+
+        /**
+         * Shifts the range by the access walk time, as routes leave the stop after walking there from the zone.
+         */
+        DepartureRange atStop(double walkTime) {
+            if (this == WHOLE_DAY) {
+                return this;
+            }
+            return new DepartureRange(this.earliest + walkTime, this.latest + walkTime);
         }
-        return aggregateOnZoneLevel(ctx, originZone, foundRoutes);
     }
 
-    private IntSet getActiveDestinationStopIndices(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
-        List<Connectors.ConnectedStop> emptyList = Collections.emptyList();
-        IntSet destinationStopIndices = new IntOpenHashSet();
+    /**
+     * Returns the departure times from the origin zone that can be selected for any time window with demand, using the same bounds as the route selection.
+     */
+    private DepartureRange getDemandDepartureRange(String originZone) throws ZoneNotFoundException {
+        int originIndex = this.demand.getZonesLookup().getIndex(originZone);
+        boolean[] isDestination = getDestinationZoneMask();
+        List<DemandMatrix> matrices = this.demand.getDemandMatrices();
+        DemandIndex.OriginDemand originDemand = this.demand.getDemandIndex().origin(originIndex);
+        double earliest = Double.POSITIVE_INFINITY;
+        double latest = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < originDemand.size(); k++) {
+            int destinationIndex = originDemand.destination(k);
+            if (destinationIndex == originIndex || !isDestination[destinationIndex]) {
+                continue;
+            }
+            // windows are ordered by time, so only the first and the last one can widen the range
+            TimeWindow first = matrices.get(originDemand.window(originDemand.windowsStart(k))).getTimeWindow();
+            TimeWindow last = matrices.get(originDemand.window(originDemand.windowsEnd(k) - 1)).getTimeWindow();
+            earliest = Math.min(earliest, first.startTimeInclusiveMin() * 60.0);
+            latest = Math.max(latest, last.endTimeExclusiveMin() * 60.0);
+        }
+        if (earliest > latest) {
+            return new DepartureRange(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        }
+        return new DepartureRange(earliest - this.params.routeSelection().beforeTimewindow(), latest + this.params.routeSelection().afterTimewindow());
+    }
 
-        for (String destinationZone : this.destinationZoneIds) {
+    /**
+     * Returns the stops of all destination zones with demand from the origin zone, as bits indexed by the stop {@code Id.index()}.
+     */
+    private BitSet getActiveDestinationStops(RoutingContext ctx, String originZone) throws ZoneNotFoundException {
+        BitSet destinationStops = new BitSet();
+        ZonesLookup zonesLookup = this.demand.getZonesLookup();
+        int originIndex = zonesLookup.getIndex(originZone);
+        boolean[] isDestination = getDestinationZoneMask();
+        DemandIndex.OriginDemand originDemand = this.demand.getDemandIndex().origin(originIndex);
+
+        for (int k = 0; k < originDemand.size(); k++) {
+            int destinationIndex = originDemand.destination(k);
             // exclude intrazonal demand
-            if (!destinationZone.equals(originZone)) {
-                for (TimeWindow timeWindow : this.demand.getTimeWindows()) {
-                    double value = this.demand.getMatrixValue(originZone, destinationZone, timeWindow);
-                    if (value > 0) {
-                        List<TransitStopFacility> stops = ctx.stopsPerZone().getOrDefault(destinationZone, emptyList).stream().map(stop -> stop.stopFacility()).toList();
-                        for (TransitStopFacility stop : stops) {
-                            destinationStopIndices.add(stop.getId().index());
-                        }
-                        break;
-                    }
+            if (destinationIndex != originIndex && isDestination[destinationIndex]) {
+                BitSet zoneStops = ctx.stopSetPerZone().get(zonesLookup.getZoneNo(destinationIndex));
+                if (zoneStops != null) {
+                    destinationStops.or(zoneStops);
                 }
             }
         }
-        return destinationStopIndices;
+        return destinationStops;
+    }
+
+    private void calcRoutesFromStop(RoutingContext ctx, TransitStopFacility originStop, DepartureRange range, BitSet destinationStops, StopRoutes foundRoutes) {
+        RouteSetCache cache = ctx.routeCache();
+        if (cache == null) {
+            searchRoutesFromStop(ctx, originStop, range, destinationStops, route -> {
+                if (isWithinLimits(route, range)) {
+                    foundRoutes.add(route);
+                }
+            });
+            return;
+        }
+
+        List<Stop2StopRoute> routes = cache.load(originStop);
+        if (routes == null) {
+            // the cached route set must not depend on the demand of the current zone, so search routes to all destination stops
+            RouteFingerprintSet uniqueRoutes = new RouteFingerprintSet();
+            List<Stop2StopRoute> allRoutes = new ArrayList<>();
+            BitSet cacheDestinationStops = new BitSet();
+            for (int index : cache.destinationStopIndices().toIntArray()) {
+                cacheDestinationStops.set(index);
+            }
+            searchRoutesFromStop(ctx, originStop, DepartureRange.WHOLE_DAY, cacheDestinationStops, route -> {
+                if (uniqueRoutes.add(route)) {
+                    allRoutes.add(route);
+                }
+            });
+            routes = allRoutes;
+            cache.store(originStop, routes);
+        }
+        for (Stop2StopRoute route : routes) {
+            if (destinationStops.get(route.destinationStop.getId().index()) && isWithinLimits(route, range)) {
+                foundRoutes.add(route);
+            }
+        }
+    }
+
+    private boolean isWithinLimits(Stop2StopRoute route, DepartureRange range) {
+        if (range != DepartureRange.WHOLE_DAY && !range.contains(route.depTime)) {
+            return false;
+        }
+        return !this.params.routing().limitJourneyDuration() || route.arrTime - route.depTime <= this.params.routing().maxJourneyDuration();
+    }
+
+    /**
+     * Searches the routes from all stops of the origin zone with one profile search. Each stop is seeded with the walk time of its connector, so the departure times
+     * of the search are departure times from the zone. The access walk is not part of the found routes.
+     * <p>
+     * The raptor only keeps the best routes to each stop over all seeded stops, rated with its own walk utility instead of the access weights of the
+     * perceived journey time. A route from one connected stop is therefore dropped if a route from another connected stop is better for the raptor, while the
+     * search per stop would return it. The route set differs from {@link RouteSearchMode#STOP}, it is not only found faster.
+     */
+    private void searchRoutesFromZone(RoutingContext ctx, List<Connectors.ConnectedStop> originStops, DepartureRange range, BitSet destinationStops,
+        StopRoutes foundRoutes) {
+        double walkCostPerSecond = -ctx.raptorParams().getMarginalUtilityOfTravelTime_utl_s(TransportMode.walk);
+        List<InitialStop> initialStops = new ArrayList<>(originStops.size());
+        Map<TransitStopFacility, Connectors.ConnectedStop> originStopLookup = new HashMap<>();
+        for (Connectors.ConnectedStop stop : originStops) {
+            initialStops.add(new InitialStop(stop.stopFacility(), stop.walkTime() * walkCostPerSecond, stop.walkTime(), 0, TransportMode.walk));
+            originStopLookup.put(stop.stopFacility(), stop);
+        }
+
+        ctx.raptorParams().setMaxTransfers(this.params.maxTransfers());
+        ctx.raptor().calcTreesObservable(
+            initialStops,
+            Math.max(0, range.earliest()),
+            range.latest(),
+            ctx.raptorParams(),
+            null,
+            (departureTime, arrivalStop, arrivalTime, transferCount, route) -> {
+                if (destinationStops.get(arrivalStop.getId().index())) {
+                    Stop2StopRoute stop2stopRoute = new Stop2StopRoute(ctx.routeArena(), route.get());
+                    // routes boarding at a stop outside the zone are dropped when aggregating on zone level
+                    Connectors.ConnectedStop originStop = originStopLookup.get(stop2stopRoute.originStop);
+                    if (originStop != null && isWithinLimits(stop2stopRoute, range.atStop(originStop.walkTime()))) {
+                        foundRoutes.add(stop2stopRoute);
+                    }
+                }
+            });
     }
 
-    private void calcRoutesFromStop(RoutingContext ctx, TransitStopFacility originStop, IntSet destinationStopIndices,
-        Map<TransitStopFacility, Map<TransitStopFacility, Map<Stop2StopRoute, Boolean>>> foundRoutes) {
+    private void searchRoutesFromStop(RoutingContext ctx, TransitStopFacility originStop, DepartureRange range, BitSet destinationStops,
+        Consumer<Stop2StopRoute> consumer) {
         ctx.raptorParams().setMaxTransfers(this.params.maxTransfers());
         ctx.raptor().calcTreesObservable(
             originStop,
-            0,
-            Double.POSITIVE_INFINITY,
+            Math.max(0, range.earliest()),
+            range.latest(),
             ctx.raptorParams(),
             null,
             (departureTime, arrivalStop, arrivalTime, transferCount, route) -> {
-                if (destinationStopIndices.contains(arrivalStop.getId().index())) {
-                    Stop2StopRoute stop2stopRoute = new Stop2StopRoute(route.get());
+                if (destinationStops.get(arrivalStop.getId().index())) {
+                    Stop2StopRoute stop2stopRoute = new Stop2StopRoute(ctx.routeArena(), route.get());
                     if (stop2stopRoute.originStop != null) {
-                        foundRoutes
-                            .computeIfAbsent(stop2stopRoute.originStop, stop -> new HashMap<>())
-                            .computeIfAbsent(stop2stopRoute.destinationStop, stop -> new HashMap<>())
-                            .put(stop2stopRoute, Boolean.TRUE);
+                        consumer.accept(stop2stopRoute);
                     }
                 }
             });
     }
 
     /**
-     * Creates a Map containing for each destination zone id the List of found routes, leading from the originZoneId to the destination, over the whole day.
+     * The unique routes found from the stops of an origin zone, grouped by origin and destination stop.
      */
-    private Map<String, List<FoundRoute>> aggregateOnZoneLevel(RoutingContext ctx, String originZoneId,
-        Map<TransitStopFacility, Map<TransitStopFacility, Map<Stop2StopRoute, Boolean>>> foundRoutesPerStop) {
-        List<Connectors.ConnectedStop> emptyList = Collections.emptyList();
-        Map<String, List<FoundRoute>> foundRoutesPerZone = new HashMap<>();
+    private static final class StopRoutes {
 
-        List<Connectors.ConnectedStop> stopsPerOriginZone = ctx.stopsPerZone().getOrDefault(originZoneId, emptyList);
-        Map<TransitStopFacility, Connectors.ConnectedStop> originStopLookup = new HashMap<>();
-        for (Connectors.ConnectedStop stop : stopsPerOriginZone) {
-            originStopLookup.put(stop.stopFacility(), stop);
+        private final boolean prune;
+        private final RouteFingerprintSet uniqueRoutes = new RouteFingerprintSet();
+        private final Map<TransitStopFacility, Map<TransitStopFacility, RouteFrontier>> routesPerStop = new HashMap<>();
+
+        /**
+         * @param prune whether routes that are dominated by another route between the same stops are dropped while adding
+         */
+        StopRoutes(boolean prune) {
+            this.prune = prune;
         }
 
-        for (String destinationZoneId : destinationZoneIds) {
-            Map<TransitStopFacility, Connectors.ConnectedStop> destinationStopLookup = ctx.stopLookupPerDestination().get(destinationZoneId);
-            List<FoundRoute> allRoutesFromTo = new ArrayList<>();
-            for (Connectors.ConnectedStop originStop : stopsPerOriginZone) {
-                Map<TransitStopFacility, Map<Stop2StopRoute, Boolean>> routesPerDestinationStop = foundRoutesPerStop.get(originStop.stopFacility());
+        void add(Stop2StopRoute route) {
+            if (this.uniqueRoutes.add(route)) {
+                this.routesPerStop
+                    .computeIfAbsent(route.originStop, stop -> new HashMap<>())
+                    .computeIfAbsent(route.destinationStop, stop -> new RouteFrontier(this.prune))
+                    .add(route);
+            }
+        }
+    }
+
+    /**
+     * Creates for each destination zone the List of found routes, leading from the originZoneId to the destination, over the whole day.
+     *
+     * @param process whether the routes are post-processed per destination before they are created, see {@link #processRoutes(List)}
+     */
+    private ZoneRoutes aggregateOnZoneLevel(RoutingContext ctx, String originZoneId, StopRoutes foundRoutes, boolean process) {
+        List<Connectors.ConnectedStop> emptyList = Collections.emptyList();
+        ZoneRoutes foundRoutesPerZone = new ZoneRoutes(this.demand.getZonesLookup());
+        int[] destinationIndices = getDestinationZoneIndices();
+
+        List<Connectors.ConnectedStop> stopsPerOriginZone = ctx.stopsPerZone().getOrDefault(originZoneId, emptyList);
+        BitSet originZoneStops = ctx.stopSetPerZone().getOrDefault(originZoneId, NO_STOPS);
+
+        RouteHandles candidates = this.routeHandles;
+        for (int d = 0; d < destinationIndices.length; d++) {
+            String destinationZoneId = this.destinationZoneIds.get(d);
+            BitSet destinationZoneStops = ctx.stopSetPerZone().getOrDefault(destinationZoneId, NO_STOPS);
+            List<Connectors.ConnectedStop> stopsPerDestinationZone = ctx.stopsPerZone().getOrDefault(destinationZoneId, emptyList);
+            candidates.clear();
+            for (int o = 0; o < stopsPerOriginZone.size(); o++) {
+                Connectors.ConnectedStop originStop = stopsPerOriginZone.get(o);
+                Map<TransitStopFacility, RouteFrontier> routesPerDestinationStop = foundRoutes.routesPerStop.get(originStop.stopFacility());
                 if (routesPerDestinationStop != null) {
-                    for (Connectors.ConnectedStop destinationStop : ctx.stopsPerZone().getOrDefault(destinationZoneId, emptyList)) {
-                        Map<Stop2StopRoute, Boolean> routesPerOriginDestinationStop = routesPerDestinationStop.get(destinationStop.stopFacility());
+                    for (int s = 0; s < stopsPerDestinationZone.size(); s++) {
+                        Connectors.ConnectedStop destinationStop = stopsPerDestinationZone.get(s);
+                        RouteFrontier routesPerOriginDestinationStop = routesPerDestinationStop.get(destinationStop.stopFacility());
                         if (routesPerOriginDestinationStop != null) {
-                            for (Stop2StopRoute route : routesPerOriginDestinationStop.keySet()) {
-                                Connectors.ConnectedStop originConnectedStop = originStopLookup.get(route.originStop);
-                                Connectors.ConnectedStop destinationConnectedStop = destinationStopLookup.get(route.destinationStop);
-
+                            for (Stop2StopRoute route : routesPerOriginDestinationStop.routes()) {
                                 boolean invalidRoute =
-                                    UmlegoRouteUtils.routeStartsWithTransferWithinSameZone(route, originStopLookup.keySet())
-                                        || UmlegoRouteUtils.routeEndsWithTransferWithinSameZone(route, destinationStopLookup.keySet());
+                                    UmlegoRouteUtils.routeStartsWithTransferWithinSameZone(route, originZoneStops)
+                                        || UmlegoRouteUtils.routeEndsWithTransferWithinSameZone(route, destinationZoneStops);
 
-                                if (originConnectedStop != null && destinationConnectedStop != null && !invalidRoute) {
+                                if (!invalidRoute) {
                                     // otherwise the route would not be valid, e.g. due to an additional transfer at the start or end
-                                    FoundRoute foundRoute = new FoundRoute(route, originConnectedStop, destinationConnectedStop);
-                                    allRoutesFromTo.add(foundRoute);
+                                    candidates.add(route, o, s, route.travelTimeWithoutAccess + originStop.walkTime() + destinationStop.walkTime());
                                 }
                             }
                         }
                     }
                 }
             }
-            foundRoutesPerZone.put(destinationZoneId, allRoutesFromTo);
+            if (process) {
+                filterRoutes(candidates, stopsPerOriginZone, stopsPerDestinationZone);
+            }
+            List<FoundRoute> allRoutesFromTo = new ArrayList<>(candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                long handle = candidates.handle(i);
+                FoundRoute foundRoute = new FoundRoute(candidates.route(handle), stopsPerOriginZone.get(RouteHandles.originConnector(handle)),
+                    stopsPerDestinationZone.get(RouteHandles.destinationConnector(handle)));
+                if (process) {
+                    foundRoute.perceivedJourneyTimeMin = this.routeCharacteristics.perceivedJourneyTimeMin(RouteHandles.routeIndex(handle));
+                    foundRoute.searchImpedance = this.routeCharacteristics.searchImpedance(RouteHandles.routeIndex(handle));
+                }
+                allRoutesFromTo.add(foundRoute);
+            }
+            if (process) {
+                UmlegoRouteUtils.calculateOriginality(allRoutesFromTo);
+                UmlegoRouteUtils.orderDominanceSortedByDepartureTime(allRoutesFromTo);
+            }
+            foundRoutesPerZone.set(destinationIndices[d], allRoutesFromTo);
         }
+        candidates.clear();
         return foundRoutesPerZone;
     }
 
-    protected final void calculateOriginality(Map<String, List<FoundRoute>> foundRoutes) {
-        for (List<FoundRoute> routes : foundRoutes.values()) {
-            UmlegoRouteUtils.calculateOriginality(routes);
+    /**
+     * Calculates the route characteristics, removes dominated routes and applies the preselection on the candidates, like {@link #processRoutes(List)} before
+     * the originality.
+     */
+    private void filterRoutes(RouteHandles candidates, List<Connectors.ConnectedStop> originStops, List<Connectors.ConnectedStop> destinationStops) {
+        if (candidates.size() == 0) {
+            return;
+        }
+        RouteCharacteristics characteristics = this.routeCharacteristics;
+        characteristics.clear();
+        // nothing is removed yet, so the candidates are in the order of their route index
+        for (int i = 0; i < candidates.size(); i++) {
+            long handle = candidates.handle(i);
+            collectRouteCharacteristics(candidates.route(handle), originStops.get(RouteHandles.originConnector(handle)).walkTime(),
+                destinationStops.get(RouteHandles.destinationConnector(handle)).walkTime(), characteristics);
+        }
+        characteristics.evaluate(this.params.pjt(), this.params.search());
+        UmlegoRouteUtils.removeDominatedRoutes(candidates, characteristics);
+
+        RoutePreselection preselection = this.routePreselection;
+        preselection.clear();
+        for (int i = 0; i < candidates.size(); i++) {
+            long handle = candidates.handle(i);
+            preselection.add(candidates.route(handle).transfers, characteristics.searchImpedance(RouteHandles.routeIndex(handle)),
+                candidates.travelTimeWithAccess(handle));
         }
+        candidates.removeIf(handle -> preselection.isRejected(candidates.route(handle).transfers,
+            characteristics.searchImpedance(RouteHandles.routeIndex(handle)), candidates.travelTimeWithAccess(handle)));
     }
 
-    protected final void filterRoutes(Map<String, List<FoundRoute>> foundRoutes) {
-        for (List<FoundRoute> routes : foundRoutes.values()) {
-            filterRoutes(routes);
+    /**
+     * Calculates the route characteristics, removes dominated routes, applies the preselection and calculates the originality of the found routes, either
+     * step by step for all destinations or all steps per destination, see {@link RoutePostprocessing}.
+     */
+    protected final void processRoutes(ZoneRoutes foundRoutes) {
+        if (this.params.routing().postprocessing() == RoutePostprocessing.FUSED) {
+            for (int i = 0; i < foundRoutes.size(); i++) {
+                List<FoundRoute> routes = foundRoutes.get(i);
+                if (routes != null) {
+                    processRoutes(routes);
+                }
+            }
+        } else {
+            calculateRouteCharacteristics(foundRoutes);
+            filterRoutes(foundRoutes);
+            calculateOriginality(foundRoutes);
+        }
+    }
+
+    /**
+     * All post-processing steps for the routes to one destination. Only {@link UmlegoRouteUtils#removeDominatedRoutes(List)} sorts, the other steps are
+     * linear passes and leave the routes ordered by departure time.
+     */
+    private void processRoutes(List<FoundRoute> routes) {
+        calculateRouteCharacteristics(routes);
+        filterRoutes(routes);
+        UmlegoRouteUtils.calculateOriginality(routes);
+        UmlegoRouteUtils.orderDominanceSortedByDepartureTime(routes);
+    }
+
+    protected final void calculateOriginality(ZoneRoutes foundRoutes) {
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            List<FoundRoute> routes = foundRoutes.get(i);
+            if (routes != null) {
+                UmlegoRouteUtils.calculateOriginality(routes);
+            }
+        }
+    }
+
+    protected final void filterRoutes(ZoneRoutes foundRoutes) {
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            List<FoundRoute> routes = foundRoutes.get(i);
+            if (routes != null) {
+                filterRoutes(routes);
+            }
         }
     }
 
@@ -187,206 +556,260 @@ public abstract class AbstractWorker<T extends WorkItem> implements Runnable {
     }
 
     protected final void preselectRoute(List<FoundRoute> routes) {
-        int minTransfers = Integer.MAX_VALUE;
-        double minSearchImpedance = Double.POSITIVE_INFINITY;
-        double minTraveltime = Double.POSITIVE_INFINITY;
+        RoutePreselection preselection = this.routePreselection;
+        preselection.clear();
         for (FoundRoute route : routes) {
-            if (route.stop2stopRoute.transfers < minTransfers) {
-                minTransfers = route.stop2stopRoute.transfers;
-            }
-            if (route.searchImpedance < minSearchImpedance) {
-                minSearchImpedance = route.searchImpedance;
-            }
-            if (route.travelTimeWithAccess < minTraveltime) {
-                minTraveltime = route.travelTimeWithAccess;
-            }
+            preselection.add(route.stop2stopRoute.transfers, route.searchImpedance, route.travelTimeWithAccess);
         }
+        // removeIf compacts the list in one pass
+        routes.removeIf(route -> preselection.isRejected(route.stop2stopRoute.transfers, route.searchImpedance, route.travelTimeWithAccess));
+    }
 
-        ListIterator<FoundRoute> it = routes.listIterator();
-        while (it.hasNext()) {
-            FoundRoute route = it.next();
-            if ((route.searchImpedance > (this.params.preselection().betaMinImpedance() * minSearchImpedance + this.params.preselection().constImpedance()))
-                || (route.stop2stopRoute.transfers > (minTransfers + 3) && (route.travelTimeWithAccess > minTraveltime))
-            ) {
-                it.remove();
+    protected final void calculateRouteCharacteristics(ZoneRoutes foundRoutes) {
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            List<FoundRoute> routes = foundRoutes.get(i);
+            if (routes != null) {
+                calculateRouteCharacteristics(routes);
             }
         }
     }
 
-    protected final void calculateRouteCharacteristics(Map<String, List<FoundRoute>> foundRoutes) {
-        for (List<FoundRoute> routes : foundRoutes.values()) {
-            for (FoundRoute route : routes) {
-                calculateRouteCharacteristics(route);
-            }
+    private void calculateRouteCharacteristics(List<FoundRoute> routes) {
+        if (routes.isEmpty()) {
+            return;
+        }
+        RouteCharacteristics characteristics = this.routeCharacteristics;
+        characteristics.clear();
+        for (FoundRoute route : routes) {
+            collectRouteCharacteristics(route.stop2stopRoute, route.originConnectedStop.walkTime(), route.destinationConnectedStop.walkTime(), characteristics);
+        }
+        characteristics.evaluate(this.params.pjt(), this.params.search());
+        for (int r = 0; r < routes.size(); r++) {
+            FoundRoute route = routes.get(r);
+            route.perceivedJourneyTimeMin = characteristics.perceivedJourneyTimeMin(r);
+            route.searchImpedance = characteristics.searchImpedance(r);
         }
     }
 
-    private void calculateRouteCharacteristics(FoundRoute route) {
+    private void collectRouteCharacteristics(Stop2StopRoute s2s, double accessTime, double egressTime, RouteCharacteristics characteristics) {
         double inVehicleTime = 0;
-        double accessTime = route.originConnectedStop.walkTime();
-        double egressTime = route.destinationConnectedStop.walkTime();
         double walkTime = 0;
         double transferWaitTime = 0;
-        double transferCount = route.stop2stopRoute.transfers;
+        double transferCount = s2s.transfers;
 
         boolean hadTransferBefore = false;
         int additionalStopCount = 0;
-        for (RaptorRoute.RoutePart part : route.stop2stopRoute.routeParts) {
-            if (part.line == null) {
+        for (int part = 0; part < s2s.legCount(); part++) {
+            if (s2s.isChained(part)) {
+                continue;
+            }
+            if (s2s.isTransferLeg(part)) {
                 // it is a transfer
-                walkTime += (part.arrivalTime - part.depTime);
+                walkTime += (s2s.legArrivalTime(part) - s2s.legDepTime(part));
                 hadTransferBefore = true;
             } else {
                 if (hadTransferBefore) {
-                    transferWaitTime += (part.vehicleDepTime - part.depTime);
+                    transferWaitTime += (s2s.legVehicleDepTime(part) - s2s.legDepTime(part));
                 }
-                inVehicleTime += (part.getChainedArrivalTime() - part.vehicleDepTime);
+                inVehicleTime += (s2s.legChainedArrivalTime(part) - s2s.legVehicleDepTime(part));
                 hadTransferBefore = false;
-                int startIndex = -1;
-                int endIndex = -1;
-                List<TransitRouteStop> stops = part.route.getStops();
-                for (int i = 0; i < stops.size(); i++) {
-                    TransitRouteStop routeStop = stops.get(i);
-                    if (routeStop.getStopFacility().getId().equals(part.toStop.getId()) && startIndex >= 0) {
-                        endIndex = i;
-                        break;
-                    }
-                    if (routeStop.getStopFacility().getId().equals(part.fromStop.getId())) {
-                        startIndex = i;
-                    }
-                }
-                if (startIndex >= 0 && endIndex >= 0) {
-                    additionalStopCount += (endIndex - startIndex - 1);
+                int intermediateStops = s2s.legIntermediateStopCount(part);
+                if (intermediateStops >= 0) {
+                    additionalStopCount += intermediateStops;
                 }
             }
         }
 
-        double expectedTotalTime = route.stop2stopRoute.routeParts.getLast().getChainedArrivalTime() - route.stop2stopRoute.routeParts.getFirst().vehicleDepTime;
+        double expectedTotalTime = s2s.legArrivalTime(s2s.legCount() - 1) - s2s.legVehicleDepTime(0);
         if ((walkTime + transferWaitTime + inVehicleTime) != expectedTotalTime) {
             double totalTime = walkTime + transferWaitTime + inVehicleTime;
-            log.error("INCONSISTENT TIMES expected total time: {}, got: {} | {}", expectedTotalTime, totalTime, route.stop2stopRoute.getRouteAsString());
+            log.error("INCONSISTENT TIMES expected total time: {}, got: {} | {}", expectedTotalTime, totalTime, s2s.getRouteAsString());
         }
         double totalTravelTime = expectedTotalTime + accessTime + egressTime;
 
-        PerceivedJourneyTimeParameters pjtParams = this.params.pjt();
-        route.perceivedJourneyTimeMin = pjtParams.betaInVehicleTime() * (inVehicleTime / 60.0)
-            + pjtParams.betaAccessTime() * (accessTime / 60.0)
-            + pjtParams.betaEgressTime() * (egressTime / 60.0)
-            + pjtParams.betaWalkTime() * (walkTime / 60.0)
-            + pjtParams.betaTransferWaitTime() * (transferWaitTime / 60.0)
-            + transferCount * (pjtParams.transferFix() + pjtParams.transferTraveltimeFactor() * (totalTravelTime / 60.0))
-            + (pjtParams.secondsPerAdditionalStop() / 60.0) * additionalStopCount;
-
-        SearchImpedanceParameters searchParams = this.params.search();
-        route.searchImpedance =
-            searchParams.betaInVehicleTime() * (inVehicleTime / 60.0)
-                + searchParams.betaAccessTime() * (accessTime / 60.0)
-                + searchParams.betaEgressTime() * (egressTime / 60.0)
-                + searchParams.betaWalkTime() * (walkTime / 60.0)
-                + searchParams.betaTransferWaitTime() * (transferWaitTime / 60.0)
-                + searchParams.betaTransferCount() * transferCount;
-    }
-
-    protected final UmlegoWorkResult assignDemand(String originZone, Map<String, List<FoundRoute>> foundRoutes,
+        characteristics.add(inVehicleTime, accessTime, egressTime, walkTime, transferWaitTime, transferCount, totalTravelTime, additionalStopCount);
+    }
+
+    /**
+     * Assigns the demand of the time windows within the interval, which is also the skim interval, so the skims can be calculated from the result
+     * afterwards.
+     */
+    protected final UmlegoWorkResult assignDemand(String originZone, ZoneRoutes foundRoutes,
         int startIntervalMinutes, int endIntervalMinutes, DemandMatrixMultiplier multiplier) throws ZoneNotFoundException {
+        return assignDemand(originZone, foundRoutes, startIntervalMinutes, endIntervalMinutes, multiplier, startIntervalMinutes, endIntervalMinutes);
+    }
+
+    /**
+     * Assigns the demand of the whole day and calculates the skims from the demand of the time windows within the skim interval. Both are accumulated in
+     * the same sweep over the time windows, so the shares of each time window are only calculated once.
+     */
+    protected final UmlegoWorkResult assignDemand(String originZone, ZoneRoutes foundRoutes) throws ZoneNotFoundException {
+        UmlegoWorkResult result = assignDemand(originZone, foundRoutes, Integer.MIN_VALUE, Integer.MAX_VALUE, DemandMatrixMultiplier.IDENTITY,
+            this.params.skims().startTimeMinute(), this.params.skims().endTimeMinute());
+        UmlegoSkimCalculator.INSTANCE.calculateSkims(result, result.skims());
+        return result;
+    }
+
+    private UmlegoWorkResult assignDemand(String originZone, ZoneRoutes foundRoutes, int startIntervalMinutes, int endIntervalMinutes,
+        DemandMatrixMultiplier multiplier, int startSkimMinutes, int endSkimMinutes) throws ZoneNotFoundException {
 
         UmlegoRouteUtils.sortRoutesByDepartureTime(foundRoutes);
         UnroutableDemand unroutableDemand = new UnroutableDemand();
-
-        for (String destinationZone : this.destinationZoneIds) {
-            var routes = foundRoutes.get(destinationZone);
+        ZonesLookup zonesLookup = this.demand.getZonesLookup();
+        int originIndex = zonesLookup.getIndex(originZone);
+        boolean[] isDestination = getDestinationZoneMask();
+        List<DemandMatrix> matrices = this.demand.getDemandMatrices();
+        DemandIndex.OriginDemand originDemand = this.demand.getDemandIndex().origin(originIndex);
+
+        for (int k = 0; k < originDemand.size(); k++) {
+            int destinationIndex = originDemand.destination(k);
+            if (!isDestination[destinationIndex]) {
+                continue;
+            }
+            String destinationZone = zonesLookup.getZoneNo(destinationIndex);
+            var routes = foundRoutes.get(destinationIndex);
             if (routes == null || routes.isEmpty()) {
                 double sum = 0;
-                for (TimeWindow timeWindow : this.demand.getTimeWindows()) {
-                    double value = this.demand.getMatrixValue(originZone, destinationZone, timeWindow);
-                    if (value > 0) {
-                        sum += value * multiplier.getFactor(originZone, destinationZone, -1);
-                    }
+                for (int w = originDemand.windowsStart(k); w < originDemand.windowsEnd(k); w++) {
+                    double value = matrices.get(originDemand.window(w)).getValue(originIndex, destinationIndex);
+                    sum += value * multiplier.getFactor(originZone, destinationZone, -1);
                 }
                 if (sum > 0) {
                     unroutableDemand.addPart(new UnroutableDemandPart(originZone, destinationZone, sum));
                 }
             } else {
-                for (TimeWindow timeWindow : this.demand.getTimeWindows()) {
-                    double value = this.demand.getMatrixValue(originZone, destinationZone, timeWindow);
-                    double startTime = timeWindow.startTimeInclusiveMin() * 60.0;
-                    double endTime = timeWindow.endTimeExclusiveMin() * 60.0;
-
-                    if (value > 0 && (startTime >= startIntervalMinutes * 60.0 && endTime < endIntervalMinutes * 60.0)) {
-                        double factor = multiplier.getFactor(originZone, destinationZone, (int) (startTime / 60.0));
-                        assignDemand(originZone, destinationZone, startTime, endTime, value * factor, routes, unroutableDemand);
-                    }
+                sweepDemand(originZone, destinationZone, originIndex, originDemand, k, routes, startIntervalMinutes, endIntervalMinutes, multiplier,
+                    startSkimMinutes, endSkimMinutes, unroutableDemand);
+                if (!this.segmentShares.isEmpty()) {
+                    splitIntoSegments(routes, originIndex, destinationIndex);
                 }
             }
         }
-        return new UmlegoWorkResult(originZone, foundRoutes, new LinkedHashMap<>(), unroutableDemand);
+        SkimBlock skims = new SkimBlock(foundRoutes.zonesLookup(), UmlegoSkimCalculator.INSTANCE.getCalculators().size());
+        return new UmlegoWorkResult(originZone, foundRoutes, skims, unroutableDemand);
     }
 
-    protected final UmlegoWorkResult assignDemand(String originZone, Map<String, List<FoundRoute>> foundRoutes) throws ZoneNotFoundException {
-        return assignDemand(originZone, foundRoutes, Integer.MIN_VALUE, Integer.MAX_VALUE, DemandMatrixMultiplier.IDENTITY);
-    }
-
-    private void assignDemand(String originZone, String destinationZone, double startTime, double endTime, double odDemand, List<FoundRoute> routes, UnroutableDemand unroutableDemand) {
-        FoundRoute[] potentialRoutes;
+    /**
+     * Assigns the demand of all time windows of one origin-destination pair in a single sweep over the day. With the selection limited to the time window, the
+     * routes are ordered by their departure from the origin zone once, and the candidates of each window are the range of them found by binary search in the
+     * departure times. The demand of the time windows within the skim interval is added to the skim demand of the routes as well.
+     */
+    private void sweepDemand(String originZone, String destinationZone, int originIndex, DemandIndex.OriginDemand originDemand, int k, List<FoundRoute> routes,
+        int startIntervalMinutes, int endIntervalMinutes, DemandMatrixMultiplier multiplier, int startSkimMinutes, int endSkimMinutes,
+        UnroutableDemand unroutableDemand) {
+        int destinationIndex = originDemand.destination(k);
+        List<DemandMatrix> matrices = this.demand.getDemandMatrices();
         boolean limit = this.params.routeSelection().limitSelectionToTimewindow();
-        if (limit) {
-            double earliestDeparture = startTime - this.params.routeSelection().beforeTimewindow();
-            double latestDeparture = endTime + this.params.routeSelection().afterTimewindow();
-            potentialRoutes = routes.stream().filter(route -> ((route.stop2stopRoute.depTime - route.originConnectedStop.walkTime()) >= earliestDeparture)
-                && ((route.stop2stopRoute.depTime - route.originConnectedStop.walkTime() <= latestDeparture))).toList().toArray(new FoundRoute[0]);
-        } else {
-            potentialRoutes = routes.toArray(new FoundRoute[0]);
+        int count = routes.size();
+        if (this.sweepRoutes.length < count) {
+            int capacity = Math.max(count, 2 * this.sweepRoutes.length);
+            this.sweepRoutes = new FoundRoute[capacity];
+            this.sweepDepartures = new double[capacity];
         }
-        if (potentialRoutes.length == 0) {
-            unroutableDemand.addPart(new UnroutableDemandPart(originZone, destinationZone, odDemand));
-            return;
+        FoundRoute[] candidates = routes.toArray(this.sweepRoutes);
+        double[] departures = this.sweepDepartures;
+        if (limit) {
+            // the routes are sorted by the departure at the first stop, which mostly is the order of the departure from the zone as well
+            boolean sorted = true;
+            for (int i = 0; i < count; i++) {
+                departures[i] = departureFromOrigin(candidates[i]);
+                sorted &= i == 0 || departures[i - 1] <= departures[i];
+            }
+            if (!sorted) {
+                Arrays.sort(candidates, 0, count, BY_DEPARTURE_FROM_ORIGIN);
+                for (int i = 0; i < count; i++) {
+                    departures[i] = departureFromOrigin(candidates[i]);
+                }
+            }
         }
-        double timeWindow = endTime - startTime;
-        double stepSize = 60.0; // sample every minute
-        int samples = (int) (timeWindow / stepSize);
-        double sharePerSample = 1.0 / ((double) samples);
-        double[] impedances = new double[potentialRoutes.length];
-        double[] deltas = new double[potentialRoutes.length];
-        double minImpedance = Double.POSITIVE_INFINITY;
-        double[] routeUtilities = new double[potentialRoutes.length];
-        double betaPJT = this.params.impedance().betaPerceivedJourneyTime();
-        double betaDeltaTEarly = this.params.impedance().betaDeltaTEarly();
-        double betaDeltaTLate = this.params.impedance().betaDeltaTLate();
-
-        for (int sample = 0; sample < samples; sample++) {
-            double time = startTime + sample * stepSize;
-            double utilitiesSum = 0;
-            for (int i = 0; i < potentialRoutes.length; i++) {
-                FoundRoute route = potentialRoutes[i];
-                double routeDepTime = route.stop2stopRoute.depTime - route.originConnectedStop.walkTime();
-
-                double deltaTEarly = this.deltaTCalculator.calculateDeltaTEarly(routeDepTime, time, time + stepSize);
-                double deltaTLate = this.deltaTCalculator.calculateDeltaTLate(routeDepTime, time, time + stepSize);
-
-                // one of both must be zero, so we can sum them up
-                deltas[i] = Math.abs(deltaTEarly + deltaTLate);
-                double impedance = betaPJT * route.perceivedJourneyTimeMin
-                    + betaDeltaTEarly * (deltaTEarly / 60.0) + betaDeltaTLate * (deltaTLate / 60.0);
-                impedances[i] = impedance;
-                if (impedance < minImpedance) {
-                    minImpedance = impedance;
+
+        int first = 0;
+        int end = count;
+        for (int w = originDemand.windowsStart(k); w < originDemand.windowsEnd(k); w++) {
+            DemandMatrix matrix = matrices.get(originDemand.window(w));
+            TimeWindow timeWindow = matrix.getTimeWindow();
+            double value = matrix.getValue(originIndex, destinationIndex);
+            double startTime = timeWindow.startTimeInclusiveMin() * 60.0;
+            double endTime = timeWindow.endTimeExclusiveMin() * 60.0;
+
+            if (startTime >= startIntervalMinutes * 60.0 && endTime < endIntervalMinutes * 60.0) {
+                double factor = multiplier.getFactor(originZone, destinationZone, (int) (startTime / 60.0));
+                double odDemand = value * factor;
+                if (limit) {
+                    double earliestDeparture = startTime - this.params.routeSelection().beforeTimewindow();
+                    double latestDeparture = endTime + this.params.routeSelection().afterTimewindow();
+                    first = firstDepartureNotBefore(departures, count, earliestDeparture);
+                    end = firstDepartureAfter(departures, count, latestDeparture);
+                }
+                if (first >= end) {
+                    unroutableDemand.addPart(new UnroutableDemandPart(originZone, destinationZone, odDemand));
+                } else {
+                    boolean skim = startTime >= startSkimMinutes * 60.0 && endTime < endSkimMinutes * 60.0;
+                    this.routeShares.assign(candidates, first, end, startTime, endTime, odDemand, skim);
                 }
             }
-            for (int i = 0; i < potentialRoutes.length; i++) {
-                double impedance = impedances[i];
-                double utility = utilityCalculator.calculateUtility(impedance, minImpedance);
-                routeUtilities[i] = utility * potentialRoutes[i].originality;
-                utilitiesSum += routeUtilities[i];
+        }
+        Arrays.fill(candidates, 0, count, null);
+    }
+
+    /**
+     * Splits the demand of each route into the segments. The shares only depend on the origin-destination pair, so the routes are assigned once for all
+     * segments and each segment gets its share of the total demand of the route. The segment demand of all routes of the pair is stored in one array, each
+     * route holds the offset of its segments.
+     */
+    private void splitIntoSegments(List<FoundRoute> routes, int originIndex, int destinationIndex) {
+        int segments = this.segmentShares.size();
+        for (int s = 0; s < segments; s++) {
+            this.odSegmentShares[s] = this.segmentShares.get(s).getValue(originIndex, destinationIndex);
+        }
+        double[] segmentDemand = new double[routes.size() * segments];
+        int offset = 0;
+        for (FoundRoute route : routes) {
+            for (int s = 0; s < segments; s++) {
+                segmentDemand[offset + s] = route.demand * this.odSegmentShares[s];
+            }
+            route.segmentDemand = segmentDemand;
+            route.segmentOffset = offset;
+            offset += segments;
+        }
+    }
+
+    /**
+     * @return the index of the first of the sorted departures that is at or after the given time, or count if there is none
+     */
+    private static int firstDepartureNotBefore(double[] departures, int count, double time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
-            for (int i = 0; i < potentialRoutes.length; i++) {
-                double delta = deltas[i];
-                double routeShare = routeUtilities[i] / utilitiesSum;
-                double routeDemand = odDemand * sharePerSample * routeShare;
-                FoundRoute route = potentialRoutes[i];
-                route.demand += routeDemand;
-                route.adaptationTime += delta * routeDemand;
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the first of the sorted departures that is after the given time, or count if there is none
+     */
+    private static int firstDepartureAfter(double[] departures, int count, double time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
+        return low;
+    }
+
+    private static double departureFromOrigin(FoundRoute route) {
+        return route.stop2stopRoute.depTime - route.originConnectedStop.walkTime();
     }
 
 }
@@ -10,7 +10,11 @@ public class FoundRoute {
     public double perceivedJourneyTimeMin = Double.NaN; // Empfundene Reisezeit
     public double demand = 0;
     public double adaptationTime = 0;
+    public double skimDemand = 0; // demand of the time windows within the skim interval
+    public double skimAdaptationTime = 0; // adaptation time of the skim demand
     public double originality = 0; // Eigenständigkeit
+    public double[] segmentDemand = null; // demand per segment of the share matrices, shared by all routes of the OD pair, only if written
+    public int segmentOffset = 0; // index of the demand of the first segment of this route in segmentDemand
 
     public FoundRoute(Stop2StopRoute stop2stopRoute, Connectors.ConnectedStop originConnectedStop, Connectors.ConnectedStop destinationConnectedStop) {
         this.stop2stopRoute = stop2stopRoute;
@@ -34,4 +38,11 @@ public class FoundRoute {
         this.perceivedJourneyTimeMin = other.perceivedJourneyTimeMin;
         this.originality = other.originality;
     }
+
+    /**
+     * @return the demand of the given segment of the share matrices, 0 if the demand was not split into segments
+     */
+    public double getSegmentDemand(int segment) {
+        return this.segmentDemand == null ? 0.0 : this.segmentDemand[this.segmentOffset + segment];
+    }
 }
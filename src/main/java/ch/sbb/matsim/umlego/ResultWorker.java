@@ -11,21 +11,44 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * The {@code UmlegoResultWorker} class is responsible for processing work results and passing them to {@link WorkResultHandler}.
+ * <p>
+ * The results are handled in the order the items were submitted. Writing might be slower than the computation, so the number of waiting items is limited and
+ * {@link #submit(WorkItem)} blocks until there is space, which keeps the found routes from piling up in memory.
  */
 public class ResultWorker implements Runnable {
 
     private static final Logger LOG = LogManager.getLogger(ResultWorker.class);
 
+    /**
+     * Marks the end of the submitted items.
+     */
+    private static final WorkItem END = new WorkItem() {
+        @Override
+        public String originZone() {
+            return null;
+        }
+
+        @Override
+        public List<CompletableFuture<? extends WorkResult>> results() {
+            return List.of();
+        }
+    };
+
     private final BlockingQueue<WorkItem> queue;
     private final List<WorkResultHandler<?>> handlers;
     private final List<String> originZoneIds;
     private final CountDownLatch completionLatch = new CountDownLatch(1);
 
-    public ResultWorker(BlockingQueue<WorkItem> queue, List<WorkResultHandler<?>> handlers, List<String> originZoneIds) {
-        this.queue = queue;
+    /**
+     * @param capacity the maximum number of submitted items waiting for their results to be handled
+     */
+    public ResultWorker(List<WorkResultHandler<?>> handlers, List<String> originZoneIds, int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
         this.handlers = handlers;
         this.originZoneIds = originZoneIds;
     }
@@ -39,10 +62,11 @@ public class ResultWorker implements Runnable {
 
         while (true) {
 
+            WorkItem item = null;
             try {
-                WorkItem item = this.queue.take();
+                item = this.queue.take();
 
-                if (item.originZone() == null) {
+                if (item == END) {
                     // end marker, the work is done
                     break;
                 }
@@ -61,6 +85,9 @@ public class ResultWorker implements Runnable {
                 LOG.error("Worker interrupted while waiting for work item", e);
                 Thread.currentThread().interrupt(); // restore the interrupted status
                 break;
+            } catch (ExecutionException e) {
+                // the failure was already logged where it happened
+                LOG.warn(" - skipped zone {}: {}", item.originZone(), e.getCause().toString());
             } catch (Exception e) {
                 LOG.error("Error processing work item", e);
             }
@@ -79,6 +106,20 @@ public class ResultWorker implements Runnable {
         completionLatch.countDown();
     }
 
+    /**
+     * Submits the item, its results are handled once they are completed. Blocks while the maximum number of items is waiting.
+     */
+    public void submit(WorkItem item) throws InterruptedException {
+        this.queue.put(item);
+    }
+
+    /**
+     * Signals that no more items will be submitted. The worker completes after handling the items submitted so far.
+     */
+    public void finish() throws InterruptedException {
+        this.queue.put(END);
+    }
+
     /**
      * Waits for this worker to finish processing all items.
      *
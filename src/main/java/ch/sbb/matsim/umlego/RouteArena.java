@@ -0,0 +1,262 @@
+package ch.sbb.matsim.umlego;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Compact storage for the legs of {@link Stop2StopRoute}s.
+ * <p>
+ * Instead of one object per leg, the legs of many routes are stored in large primitive arrays (chunks). Stops, transit routes and modes are stored as int references
+ * into tables of this arena, times and distances as doubles. Each thread writes into its own chunk, so routes found by the same worker stay close together
+ * and no locking is required. A chunk is never modified after a route was written into it. As the chunks are shared by all routes a thread finds, the routes
+ * kept after the post-processing are moved into a chunk of their own, see {@link #compactChunk(int)}.
+ * <p>
+ * An arena belongs to one transit schedule, so each scenario needs its own arena. It also indexes the position of the stops along each transit route, the index is
+ * immutable and shared by all threads.
+ */
+public final class RouteArena {
+
+    static final int INT_STRIDE = 5;
+    static final int INT_FROM_STOP = 0;
+    static final int INT_TO_STOP = 1;
+    static final int INT_ROUTE = 2;
+    static final int INT_MODE = 3;
+    static final int INT_CHAINED = 4;
+
+    static final int DOUBLE_STRIDE = 4;
+    static final int DOUBLE_DEP_TIME = 0;
+    static final int DOUBLE_VEHICLE_DEP_TIME = 1;
+    static final int DOUBLE_ARRIVAL_TIME = 2;
+    static final int DOUBLE_DISTANCE = 3;
+
+    private static final int DEFAULT_CHUNK_LEGS = 1 << 14;
+
+    private static final int NO_STOP = -1;
+    private static final int REPEATED_STOP = -2;
+
+    private final TransitStopFacility[] stops;
+    private final TransitRoute[] routes;
+    private final TransitLine[] lines;
+    private final Map<TransitRoute, Integer> routeIndices = new IdentityHashMap<>();
+
+    /**
+     * The stop indices along each transit route.
+     */
+    private final int[][] routeStops;
+
+    /**
+     * Position of a stop along a transit route, keyed by {@link #stopPositionKey(int, int)}. Stops served more than once by the route are marked as
+     * {@link #REPEATED_STOP}, their positions have to be searched in {@link #routeStops}.
+     */
+    private final Long2IntOpenHashMap stopPositions;
+
+    /**
+     * Copy-on-write table of the modes, modes are only added while routes are written.
+     */
+    private volatile String[] modes = new String[0];
+
+    private final int chunkLegs;
+    private final ThreadLocal<Chunk> currentChunk = new ThreadLocal<>();
+
+    public RouteArena(TransitSchedule schedule) {
+        this(schedule, DEFAULT_CHUNK_LEGS);
+    }
+
+    RouteArena(TransitSchedule schedule, int chunkLegs) {
+        this.chunkLegs = chunkLegs;
+        this.stops = new TransitStopFacility[Id.getNumberOfIds(TransitStopFacility.class)];
+        for (TransitStopFacility stop : schedule.getFacilities().values()) {
+            this.stops[stop.getId().index()] = stop;
+        }
+        List<TransitRoute> routeList = new ArrayList<>();
+        List<TransitLine> lineList = new ArrayList<>();
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                this.routeIndices.put(route, routeList.size());
+                routeList.add(route);
+                lineList.add(line);
+            }
+        }
+        this.routes = routeList.toArray(new TransitRoute[0]);
+        this.lines = lineList.toArray(new TransitLine[0]);
+
+        this.routeStops = new int[this.routes.length][];
+        int routeStopCount = 0;
+        for (TransitRoute route : this.routes) {
+            routeStopCount += route.getStops().size();
+        }
+        this.stopPositions = new Long2IntOpenHashMap(routeStopCount);
+        this.stopPositions.defaultReturnValue(NO_STOP);
+        for (int r = 0; r < this.routes.length; r++) {
+            List<TransitRouteStop> stops = this.routes[r].getStops();
+            int[] stopIndices = new int[stops.size()];
+            for (int i = 0; i < stopIndices.length; i++) {
+                stopIndices[i] = stops.get(i).getStopFacility().getId().index();
+                long key = stopPositionKey(r, stopIndices[i]);
+                this.stopPositions.put(key, this.stopPositions.containsKey(key) ? REPEATED_STOP : i);
+            }
+            this.routeStops[r] = stopIndices;
+        }
+    }
+
+    private static long stopPositionKey(int routeIndex, int stopIndex) {
+        return ((long) routeIndex << 32) | (stopIndex & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns a chunk of the current thread with space for at least the given number of legs.
+     */
+    Chunk chunkFor(int legCount) {
+        Chunk chunk = this.currentChunk.get();
+        if (chunk == null || chunk.used + legCount > chunk.capacity) {
+            if (legCount > this.chunkLegs) {
+                // too large for a shared chunk
+                return new Chunk(legCount);
+            }
+            chunk = new Chunk(this.chunkLegs);
+            this.currentChunk.set(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns a new chunk with space for exactly the given number of legs, which is not used for any other routes.
+     */
+    Chunk compactChunk(int legCount) {
+        return new Chunk(legCount);
+    }
+
+    int stopIndex(TransitStopFacility stop) {
+        int index = stop.getId().index();
+        if (index >= this.stops.length || this.stops[index] != stop) {
+            throw new IllegalArgumentException("Stop " + stop.getId() + " is not part of the transit schedule of this arena.");
+        }
+        return index;
+    }
+
+    TransitStopFacility stop(int index) {
+        return this.stops[index];
+    }
+
+    int routeIndex(TransitRoute route) {
+        if (route == null) {
+            return -1;
+        }
+        Integer index = this.routeIndices.get(route);
+        if (index == null) {
+            throw new IllegalArgumentException("Transit route " + route.getId() + " is not part of the transit schedule of this arena.");
+        }
+        return index;
+    }
+
+    TransitRoute route(int index) {
+        return index < 0 ? null : this.routes[index];
+    }
+
+    /**
+     * Returns the number of stops a transit route serves between boarding and alighting, not counting the two stops themselves.
+     *
+     * @return the number of intermediate stops, or -1 if the route does not serve the alighting stop after the boarding stop
+     */
+    int intermediateStopCount(int routeIndex, int fromStopIndex, int toStopIndex) {
+        if (routeIndex < 0) {
+            return -1;
+        }
+        int from = this.stopPositions.get(stopPositionKey(routeIndex, fromStopIndex));
+        int to = this.stopPositions.get(stopPositionKey(routeIndex, toStopIndex));
+        if (from == NO_STOP || to == NO_STOP) {
+            return -1;
+        }
+        if (from == REPEATED_STOP || to == REPEATED_STOP) {
+            return searchIntermediateStopCount(this.routeStops[routeIndex], fromStopIndex, toStopIndex);
+        }
+        return to > from ? to - from - 1 : -1;
+    }
+
+    /**
+     * Finds the first alighting stop after a boarding stop, boarding at the last visit of the boarding stop before it. Only required for routes serving a stop
+     * more than once, e.g. loops.
+     */
+    private static int searchIntermediateStopCount(int[] stops, int fromStopIndex, int toStopIndex) {
+        int from = -1;
+        for (int i = 0; i < stops.length; i++) {
+            if (stops[i] == toStopIndex && from >= 0) {
+                return i - from - 1;
+            }
+            if (stops[i] == fromStopIndex) {
+                from = i;
+            }
+        }
+        return -1;
+    }
+
+    TransitLine line(int index) {
+        return index < 0 ? null : this.lines[index];
+    }
+
+    int modeIndex(String mode) {
+        if (mode == null) {
+            return -1;
+        }
+        String[] current = this.modes;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(mode)) {
+                return i;
+            }
+        }
+        return addMode(mode);
+    }
+
+    private synchronized int addMode(String mode) {
+        String[] current = this.modes;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(mode)) {
+                return i;
+            }
+        }
+        String[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = mode;
+        this.modes = extended;
+        return current.length;
+    }
+
+    String mode(int index) {
+        return index < 0 ? null : this.modes[index];
+    }
+
+    /**
+     * Primitive storage for the legs of several routes.
+     */
+    static final class Chunk {
+
+        final int capacity;
+        final int[] ints;
+        final double[] doubles;
+        int used = 0;
+
+        Chunk(int capacity) {
+            this.capacity = capacity;
+            this.ints = new int[capacity * INT_STRIDE];
+            this.doubles = new double[capacity * DOUBLE_STRIDE];
+        }
+
+        /**
+         * Reserves the given number of legs and returns the index of the first one.
+         */
+        int take(int legCount) {
+            int offset = this.used;
+            this.used += legCount;
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
+import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import java.util.Arrays;
+
+/**
+ * The times of the routes of one origin-destination pair, stored as structure of arrays. The times are collected route by route, the perceived journey time
+ * and the search impedance are then evaluated for all routes at once, in loops over primitive arrays that the JIT compiler can vectorize.
+ * <p>
+ * A block is reused for all origin-destination pairs of a worker and is not thread-safe. All times are in seconds.
+ */
+final class RouteCharacteristics {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size = 0;
+
+    private double[] inVehicleTime = new double[INITIAL_CAPACITY];
+    private double[] accessTime = new double[INITIAL_CAPACITY];
+    private double[] egressTime = new double[INITIAL_CAPACITY];
+    private double[] walkTime = new double[INITIAL_CAPACITY];
+    private double[] transferWaitTime = new double[INITIAL_CAPACITY];
+    private double[] transferCount = new double[INITIAL_CAPACITY];
+    private double[] totalTravelTime = new double[INITIAL_CAPACITY];
+    private double[] additionalStopCount = new double[INITIAL_CAPACITY];
+
+    private double[] perceivedJourneyTimeMin = new double[INITIAL_CAPACITY];
+    private double[] searchImpedance = new double[INITIAL_CAPACITY];
+
+    /**
+     * Removes all routes, keeping the allocated arrays.
+     */
+    void clear() {
+        this.size = 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds the times of a route.
+     *
+     * @param totalTravelTime the travel time including access and egress
+     */
+    void add(double inVehicleTime, double accessTime, double egressTime, double walkTime, double transferWaitTime, double transferCount, double totalTravelTime,
+        int additionalStopCount) {
+        if (this.size == this.inVehicleTime.length) {
+            grow();
+        }
+        int i = this.size++;
+        this.inVehicleTime[i] = inVehicleTime;
+        this.accessTime[i] = accessTime;
+        this.egressTime[i] = egressTime;
+        this.walkTime[i] = walkTime;
+        this.transferWaitTime[i] = transferWaitTime;
+        this.transferCount[i] = transferCount;
+        this.totalTravelTime[i] = totalTravelTime;
+        this.additionalStopCount[i] = additionalStopCount;
+    }
+
+    private void grow() {
+        int capacity = this.inVehicleTime.length * 2;
+        this.inVehicleTime = Arrays.copyOf(this.inVehicleTime, capacity);
+        this.accessTime = Arrays.copyOf(this.accessTime, capacity);
+        this.egressTime = Arrays.copyOf(this.egressTime, capacity);
+        this.walkTime = Arrays.copyOf(this.walkTime, capacity);
+        this.transferWaitTime = Arrays.copyOf(this.transferWaitTime, capacity);
+        this.transferCount = Arrays.copyOf(this.transferCount, capacity);
+        this.totalTravelTime = Arrays.copyOf(this.totalTravelTime, capacity);
+        this.additionalStopCount = Arrays.copyOf(this.additionalStopCount, capacity);
+        this.perceivedJourneyTimeMin = Arrays.copyOf(this.perceivedJourneyTimeMin, capacity);
+        this.searchImpedance = Arrays.copyOf(this.searchImpedance, capacity);
+    }
+
+    /**
+     * Evaluates the perceived journey time and the search impedance of all routes. Each loop only reads and writes arrays with the same index and has no
+     * branches, so it is compiled to SIMD instructions where available. The terms are added in the same order as for a single route, the results do not
+     * depend on vectorization.
+     */
+    void evaluate(PerceivedJourneyTimeParameters pjt, SearchImpedanceParameters search) {
+        int n = this.size;
+        double[] ivt = this.inVehicleTime;
+        double[] access = this.accessTime;
+        double[] egress = this.egressTime;
+        double[] walk = this.walkTime;
+        double[] wait = this.transferWaitTime;
+        double[] transfers = this.transferCount;
+        double[] total = this.totalTravelTime;
+        double[] stops = this.additionalStopCount;
+
+        double[] pjtOut = this.perceivedJourneyTimeMin;
+        double minutesPerAdditionalStop = pjt.secondsPerAdditionalStop() / 60.0;
+        for (int i = 0; i < n; i++) {
+            pjtOut[i] = pjt.betaInVehicleTime() * (ivt[i] / 60.0)
+                + pjt.betaAccessTime() * (access[i] / 60.0)
+                + pjt.betaEgressTime() * (egress[i] / 60.0)
+                + pjt.betaWalkTime() * (walk[i] / 60.0)
+                + pjt.betaTransferWaitTime() * (wait[i] / 60.0)
+                + transfers[i] * (pjt.transferFix() + pjt.transferTraveltimeFactor() * (total[i] / 60.0))
+                + minutesPerAdditionalStop * stops[i];
+        }
+
+        double[] impedanceOut = this.searchImpedance;
+        for (int i = 0; i < n; i++) {
+            impedanceOut[i] = search.betaInVehicleTime() * (ivt[i] / 60.0)
+                + search.betaAccessTime() * (access[i] / 60.0)
+                + search.betaEgressTime() * (egress[i] / 60.0)
+                + search.betaWalkTime() * (walk[i] / 60.0)
+                + search.betaTransferWaitTime() * (wait[i] / 60.0)
+                + search.betaTransferCount() * transfers[i];
+        }
+    }
+
+    /**
+     * @return the perceived journey time in minutes of the i-th route, after {@link #evaluate}
+     */
+    double perceivedJourneyTimeMin(int i) {
+        return this.perceivedJourneyTimeMin[i];
+    }
+
+    /**
+     * @return the search impedance of the i-th route, after {@link #evaluate}
+     */
+    double searchImpedance(int i) {
+        return this.searchImpedance[i];
+    }
+}
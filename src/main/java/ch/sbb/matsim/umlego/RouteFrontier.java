@@ -0,0 +1,113 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The routes found between one origin and one destination stop. With pruning, routes are dropped while they are found if they would later be removed by
+ * {@link UmlegoRouteUtils#removeDominatedRoutes(List)} anyway.
+ * <p>
+ * The pruning is conservative: a route is only dropped if another route
+ * <ul>
+ *     <li>starts and ends with the same stops, so both get the same connectors and both are valid or invalid for the same zones,</li>
+ *     <li>departs later or arrives earlier, so it comes after the route when removing dominated routes, independent of ties,</li>
+ *     <li>has at most as many transfers and at most the same in-vehicle, walk and transfer wait time.</li>
+ * </ul>
+ * With non-negative betas, the last implies at most the same search impedance, also with floating-point rounding. A dominated route is never needed to remove
+ * other routes, as its dominating route dominates those as well. Direct routes are always kept.
+ */
+final class RouteFrontier {
+
+    private final boolean prune;
+    private final List<Stop2StopRoute> routes = new ArrayList<>(4);
+
+    /**
+     * In-vehicle, walk and transfer wait time of each route, only with pruning.
+     */
+    private double[] times;
+
+    RouteFrontier(boolean prune) {
+        this.prune = prune;
+        this.times = prune ? new double[4 * 3] : null;
+    }
+
+    /**
+     * @return true if pruning is conservative with these parameters
+     */
+    static boolean canPrune(SearchImpedanceParameters search) {
+        return search.betaInVehicleTime() >= 0 && search.betaWalkTime() >= 0 && search.betaTransferWaitTime() >= 0 && search.betaTransferCount() >= 0;
+    }
+
+    List<Stop2StopRoute> routes() {
+        return this.routes;
+    }
+
+    void add(Stop2StopRoute route) {
+        if (!this.prune) {
+            this.routes.add(route);
+            return;
+        }
+        double[] routeTimes = computeTimes(route);
+        int kept = 0;
+        for (int i = 0; i < this.routes.size(); i++) {
+            Stop2StopRoute other = this.routes.get(i);
+            if (dominates(other, this.times, i * 3, route, routeTimes, 0)) {
+                // the frontier is unchanged, as no route in it is dominated by another one
+                return;
+            }
+            if (!dominates(route, routeTimes, 0, other, this.times, i * 3)) {
+                this.routes.set(kept, other);
+                System.arraycopy(this.times, i * 3, this.times, kept * 3, 3);
+                kept++;
+            }
+        }
+        this.routes.subList(kept, this.routes.size()).clear();
+        if ((kept + 1) * 3 > this.times.length) {
+            this.times = Arrays.copyOf(this.times, this.times.length * 2);
+        }
+        System.arraycopy(routeTimes, 0, this.times, kept * 3, 3);
+        this.routes.add(route);
+    }
+
+    private static boolean dominates(Stop2StopRoute route2, double[] times2, int offset2, Stop2StopRoute route1, double[] times1, int offset1) {
+        if (route1.transfers == 0 || route2.transfers > route1.transfers) {
+            return false;
+        }
+        boolean isStrictlyContained = route2.depTime >= route1.depTime && route2.arrTime <= route1.arrTime
+            && (route2.depTime > route1.depTime || route2.arrTime < route1.arrTime);
+        return isStrictlyContained
+            && times2[offset2] <= times1[offset1]
+            && times2[offset2 + 1] <= times1[offset1 + 1]
+            && times2[offset2 + 2] <= times1[offset1 + 2]
+            && route2.legFromStop(0) == route1.legFromStop(0)
+            && route2.legToStop(route2.legCount() - 1) == route1.legToStop(route1.legCount() - 1);
+    }
+
+    /**
+     * Computes the times the same way as the route characteristics in {@link AbstractWorker}, so they can be compared exactly.
+     */
+    private static double[] computeTimes(Stop2StopRoute s2s) {
+        double inVehicleTime = 0;
+        double walkTime = 0;
+        double transferWaitTime = 0;
+        boolean hadTransferBefore = false;
+        for (int part = 0; part < s2s.legCount(); part++) {
+            if (s2s.isChained(part)) {
+                continue;
+            }
+            if (s2s.isTransferLeg(part)) {
+                walkTime += (s2s.legArrivalTime(part) - s2s.legDepTime(part));
+                hadTransferBefore = true;
+            } else {
+                if (hadTransferBefore) {
+                    transferWaitTime += (s2s.legVehicleDepTime(part) - s2s.legDepTime(part));
+                }
+                inVehicleTime += (s2s.legChainedArrivalTime(part) - s2s.legVehicleDepTime(part));
+                hadTransferBefore = false;
+            }
+        }
+        return new double[]{inVehicleTime, walkTime, transferWaitTime};
+    }
+}
@@ -0,0 +1,128 @@
+package ch.sbb.matsim.umlego;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongComparator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.LongPredicate;
+
+/**
+ * The candidate routes of one origin-destination pair before any {@link FoundRoute} is created. Each candidate is a handle packing the index of the route and
+ * the indices of its origin and destination connector into a long, so the candidates can be filtered and reordered without allocating; only the routes left
+ * afterwards are materialized.
+ * <p>
+ * The route index is the position in which the route was added, it also indexes the {@link RouteCharacteristics} of the candidates. A block is reused for all
+ * origin-destination pairs of a worker and is not thread-safe.
+ */
+final class RouteHandles {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_CONNECTORS = 1 << 16;
+
+    private int size = 0;
+    private int routeCount = 0;
+
+    private long[] handles = new long[INITIAL_CAPACITY];
+    private Stop2StopRoute[] routes = new Stop2StopRoute[INITIAL_CAPACITY];
+    private double[] travelTimeWithAccess = new double[INITIAL_CAPACITY];
+
+    static long pack(int route, int originConnector, int destinationConnector) {
+        return ((long) originConnector << 48) | ((long) destinationConnector << 32) | (route & 0xFFFFFFFFL);
+    }
+
+    static int routeIndex(long handle) {
+        return (int) handle;
+    }
+
+    static int originConnector(long handle) {
+        return (int) (handle >>> 48);
+    }
+
+    static int destinationConnector(long handle) {
+        return (int) (handle >>> 32) & (MAX_CONNECTORS - 1);
+    }
+
+    /**
+     * Removes all candidates, keeping the allocated arrays but not the routes.
+     */
+    void clear() {
+        Arrays.fill(this.routes, 0, this.routeCount, null);
+        this.size = 0;
+        this.routeCount = 0;
+    }
+
+    /**
+     * @return the number of remaining candidates
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds a route with the indices of its connectors in the connector lists of the origin and the destination zone.
+     */
+    void add(Stop2StopRoute route, int originConnector, int destinationConnector, double travelTimeWithAccess) {
+        if (originConnector >= MAX_CONNECTORS || destinationConnector >= MAX_CONNECTORS) {
+            throw new IllegalArgumentException("Too many connectors per zone: " + Math.max(originConnector, destinationConnector));
+        }
+        if (this.routeCount == this.routes.length) {
+            int capacity = this.routes.length * 2;
+            this.handles = Arrays.copyOf(this.handles, capacity);
+            this.routes = Arrays.copyOf(this.routes, capacity);
+            this.travelTimeWithAccess = Arrays.copyOf(this.travelTimeWithAccess, capacity);
+        }
+        int r = this.routeCount++;
+        this.routes[r] = route;
+        this.travelTimeWithAccess[r] = travelTimeWithAccess;
+        // candidates are only removed after all routes are added
+        this.handles[this.size++] = pack(r, originConnector, destinationConnector);
+    }
+
+    /**
+     * @return the handle of the i-th remaining candidate
+     */
+    long handle(int i) {
+        return this.handles[i];
+    }
+
+    Stop2StopRoute route(long handle) {
+        return this.routes[routeIndex(handle)];
+    }
+
+    double travelTimeWithAccess(long handle) {
+        return this.travelTimeWithAccess[routeIndex(handle)];
+    }
+
+    /**
+     * Sorts the remaining candidates, keeping the order of equal candidates.
+     */
+    void sort(LongComparator comparator) {
+        LongArrays.mergeSort(this.handles, 0, this.size, comparator);
+    }
+
+    /**
+     * Removes the candidates at the given positions, keeping the order of the others.
+     */
+    void remove(BitSet positions) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (!positions.get(i)) {
+                this.handles[kept++] = this.handles[i];
+            }
+        }
+        this.size = kept;
+    }
+
+    /**
+     * Removes the candidates matching the filter, keeping the order of the others.
+     */
+    void removeIf(LongPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (!filter.test(this.handles[i])) {
+                this.handles[kept++] = this.handles[i];
+            }
+        }
+        this.size = kept;
+    }
+}
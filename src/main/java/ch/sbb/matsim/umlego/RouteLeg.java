@@ -0,0 +1,38 @@
+package ch.sbb.matsim.umlego;
+
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * One leg of a {@link Stop2StopRoute}, either a transfer (no line) or a ride with a public transport vehicle.
+ * <p>
+ * Only used to build routes outside of SwissRailRaptor, e.g. when routes are loaded from a cache. The routes themselves store their legs in a {@link RouteArena}.
+ */
+public final class RouteLeg {
+
+    public final TransitStopFacility fromStop;
+    public final TransitStopFacility toStop;
+    public final String mode;
+    public final double depTime;
+    public final double vehicleDepTime;
+    public final double arrivalTime;
+    public final double distance;
+    public final TransitLine line;
+    public final TransitRoute route;
+    public final RouteLeg chainedPart;
+
+    public RouteLeg(TransitStopFacility fromStop, TransitStopFacility toStop, String mode, double depTime, double vehicleDepTime, double arrivalTime,
+        double distance, TransitLine line, TransitRoute route, RouteLeg chainedPart) {
+        this.fromStop = fromStop;
+        this.toStop = toStop;
+        this.mode = mode;
+        this.depTime = depTime;
+        this.vehicleDepTime = vehicleDepTime;
+        this.arrivalTime = arrivalTime;
+        this.distance = distance;
+        this.line = line;
+        this.route = route;
+        this.chainedPart = chainedPart;
+    }
+}
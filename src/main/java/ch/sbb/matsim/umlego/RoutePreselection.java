@@ -0,0 +1,54 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.config.PreselectionParameters;
+
+/**
+ * The preselection of the routes of one origin-destination pair, shared by the staged and the fused postprocessing. A route is rejected if its search
+ * impedance is too high compared to the best route, or if it has more than three transfers more than the route with the fewest transfers and is not the
+ * fastest route.
+ * <p>
+ * The routes are first added to find the best values, then each route is tested. An instance is reused for all origin-destination pairs of a worker and is
+ * not thread-safe.
+ */
+final class RoutePreselection {
+
+    private final PreselectionParameters params;
+
+    private int minTransfers;
+    private double minSearchImpedance;
+    private double minTravelTimeWithAccess;
+
+    RoutePreselection(PreselectionParameters params) {
+        this.params = params;
+        clear();
+    }
+
+    /**
+     * Starts the preselection of the routes of another origin-destination pair.
+     */
+    void clear() {
+        this.minTransfers = Integer.MAX_VALUE;
+        this.minSearchImpedance = Double.POSITIVE_INFINITY;
+        this.minTravelTimeWithAccess = Double.POSITIVE_INFINITY;
+    }
+
+    void add(int transfers, double searchImpedance, double travelTimeWithAccess) {
+        if (transfers < this.minTransfers) {
+            this.minTransfers = transfers;
+        }
+        if (searchImpedance < this.minSearchImpedance) {
+            this.minSearchImpedance = searchImpedance;
+        }
+        if (travelTimeWithAccess < this.minTravelTimeWithAccess) {
+            this.minTravelTimeWithAccess = travelTimeWithAccess;
+        }
+    }
+
+    /**
+     * @return whether the route is rejected compared to all routes added since the last {@link #clear()}
+     */
+    boolean isRejected(int transfers, double searchImpedance, double travelTimeWithAccess) {
+        double maxSearchImpedance = this.params.betaMinImpedance() * this.minSearchImpedance + this.params.constImpedance();
+        return searchImpedance > maxSearchImpedance || (transfers > this.minTransfers + 3 && travelTimeWithAccess > this.minTravelTimeWithAccess);
+    }
+}
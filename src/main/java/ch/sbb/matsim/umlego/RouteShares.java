@@ -0,0 +1,492 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.config.RouteImpedanceParameters;
+import ch.sbb.matsim.umlego.config.RouteShareMode;
+import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
+import ch.sbb.matsim.umlego.deltat.PiecewiseLinearDeltaTCalculator;
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Distributes the demand of one origin-destination pair and time window over the routes, adding it to {@link FoundRoute#demand} and
+ * {@link FoundRoute#adaptationTime}, and for a time window within the skim interval to {@link FoundRoute#skimDemand} and
+ * {@link FoundRoute#skimAdaptationTime} as well.
+ * <p>
+ * The demand of each minute of the time window chooses the routes by their impedance for this minute, including the adaptation time. Sampling evaluates the
+ * route shares for every minute. Integration splits the time window where the adaptation time of any route changes its slope, so all impedances are linear
+ * in time within each segment and only need the delta T calculator at the first and last minute. Each segment is split again where the impedances of two
+ * routes cross, as the shares change fastest there. The shares of all minutes of a piece are summed with quadratic interpolation between a few evaluated
+ * minutes, refined until the estimated error of the share of each route is within the tolerance. The result equals sampling for a tolerance of zero, but
+ * only saves evaluations of the utility function for long pieces. The minimal impedance passed to the utility calculator is the minimum since the start of
+ * the time window in both cases, for linear impedances it only depends on the first and the current minute of a segment.
+ * <p>
+ * An instance is reused by a worker and is not thread-safe.
+ */
+final class RouteShares {
+
+    /**
+     * Length of the interval in seconds for which the adaptation time is calculated, also the step of the sampling.
+     */
+    static final double INTERVAL = 60.0;
+
+    /**
+     * Ranges with at most this many minutes are evaluated minute by minute.
+     */
+    private static final int DIRECT_SAMPLES = 5;
+
+    /**
+     * Segments with fewer minutes are sampled, as the interpolation evaluates about as many minutes.
+     */
+    private static final int MIN_INTERPOLATED_SAMPLES = 24;
+
+    /**
+     * An interpolated sum is only accepted after this many refinements, as a single comparison misses steep changes of the shares.
+     */
+    private static final int MIN_DEPTH = 2;
+    private static final int MAX_DEPTH = 32;
+
+    private final RouteImpedanceParameters impedance;
+    private final RouteUtilityCalculator utilityCalculator;
+    private final DeltaTCalculator deltaTCalculator;
+    private final boolean integrate;
+    /**
+     * The adaptation time calculator if the shares are integrated, {@code null} if they are sampled.
+     */
+    private final PiecewiseLinearDeltaTCalculator piecewiseLinear;
+    private final double tolerance;
+
+    private int n;
+    private double[] depTimes = new double[0];
+    private double[] journeyTimes;
+    private double[] originalities;
+    private double[] impedances;
+    private double[] deltas;
+    private double[] deltasEarly;
+    private double[] deltasLate;
+    private double[] impedanceAtStart;
+    private double[] impedanceSlope;
+    private double[] deltaAtStart;
+    private double[] deltaSlope;
+    private double[] utilities;
+    private double[] sums;
+    private double[][] values = new double[4 + 3 * MAX_DEPTH][];
+    private final double[] weights = new double[9];
+
+    private double startTime;
+    private int segmentStart;
+    private double minImpedanceAtSegmentStart;
+
+    private double[] breakpoints = new double[16];
+    private int breakpointCount;
+    private double[] crossings = new double[16];
+    private int crossingCount;
+    private final DoubleConsumer addBreakpoint = this::addBreakpoint;
+
+    RouteShares(RouteImpedanceParameters impedance, RouteUtilityCalculator utilityCalculator, DeltaTCalculator deltaTCalculator, RouteShareMode mode,
+        double tolerance) {
+        this.impedance = impedance;
+        this.utilityCalculator = utilityCalculator;
+        this.deltaTCalculator = deltaTCalculator;
+        this.piecewiseLinear = mode == RouteShareMode.INTEGRATED && deltaTCalculator instanceof PiecewiseLinearDeltaTCalculator calculator
+            ? calculator : null;
+        this.integrate = this.piecewiseLinear != null;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Assigns the demand of the time window to the routes from index from (inclusive) to to (exclusive), with the method of the configured
+     * {@link RouteShareMode}.
+     *
+     * @param skim whether the demand is also added to the skim demand of the routes
+     */
+    void assign(FoundRoute[] routes, int from, int to, double startTime, double endTime, double odDemand, boolean skim) {
+        if (this.integrate) {
+            integrate(routes, from, to, startTime, endTime, odDemand, skim);
+        } else {
+            sample(routes, from, to, startTime, endTime, odDemand, skim, INTERVAL);
+        }
+    }
+
+    /**
+     * Samples the route shares every step seconds. Only full minutes of the time window are covered, as for the default step of one minute.
+     */
+    void sample(FoundRoute[] routes, int from, int to, double startTime, double endTime, double odDemand, boolean skim, double step) {
+        double timeWindow = Math.floor((endTime - startTime) / INTERVAL) * INTERVAL;
+        int samples = (int) (timeWindow / step);
+        double sharePerSample = 1.0 / ((double) samples);
+        prepare(routes, from, to, startTime);
+        int n = this.n;
+        double[] impedances = this.impedances;
+        double[] deltas = this.deltas;
+        double[] routeUtilities = this.utilities;
+        double minImpedance = Double.POSITIVE_INFINITY;
+        double betaPJT = this.impedance.betaPerceivedJourneyTime();
+        double betaDeltaTEarly = this.impedance.betaDeltaTEarly();
+        double betaDeltaTLate = this.impedance.betaDeltaTLate();
+
+        for (int sample = 0; sample < samples; sample++) {
+            double time = startTime + sample * step;
+            double utilitiesSum = 0;
+            this.deltaTCalculator.calculateDeltaT(this.depTimes, n, time, time + INTERVAL, this.deltasEarly, this.deltasLate);
+            for (int i = 0; i < n; i++) {
+                double deltaTEarly = this.deltasEarly[i];
+                double deltaTLate = this.deltasLate[i];
+
+                // one of both must be zero, so we can sum them up
+                deltas[i] = Math.abs(deltaTEarly + deltaTLate);
+                double impedance = betaPJT * this.journeyTimes[i]
+                    + betaDeltaTEarly * (deltaTEarly / 60.0) + betaDeltaTLate * (deltaTLate / 60.0);
+                impedances[i] = impedance;
+                if (impedance < minImpedance) {
+                    minImpedance = impedance;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                double impedance = impedances[i];
+                double utility = this.utilityCalculator.calculateUtility(impedance, minImpedance);
+                routeUtilities[i] = utility * this.originalities[i];
+                utilitiesSum += routeUtilities[i];
+            }
+            for (int i = 0; i < n; i++) {
+                double delta = deltas[i];
+                double routeShare = routeUtilities[i] / utilitiesSum;
+                double routeDemand = odDemand * sharePerSample * routeShare;
+                FoundRoute route = routes[from + i];
+                route.demand += routeDemand;
+                route.adaptationTime += delta * routeDemand;
+                if (skim) {
+                    route.skimDemand += routeDemand;
+                    route.skimAdaptationTime += delta * routeDemand;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums the route shares of all full minutes of the time window, like {@link #sample} but evaluating only some minutes where the shares change smoothly.
+     */
+    void integrate(FoundRoute[] routes, int from, int to, double startTime, double endTime, double odDemand, boolean skim) {
+        int samples = (int) ((endTime - startTime) / INTERVAL);
+        if (samples <= 0) {
+            return;
+        }
+        prepare(routes, from, to, startTime);
+        double lastTime = startTime + (samples - 1) * INTERVAL;
+
+        this.breakpointCount = 0;
+        for (int i = 0; i < this.n; i++) {
+            this.piecewiseLinear.breakpoints(this.depTimes[i], INTERVAL, startTime - 1, lastTime + 1, this.addBreakpoint);
+        }
+        Arrays.sort(this.breakpoints, 0, this.breakpointCount);
+
+        double minImpedance = Double.POSITIVE_INFINITY;
+        int b = 0;
+        int sample = 0;
+        while (sample < samples) {
+            double time = sampleTime(sample);
+            while (b < this.breakpointCount && this.breakpoints[b] < time) {
+                b++;
+            }
+            if (b < this.breakpointCount && this.breakpoints[b] == time) {
+                // the adaptation time may jump at a breakpoint, so it is not linear together with the following minutes
+                minImpedance = sampleDirectly(sample, minImpedance);
+                sample++;
+                continue;
+            }
+            double nextBreakpoint = b < this.breakpointCount ? this.breakpoints[b] : Double.POSITIVE_INFINITY;
+            int last = sample;
+            while (last + 1 < samples && sampleTime(last + 1) < nextBreakpoint) {
+                last++;
+            }
+            minImpedance = sumSegment(sample, last, minImpedance);
+            sample = last + 1;
+        }
+
+        int n = this.n;
+        for (int i = 0; i < n; i++) {
+            FoundRoute route = routes[from + i];
+            double routeDemand = odDemand * this.sums[i] / samples;
+            double adaptationTime = odDemand * this.sums[n + i] / samples;
+            route.demand += routeDemand;
+            route.adaptationTime += adaptationTime;
+            if (skim) {
+                route.skimDemand += routeDemand;
+                route.skimAdaptationTime += adaptationTime;
+            }
+        }
+    }
+
+    private double sampleTime(int sample) {
+        return this.startTime + sample * INTERVAL;
+    }
+
+    /**
+     * Copies the values of the routes from index from to to into the scratch arrays, which grow with the number of routes but are kept for all time windows.
+     */
+    private void prepare(FoundRoute[] routes, int from, int to, double startTime) {
+        int n = to - from;
+        this.n = n;
+        this.startTime = startTime;
+        if (this.depTimes.length < n) {
+            int capacity = Math.max(n, 2 * this.depTimes.length);
+            this.depTimes = new double[capacity];
+            this.journeyTimes = new double[capacity];
+            this.originalities = new double[capacity];
+            this.impedances = new double[capacity];
+            this.deltas = new double[capacity];
+            this.deltasEarly = new double[capacity];
+            this.deltasLate = new double[capacity];
+            this.impedanceAtStart = new double[capacity];
+            this.impedanceSlope = new double[capacity];
+            this.deltaAtStart = new double[capacity];
+            this.deltaSlope = new double[capacity];
+            this.utilities = new double[capacity];
+            this.sums = new double[2 * capacity];
+            for (int v = 0; v < this.values.length; v++) {
+                this.values[v] = new double[2 * capacity];
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            FoundRoute route = routes[from + i];
+            this.depTimes[i] = route.stop2stopRoute.depTime - route.originConnectedStop.walkTime();
+            this.journeyTimes[i] = route.perceivedJourneyTimeMin;
+            this.originalities[i] = route.originality;
+        }
+        Arrays.fill(this.sums, 0, 2 * n, 0.0);
+    }
+
+    private void addBreakpoint(double time) {
+        if (this.breakpointCount == this.breakpoints.length) {
+            this.breakpoints = Arrays.copyOf(this.breakpoints, 2 * this.breakpoints.length);
+        }
+        this.breakpoints[this.breakpointCount++] = time;
+    }
+
+    /**
+     * Calculates the impedances and adaptation times of all routes for a minute with the delta T calculator.
+     */
+    private void calculateImpedances(int sample) {
+        double time = sampleTime(sample);
+        this.deltaTCalculator.calculateDeltaT(this.depTimes, this.n, time, time + INTERVAL, this.deltasEarly, this.deltasLate);
+        for (int i = 0; i < this.n; i++) {
+            double deltaTEarly = this.deltasEarly[i];
+            double deltaTLate = this.deltasLate[i];
+            this.deltas[i] = Math.abs(deltaTEarly + deltaTLate);
+            this.impedances[i] = this.impedance.betaPerceivedJourneyTime() * this.journeyTimes[i]
+                + this.impedance.betaDeltaTEarly() * (deltaTEarly / 60.0) + this.impedance.betaDeltaTLate() * (deltaTLate / 60.0);
+        }
+    }
+
+    /**
+     * Adds the shares of a single minute, the same way as {@link #sample}.
+     *
+     * @return the minimal impedance up to this minute
+     */
+    private double sampleDirectly(int sample, double minImpedance) {
+        int n = this.n;
+        calculateImpedances(sample);
+        for (int i = 0; i < n; i++) {
+            minImpedance = Math.min(minImpedance, this.impedances[i]);
+        }
+        double utilitiesSum = 0;
+        for (int i = 0; i < n; i++) {
+            this.utilities[i] = this.utilityCalculator.calculateUtility(this.impedances[i], minImpedance) * this.originalities[i];
+            utilitiesSum += this.utilities[i];
+        }
+        for (int i = 0; i < n; i++) {
+            double share = this.utilities[i] / utilitiesSum;
+            this.sums[i] += share;
+            this.sums[n + i] += share * this.deltas[i];
+        }
+        return minImpedance;
+    }
+
+    /**
+     * Adds the shares of the minutes first to last, between which no breakpoint lies.
+     *
+     * @return the minimal impedance up to the last minute
+     */
+    private double sumSegment(int first, int last, double minImpedance) {
+        int n = this.n;
+        if (last - first + 1 < MIN_INTERPOLATED_SAMPLES) {
+            for (int sample = first; sample <= last; sample++) {
+                minImpedance = sampleDirectly(sample, minImpedance);
+            }
+            return minImpedance;
+        }
+
+        // the impedances and adaptation times are linear in time, so they are determined by the first and the last minute
+        calculateImpedances(first);
+        double minAtStart = minImpedance;
+        for (int i = 0; i < n; i++) {
+            this.impedanceAtStart[i] = this.impedances[i];
+            this.deltaAtStart[i] = this.deltas[i];
+            minAtStart = Math.min(minAtStart, this.impedances[i]);
+        }
+        calculateImpedances(last);
+        double minAtEnd = minAtStart;
+        for (int i = 0; i < n; i++) {
+            this.impedanceSlope[i] = (this.impedances[i] - this.impedanceAtStart[i]) / (last - first);
+            this.deltaSlope[i] = (this.deltas[i] - this.deltaAtStart[i]) / (last - first);
+            minAtEnd = Math.min(minAtEnd, this.impedances[i]);
+        }
+        this.segmentStart = first;
+        this.minImpedanceAtSegmentStart = minAtStart;
+
+        // the shares change fastest where the impedances of two routes cross, and the minimal impedance has a kink there or where it drops below the minimum
+        // before the segment, so the segment is split at these crossings to sum smooth pieces
+        int length = last - first;
+        this.crossingCount = 0;
+        for (int i = 0; i < n; i++) {
+            addCrossing(this.impedanceAtStart[i] - minAtStart, this.impedanceSlope[i], length);
+            for (int k = i + 1; k < n; k++) {
+                addCrossing(this.impedanceAtStart[i] - this.impedanceAtStart[k], this.impedanceSlope[i] - this.impedanceSlope[k], length);
+            }
+        }
+        Arrays.sort(this.crossings, 0, this.crossingCount);
+        int pieceStart = 0;
+        for (int c = 0; c < this.crossingCount; c++) {
+            int pieceEnd = (int) this.crossings[c];
+            if (pieceEnd >= pieceStart) {
+                sumPiece(first + pieceStart, first + pieceEnd);
+                pieceStart = pieceEnd + 1;
+            }
+        }
+        sumPiece(first + pieceStart, last);
+        return minAtEnd;
+    }
+
+    /**
+     * Adds the position within the segment where a difference starting at the given value and changing linearly with the given slope becomes zero.
+     */
+    private void addCrossing(double difference, double slope, int length) {
+        double crossing = -difference / slope;
+        if (crossing > 0 && crossing < length) {
+            if (this.crossingCount == this.crossings.length) {
+                this.crossings = Arrays.copyOf(this.crossings, 2 * this.crossings.length);
+            }
+            this.crossings[this.crossingCount++] = crossing;
+        }
+    }
+
+    /**
+     * Adds the shares of the minutes from to to of the current segment, within which the shares change smoothly.
+     */
+    private void sumPiece(int from, int to) {
+        int n2 = 2 * this.n;
+        if (to - from + 1 <= DIRECT_SAMPLES) {
+            double[] values = this.values[3];
+            for (int sample = from; sample <= to; sample++) {
+                evaluate(sample, values);
+                for (int k = 0; k < n2; k++) {
+                    this.sums[k] += values[k];
+                }
+            }
+            return;
+        }
+        double[] fromValues = this.values[0];
+        double[] midValues = this.values[1];
+        double[] toValues = this.values[2];
+        evaluate(from, fromValues);
+        evaluate((from + to) >>> 1, midValues);
+        evaluate(to, toValues);
+        sumRange(from, to, fromValues, midValues, toValues, this.tolerance * (to - from + 1), 0);
+    }
+
+    /**
+     * Adds the shares of the minutes from to to, given the values of the first, middle and last minute. The sum is estimated by summing the quadratic
+     * interpolation of the values; it is accepted if it agrees with the estimate from both halves, otherwise both halves are summed separately.
+     */
+    private void sumRange(int from, int to, double[] fromValues, double[] midValues, double[] toValues, double tolerance, int depth) {
+        int n2 = 2 * this.n;
+        int mid = (from + to) >>> 1;
+        if (to - from + 1 <= DIRECT_SAMPLES || depth == MAX_DEPTH) {
+            double[] values = this.values[3];
+            for (int k = 0; k < n2; k++) {
+                this.sums[k] += fromValues[k] + toValues[k] + (mid != from && mid != to ? midValues[k] : 0);
+            }
+            for (int sample = from + 1; sample < to; sample++) {
+                if (sample != mid) {
+                    evaluate(sample, values);
+                    for (int k = 0; k < n2; k++) {
+                        this.sums[k] += values[k];
+                    }
+                }
+            }
+            return;
+        }
+
+        int leftMid = (from + mid) >>> 1;
+        int rightMid = (mid + to) >>> 1;
+        double[] leftValues = this.values[4 + 3 * depth];
+        double[] rightValues = this.values[5 + 3 * depth];
+        double[] estimate = this.values[6 + 3 * depth];
+        evaluate(leftMid, leftValues);
+        evaluate(rightMid, rightValues);
+
+        double[] w = this.weights;
+        interpolationWeights(from, mid, to, w, 0);
+        interpolationWeights(from, leftMid, mid, w, 3);
+        interpolationWeights(mid, rightMid, to, w, 6);
+        double error = 0;
+        for (int k = 0; k < n2; k++) {
+            double wholeSum = w[0] * fromValues[k] + w[1] * midValues[k] + w[2] * toValues[k];
+            double halvesSum = w[3] * fromValues[k] + w[4] * leftValues[k] + (w[5] + w[6] - 1) * midValues[k] + w[7] * rightValues[k] + w[8] * toValues[k];
+            estimate[k] = halvesSum;
+            if (k < this.n) {
+                error = Math.max(error, Math.abs(halvesSum - wholeSum));
+            }
+        }
+        if (depth >= MIN_DEPTH && !(error > tolerance)) {
+            for (int k = 0; k < n2; k++) {
+                this.sums[k] += estimate[k];
+            }
+            return;
+        }
+        double count = to - from + 1;
+        sumRange(from, mid, fromValues, leftValues, midValues, tolerance * (mid - from + 1) / count, depth + 1);
+        sumRange(mid, to, midValues, rightValues, toValues, tolerance * (to - mid + 1) / count, depth + 1);
+        // the middle minute was added by both halves
+        for (int k = 0; k < n2; k++) {
+            this.sums[k] -= midValues[k];
+        }
+    }
+
+    /**
+     * Stores the weights of the values at x0 &lt; x1 &lt; x2 for the sum of their quadratic interpolation over all integers from x0 to x2.
+     */
+    private static void interpolationWeights(int x0, int x1, int x2, double[] weights, int offset) {
+        // with u = x - x0, the interpolation has the nodes 0, d and l
+        double d = x1 - x0;
+        double l = x2 - x0;
+        double count = l + 1;
+        double sumU = l * (l + 1) / 2;
+        double sumU2 = l * (l + 1) * (2 * l + 1) / 6;
+        weights[offset] = (sumU2 - (d + l) * sumU + d * l * count) / (d * l);
+        weights[offset + 1] = (sumU2 - l * sumU) / (d * (d - l));
+        weights[offset + 2] = (sumU2 - d * sumU) / (l * (l - d));
+    }
+
+    /**
+     * Evaluates the shares of all routes for a minute of the current segment, followed by the shares multiplied with the adaptation times.
+     */
+    private void evaluate(int sample, double[] values) {
+        int n = this.n;
+        int j = sample - this.segmentStart;
+        double minImpedance = this.minImpedanceAtSegmentStart;
+        for (int i = 0; i < n; i++) {
+            minImpedance = Math.min(minImpedance, this.impedanceAtStart[i] + this.impedanceSlope[i] * j);
+        }
+        double utilitiesSum = 0;
+        for (int i = 0; i < n; i++) {
+            double impedance = this.impedanceAtStart[i] + this.impedanceSlope[i] * j;
+            this.utilities[i] = this.utilityCalculator.calculateUtility(impedance, minImpedance) * this.originalities[i];
+            utilitiesSum += this.utilities[i];
+        }
+        for (int i = 0; i < n; i++) {
+            double share = this.utilities[i] / utilitiesSum;
+            values[i] = share;
+            values[n + i] = share * (this.deltaAtStart[i] + this.deltaSlope[i] * j);
+        }
+    }
+}
@@ -2,6 +2,16 @@ package ch.sbb.matsim.umlego;
 
 public class RouteUtilityCalculators {
 
+	/**
+	 * Impedances up to one day are tabulated, longer ones are calculated exactly.
+	 */
+	private static final double MAX_TABULATED_IMPEDANCE = 24 * 60;
+
+	/**
+	 * Utilities are only tabulated down to exp(-MAX_TABULATED_EXPONENT), so the relative error is not affected by values close to the smallest double.
+	 */
+	private static final double MAX_TABULATED_EXPONENT = 200;
+
 	public static RouteUtilityCalculator boxcox(double beta, double tau) {
 		return (double r, double r_min) -> {
 			return Math.exp(-beta * (Math.pow(r, tau) - 1.0) / tau);
@@ -14,4 +24,30 @@ public class RouteUtilityCalculators {
 		};
 	}
 
+	/**
+	 * The box-cox utility, tabulated for impedances from one minute up to one day with the given maximal relative error.
+	 */
+	public static RouteUtilityCalculator tabulatedBoxcox(double beta, double tau, double maxRelativeError) {
+		// impedance at which the exponent reaches the limit, if there is one
+		double base = 1.0 + MAX_TABULATED_EXPONENT * tau / beta;
+		double max = base > 0 ? Math.min(Math.pow(base, 1.0 / tau), MAX_TABULATED_IMPEDANCE) : MAX_TABULATED_IMPEDANCE;
+		if (!(max > 1.0)) {
+			return boxcox(beta, tau);
+		}
+		UtilityTable table = new UtilityTable(r -> Math.exp(-beta * (Math.pow(r, tau) - 1.0) / tau), 1.0, max, maxRelativeError);
+		return (double r, double r_min) -> table.value(r);
+	}
+
+	/**
+	 * The Lohse utility, tabulated over the ratio of the impedance to the minimal impedance with the given maximal relative error.
+	 */
+	public static RouteUtilityCalculator tabulatedLohse(double beta, double maxRelativeError) {
+		double max = 1.0 + Math.sqrt(MAX_TABULATED_EXPONENT) / Math.abs(beta);
+		if (!(max > 1.0) || Double.isInfinite(max)) {
+			return lohse(beta);
+		}
+		UtilityTable table = new UtilityTable(x -> Math.exp(-Math.pow(beta * (x - 1.0), 2.0)), 1.0, max, maxRelativeError);
+		return (double r, double r_min) -> table.value(r / r_min);
+	}
+
 }
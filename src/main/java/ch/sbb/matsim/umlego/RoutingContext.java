@@ -2,18 +2,25 @@ package ch.sbb.matsim.umlego;
 
 import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
-import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import ch.sbb.matsim.umlego.routing.RouteSetCache;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Context for routing operations, encapsulating the necessary parameters and data structures.
+ *
+ * @param stopSetPerZone the connected stops of each zone as bits indexed by the stop {@code Id.index()}, for membership tests without hashing
+ * @param routeArena storage for the legs of the found routes, belongs to the transit schedule of the raptor
+ * @param routeCache persistent cache of the routes per origin stop, {@code null} if routes are not cached
  */
 public record RoutingContext(
         SwissRailRaptor raptor,
         RaptorParameters raptorParams,
         Map<String, List<Connectors.ConnectedStop>> stopsPerZone,
-        Map<String, Map<TransitStopFacility, Connectors.ConnectedStop>> stopLookupPerDestination
+        Map<String, BitSet> stopSetPerZone,
+        RouteArena routeArena,
+        RouteSetCache routeCache
 ) {
 }
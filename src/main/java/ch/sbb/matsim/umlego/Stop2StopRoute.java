@@ -1,17 +1,37 @@
 package ch.sbb.matsim.umlego;
 
+import static ch.sbb.matsim.umlego.RouteArena.DOUBLE_ARRIVAL_TIME;
+import static ch.sbb.matsim.umlego.RouteArena.DOUBLE_DEP_TIME;
+import static ch.sbb.matsim.umlego.RouteArena.DOUBLE_DISTANCE;
+import static ch.sbb.matsim.umlego.RouteArena.DOUBLE_STRIDE;
+import static ch.sbb.matsim.umlego.RouteArena.DOUBLE_VEHICLE_DEP_TIME;
+import static ch.sbb.matsim.umlego.RouteArena.INT_CHAINED;
+import static ch.sbb.matsim.umlego.RouteArena.INT_FROM_STOP;
+import static ch.sbb.matsim.umlego.RouteArena.INT_MODE;
+import static ch.sbb.matsim.umlego.RouteArena.INT_ROUTE;
+import static ch.sbb.matsim.umlego.RouteArena.INT_STRIDE;
+import static ch.sbb.matsim.umlego.RouteArena.INT_TO_STOP;
+
 import ch.sbb.matsim.routing.pt.raptor.RaptorRoute;
 import ch.sbb.matsim.umlego.demand.UnroutableDemand;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkItem;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkResult;
 import java.util.Map;
 import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * A route between two stops, consisting of pt legs and transfers.
+ * <p>
+ * The legs are stored in a {@link RouteArena} and can be read with the {@code leg*(int leg)} methods. Legs are numbered from {@code 0} to {@link #legCount()}, chained
+ * legs (staying in the same vehicle) directly follow the leg they are chained to and are marked by {@link #isChained(int)}.
+ */
 public class Stop2StopRoute {
     public final TransitStopFacility originStop;
     public final TransitStopFacility destinationStop;
@@ -20,53 +40,281 @@ public class Stop2StopRoute {
     public final double travelTimeWithoutAccess;
     public final int transfers;
     public final double distance;
-    public final List<RaptorRoute.RoutePart> routeParts = new ArrayList<>();
+    /**
+     * 64-bit hash over all properties compared in {@link #equals(Object)}, equal routes always have the same fingerprint.
+     */
+    public final long fingerprint;
+
+    private final RouteArena arena;
+    private int[] ints;
+    private double[] doubles;
+    private int offset;
+    private final int legCount;
+
+    public Stop2StopRoute(RouteArena arena, RaptorRoute route) {
+        this(arena, collectRouteParts(route), findDestinationStop(route), true);
+    }
+
+    /**
+     * Creates a route from already collected route parts. The parts must start with a pt leg and must not end with a transfer,
+     * a final transfer is only reflected in the destination stop.
+     */
+    public Stop2StopRoute(RouteArena arena, List<RouteLeg> routeParts, TransitStopFacility destinationStop) {
+        this(arena, routeParts, destinationStop, false);
+    }
+
+    /**
+     * Writes the given parts, either {@link RaptorRoute.RoutePart}s or {@link RouteLeg}s, into the arena.
+     */
+    private Stop2StopRoute(RouteArena arena, List<?> routeParts, TransitStopFacility destinationStop, boolean raptorParts) {
+        int count = 0;
+        for (Object part : routeParts) {
+            count += raptorParts ? chainLength((RaptorRoute.RoutePart) part) : chainLength((RouteLeg) part);
+        }
+        RouteArena.Chunk chunk = arena.chunkFor(count);
+        this.arena = arena;
+        this.ints = chunk.ints;
+        this.doubles = chunk.doubles;
+        this.offset = chunk.take(count);
+        this.legCount = count;
+
+        int leg = 0;
+        for (Object part : routeParts) {
+            if (raptorParts) {
+                RaptorRoute.RoutePart nextPart = (RaptorRoute.RoutePart) part;
+                while (nextPart != null) {
+                    setLeg(leg, nextPart.fromStop, nextPart.toStop, nextPart.mode, nextPart.depTime, nextPart.vehicleDepTime, nextPart.arrivalTime,
+                        nextPart.distance, nextPart.route, nextPart != part);
+                    leg++;
+                    nextPart = nextPart.chainedPart;
+                }
+            } else {
+                RouteLeg nextPart = (RouteLeg) part;
+                while (nextPart != null) {
+                    setLeg(leg, nextPart.fromStop, nextPart.toStop, nextPart.mode, nextPart.depTime, nextPart.vehicleDepTime, nextPart.arrivalTime,
+                        nextPart.distance, nextPart.route, nextPart != part);
+                    leg++;
+                    nextPart = nextPart.chainedPart;
+                }
+            }
+        }
 
-    public Stop2StopRoute(RaptorRoute route) {
         double firstDepTime = Double.NaN;
         double lastArrTime = Double.NaN;
-
         TransitStopFacility originStopFacility = null;
-        TransitStopFacility destinationStopFacility = null;
-
         double distanceSum = 0;
-        RaptorRoute.RoutePart prevTransfer = null;
         int stageCount = 0;
-        for (RaptorRoute.RoutePart part : route.getParts()) {
-            if (part.line == null) {
-                // it is a transfer
-                prevTransfer = part;
-                // still update the destination stop in case we arrive at the destination by a transfer / walk-link
-                destinationStopFacility = part.toStop;
-            } else {
+        for (int i = 0; i < count; i++) {
+            if (!isChained(i) && !isTransferLeg(i)) {
                 stageCount++;
-                if (routeParts.isEmpty()) {
+                if (originStopFacility == null) {
                     // it is the first real stage
-                    firstDepTime = part.vehicleDepTime;
-                    originStopFacility = part.fromStop;
-                } else if (prevTransfer != null) {
-                    this.routeParts.add(prevTransfer);
+                    firstDepTime = legVehicleDepTime(i);
+                    originStopFacility = legFromStop(i);
                 }
-                this.routeParts.add(part);
-                lastArrTime = part.arrivalTime;
-                destinationStopFacility = part.toStop;
-                distanceSum += part.distance;
-                var nextPart = part.chainedPart;
-                while (nextPart != null) {
-                    lastArrTime = nextPart.arrivalTime;
-                    destinationStopFacility = nextPart.toStop;
-                    distanceSum += nextPart.distance;
-                    nextPart = nextPart.chainedPart;
+                int chainEnd = chainEnd(i);
+                for (int j = i; j <= chainEnd; j++) {
+                    lastArrTime = legArrivalTime(j);
+                    distanceSum += legDistance(j);
                 }
             }
         }
         this.originStop = originStopFacility;
-        this.destinationStop = destinationStopFacility;
+        this.destinationStop = destinationStop;
         this.depTime = firstDepTime;
         this.arrTime = lastArrTime;
         this.travelTimeWithoutAccess = this.arrTime - this.depTime;
         this.transfers = stageCount - 1;
         this.distance = distanceSum;
+        this.fingerprint = computeFingerprint();
+    }
+
+    private long computeFingerprint() {
+        long h = mix(Double.doubleToLongBits(this.depTime));
+        h = mix(h ^ Double.doubleToLongBits(this.arrTime));
+        h = mix(h ^ this.transfers);
+        h = mix(h ^ (this.originStop == null ? -1 : this.originStop.getId().index()));
+        h = mix(h ^ (this.destinationStop == null ? -1 : this.destinationStop.getId().index()));
+        for (int leg = 0; leg < this.legCount; leg++) {
+            if (!isChained(leg)) {
+                TransitLine line = legLine(leg);
+                TransitRoute route = legRoute(leg);
+                h = mix(h ^ (line == null ? -1 : line.getId().index()));
+                h = mix(h ^ (route == null ? -1 : route.getId().index()));
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads every input bit over the whole result.
+     */
+    private static long mix(long z) {
+        z = (z + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void setLeg(int leg, TransitStopFacility fromStop, TransitStopFacility toStop, String mode, double depTime, double vehicleDepTime, double arrivalTime,
+        double distance, TransitRoute route, boolean chained) {
+        int i = (this.offset + leg) * INT_STRIDE;
+        this.ints[i + INT_FROM_STOP] = this.arena.stopIndex(fromStop);
+        this.ints[i + INT_TO_STOP] = this.arena.stopIndex(toStop);
+        this.ints[i + INT_ROUTE] = this.arena.routeIndex(route);
+        this.ints[i + INT_MODE] = this.arena.modeIndex(mode);
+        this.ints[i + INT_CHAINED] = chained ? 1 : 0;
+        int d = (this.offset + leg) * DOUBLE_STRIDE;
+        this.doubles[d + DOUBLE_DEP_TIME] = depTime;
+        this.doubles[d + DOUBLE_VEHICLE_DEP_TIME] = vehicleDepTime;
+        this.doubles[d + DOUBLE_ARRIVAL_TIME] = arrivalTime;
+        this.doubles[d + DOUBLE_DISTANCE] = distance;
+    }
+
+    private static int chainLength(RaptorRoute.RoutePart part) {
+        int length = 0;
+        for (RaptorRoute.RoutePart p = part; p != null; p = p.chainedPart) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int chainLength(RouteLeg part) {
+        int length = 0;
+        for (RouteLeg p = part; p != null; p = p.chainedPart) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Collects the relevant parts of the route: transfers before the first and after the last pt leg are skipped.
+     */
+    private static List<RaptorRoute.RoutePart> collectRouteParts(RaptorRoute route) {
+        List<RaptorRoute.RoutePart> parts = new ArrayList<>();
+        RaptorRoute.RoutePart prevTransfer = null;
+        for (RaptorRoute.RoutePart part : route.getParts()) {
+            if (part.line == null) {
+                // it is a transfer
+                prevTransfer = part;
+            } else {
+                if (!parts.isEmpty() && prevTransfer != null) {
+                    parts.add(prevTransfer);
+                }
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Returns the stop where the route arrives, which might be reached by a final transfer / walk-link.
+     */
+    private static TransitStopFacility findDestinationStop(RaptorRoute route) {
+        TransitStopFacility destinationStopFacility = null;
+        for (RaptorRoute.RoutePart part : route.getParts()) {
+            RaptorRoute.RoutePart nextPart = part;
+            while (nextPart != null) {
+                destinationStopFacility = nextPart.toStop;
+                nextPart = nextPart.chainedPart;
+            }
+        }
+        return destinationStopFacility;
+    }
+
+    /**
+     * Moves the legs of this route into the given chunk, so the chunk the route was written to can be released once it only holds unused routes. Must only
+     * be called as long as the route is used by a single thread.
+     */
+    void moveTo(RouteArena.Chunk chunk) {
+        int newOffset = chunk.take(this.legCount);
+        System.arraycopy(this.ints, this.offset * INT_STRIDE, chunk.ints, newOffset * INT_STRIDE, this.legCount * INT_STRIDE);
+        System.arraycopy(this.doubles, this.offset * DOUBLE_STRIDE, chunk.doubles, newOffset * DOUBLE_STRIDE, this.legCount * DOUBLE_STRIDE);
+        this.ints = chunk.ints;
+        this.doubles = chunk.doubles;
+        this.offset = newOffset;
+    }
+
+    /**
+     * Number of legs, including chained legs.
+     */
+    public int legCount() {
+        return this.legCount;
+    }
+
+    /**
+     * Returns true if the leg continues the previous leg in the same vehicle.
+     */
+    public boolean isChained(int leg) {
+        return this.ints[(this.offset + leg) * INT_STRIDE + INT_CHAINED] != 0;
+    }
+
+    /**
+     * Returns true if the leg is a transfer, i.e. not served by a transit line.
+     */
+    public boolean isTransferLeg(int leg) {
+        return this.ints[(this.offset + leg) * INT_STRIDE + INT_ROUTE] < 0;
+    }
+
+    /**
+     * Returns the last leg of the chain starting at the given leg, which is the leg itself if no legs are chained to it.
+     */
+    public int chainEnd(int leg) {
+        int end = leg;
+        while (end + 1 < this.legCount && isChained(end + 1)) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the arrival time at the end of the last leg chained to the given leg.
+     */
+    public double legChainedArrivalTime(int leg) {
+        return legArrivalTime(chainEnd(leg));
+    }
+
+    public TransitStopFacility legFromStop(int leg) {
+        return this.arena.stop(this.ints[(this.offset + leg) * INT_STRIDE + INT_FROM_STOP]);
+    }
+
+    public TransitStopFacility legToStop(int leg) {
+        return this.arena.stop(this.ints[(this.offset + leg) * INT_STRIDE + INT_TO_STOP]);
+    }
+
+    public String legMode(int leg) {
+        return this.arena.mode(this.ints[(this.offset + leg) * INT_STRIDE + INT_MODE]);
+    }
+
+    public TransitRoute legRoute(int leg) {
+        return this.arena.route(this.ints[(this.offset + leg) * INT_STRIDE + INT_ROUTE]);
+    }
+
+    /**
+     * @return the number of stops the vehicle serves between the from and the to stop of the leg, or -1 if the leg is no pt leg
+     */
+    public int legIntermediateStopCount(int leg) {
+        int base = (this.offset + leg) * INT_STRIDE;
+        return this.arena.intermediateStopCount(this.ints[base + INT_ROUTE], this.ints[base + INT_FROM_STOP], this.ints[base + INT_TO_STOP]);
+    }
+
+    public TransitLine legLine(int leg) {
+        return this.arena.line(this.ints[(this.offset + leg) * INT_STRIDE + INT_ROUTE]);
+    }
+
+    public double legDepTime(int leg) {
+        return this.doubles[(this.offset + leg) * DOUBLE_STRIDE + DOUBLE_DEP_TIME];
+    }
+
+    public double legVehicleDepTime(int leg) {
+        return this.doubles[(this.offset + leg) * DOUBLE_STRIDE + DOUBLE_VEHICLE_DEP_TIME];
+    }
+
+    public double legArrivalTime(int leg) {
+        return this.doubles[(this.offset + leg) * DOUBLE_STRIDE + DOUBLE_ARRIVAL_TIME];
+    }
+
+    public double legDistance(int leg) {
+        return this.doubles[(this.offset + leg) * DOUBLE_STRIDE + DOUBLE_DISTANCE];
     }
 
     @Override
@@ -78,27 +326,42 @@ public class Stop2StopRoute {
             return false;
         }
         Stop2StopRoute that = (Stop2StopRoute) o;
+        if (this.fingerprint != that.fingerprint) {
+            return false;
+        }
         boolean isEqual = Double.compare(depTime, that.depTime) == 0
                 && Double.compare(arrTime, that.arrTime) == 0
                 && transfers == that.transfers
                 && Objects.equals(originStop.getId(), that.originStop.getId())
                 && Objects.equals(destinationStop.getId(), that.destinationStop.getId());
         if (isEqual) {
-            // also check route parts
-            for (int i = 0; i < routeParts.size(); i++) {
-                RaptorRoute.RoutePart routePartThis = this.routeParts.get(i);
-                RaptorRoute.RoutePart routePartThat = that.routeParts.get(i);
+            // also check the lines and routes of all route parts, chained legs are not compared
+            int legThat = 0;
+            for (int legThis = 0; legThis < this.legCount; legThis++) {
+                if (this.isChained(legThis)) {
+                    continue;
+                }
+                while (legThat < that.legCount && that.isChained(legThat)) {
+                    legThat++;
+                }
+                if (legThat == that.legCount) {
+                    return false;
+                }
+                TransitLine lineThis = this.legLine(legThis);
+                TransitLine lineThat = that.legLine(legThat);
+                TransitRoute routeThis = this.legRoute(legThis);
+                TransitRoute routeThat = that.legRoute(legThat);
 
                 boolean partIsEqual =
-                        ((routePartThis.line == null && routePartThat.line == null) || (routePartThis.line != null
-                                && routePartThat.line != null && Objects.equals(routePartThis.line.getId(),
-                                routePartThat.line.getId())))
-                                && ((routePartThis.route == null && routePartThat.route == null) || (
-                                routePartThis.route != null && routePartThat.route != null && Objects.equals(
-                                        routePartThis.route.getId(), routePartThat.route.getId())));
+                        ((lineThis == null && lineThat == null) || (lineThis != null
+                                && lineThat != null && Objects.equals(lineThis.getId(), lineThat.getId())))
+                                && ((routeThis == null && routeThat == null) || (
+                                routeThis != null && routeThat != null && Objects.equals(
+                                        routeThis.getId(), routeThat.getId())));
                 if (!partIsEqual) {
                     return false;
                 }
+                legThat++;
             }
         }
         return isEqual;
@@ -106,42 +369,37 @@ public class Stop2StopRoute {
 
     @Override
     public int hashCode() {
-        return Objects.hash(depTime, arrTime, transfers);
+        return Long.hashCode(this.fingerprint);
     }
 
     public String getRouteAsString() {
         StringBuilder details = new StringBuilder();
-        for (RaptorRoute.RoutePart part : this.routeParts) {
-            if (part.line == null) {
+        for (int leg = 0; leg < this.legCount; leg++) {
+            if (isTransferLeg(leg)) {
                 continue;
             }
             if (!details.isEmpty()) {
-                details.append(", ");
-            }
-            details.append(getPartString(part));
-            while (part.chainedPart != null) {
-                part = part.chainedPart;
-                details.append(" => ");
-                details.append(getPartString(part));
+                details.append(isChained(leg) ? " => " : ", ");
             }
+            details.append(getPartString(leg));
         }
         return details.toString();
     }
 
-    private String getPartString(RaptorRoute.RoutePart part) {
+    private String getPartString(int leg) {
         StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(part.line.getId());
+        stringBuilder.append(legLine(leg).getId());
         stringBuilder.append(" (");
-        stringBuilder.append(part.route.getId());
+        stringBuilder.append(legRoute(leg).getId());
         stringBuilder.append(") ");
         stringBuilder.append(": ");
-        stringBuilder.append(part.fromStop.getName());
+        stringBuilder.append(legFromStop(leg).getName());
         stringBuilder.append(' ');
-        stringBuilder.append(Time.writeTime(part.vehicleDepTime));
+        stringBuilder.append(Time.writeTime(legVehicleDepTime(leg)));
         stringBuilder.append(" - ");
-        stringBuilder.append(part.toStop.getName());
+        stringBuilder.append(legToStop(leg).getName());
         stringBuilder.append(' ');
-        stringBuilder.append(Time.writeTime(part.arrivalTime));
+        stringBuilder.append(Time.writeTime(legArrivalTime(leg)));
         return stringBuilder.toString();
     }
 
@@ -10,11 +10,10 @@ import ch.sbb.matsim.umlego.workflows.interfaces.WorkResultHandler;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkflowFactory;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -92,6 +91,10 @@ public class Umlego {
 
     public void run(List<String> originZones, List<String> destinationZones, UmlegoParameters params, int threadCount, String outputFolder) throws ZoneNotFoundException, IOException {
 
+        if (params.routing().limitToDemandWindows() && !params.routeSelection().limitSelectionToTimewindow()) {
+            LOG.warn("routing.limitToDemandWindows is ignored, as routeSelection.limitSelectionToTimewindow is false and all routes of the day are selected");
+        }
+
         List<String> originZoneIds = originZones == null ? new ArrayList<>(demand.getZones().getAllZoneNos())
             : new ArrayList<>(originZones);
         originZoneIds.sort(String::compareTo);
@@ -104,35 +107,29 @@ public class Umlego {
         IntSet destinationStopIndices = workflowFactory.computeDestinationStopIndices(destinationZoneIds);
         LOG.info("Detected {} stops as potential destinations", destinationStopIndices.size());
 
-        // prepare queues with work items
-		/* Writing might actually be slower than the computation, resulting in more and more
-		   memory being used for the found routes until they get written. To prevent
-		   OutOfMemoryErrors, we use a blocking queue for the writer with a limited capacity.
-		 */
-        UmlegoWorkItemEndMarker workEndMarker = new UmlegoWorkItemEndMarker(null);
-
-        BlockingQueue<WorkItem> workerQueue = new LinkedBlockingQueue<>(5 * threadCount);
-        BlockingQueue<WorkItem> writerQueue = new LinkedBlockingQueue<>(4 * threadCount);
+        ZoneScheduler scheduler = ZoneScheduler.create(params.scheduling(), originZoneIds, this.demand, workflowFactory, threadCount);
+        originZoneIds = new ArrayList<>(scheduler.getZones());
 
-        // start worker threads
-        Thread[] threads = new Thread[threadCount];
-        for (int i = 0; i < threads.length; i++) {
-            AbstractWorker worker = workflowFactory.createWorker(
-                workerQueue, params, destinationZoneIds, this.deltaTCalculator);
-
-            threads[i] = new Thread(worker);
-            threads[i].start();
+        // one worker per thread, each with its own routing context
+        List<AbstractWorker> workers = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            workers.add(workflowFactory.createWorker(params, destinationZoneIds, this.deltaTCalculator));
         }
 
-        // start writer threads
+        // handle the results on a virtual thread, as it mostly waits for results and output
         List<WorkResultHandler<?>> handler = workflowFactory.createResultHandler(params, outputFolder, destinationZoneIds, listeners);
-        ResultWorker writerManager = new ResultWorker(writerQueue, handler, originZoneIds);
-        new Thread(writerManager).start();
-
-        // submit work items into queues
-        for (String originZoneId : originZoneIds) {
+        ResultWorker resultWorker = new ResultWorker(handler, originZoneIds, 4 * threadCount);
+        Thread.ofVirtual().name("umlego-results").start(resultWorker);
 
-            try {
+        // submit work items, the result worker limits the number of items in progress
+        ZoneTimings timings = new ZoneTimings();
+        long startNanos = System.nanoTime();
+        WorkerPool pool = new WorkerPool(workers, timings);
+        try {
+            for (String originZoneId : originZoneIds) {
+                if (pool.getFailure() != null) {
+                    break;
+                }
                 WorkItem workItem = workflowFactory.createWorkItem(originZoneId);
 
                 if (workItem.results().size() != handler.size()) {
@@ -140,29 +137,39 @@ public class Umlego {
                         workItem.results().size(), handler.size()));
                 }
 
-                writerQueue.put(workItem);
-                workerQueue.put(workItem);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        // once all zones are submitted for calculation, add the end-markers to the queues
-        try {
-            for (int i = 0; i < threadCount; i++) {
-                workerQueue.put(workEndMarker);
+                resultWorker.submit(workItem);
+                pool.submit(workItem);
             }
-            writerQueue.put(workEndMarker);
         } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while submitting the work items", e);
+        } finally {
+            pool.close();
+            // also if the submission failed, so the results submitted so far are handled and the handlers are closed
+            finishResults(resultWorker);
         }
 
+        if (pool.getFailure() != null) {
+            throw new RuntimeException("Processing of the origin zones failed", pool.getFailure());
+        }
+
+        LOG.info("Result pipeline completed.");
+        scheduler.logMakespan(timings, startNanos);
+        if (params.scheduling().useZoneTimings()) {
+            // a run of a subset of the zones keeps the timings of the other zones
+            timings.mergedWith(scheduler.getPreviousTimings()).write(Path.of(params.scheduling().zoneTimingsFile()));
+        }
+        workflowFactory.workflowCompleted();
+    }
+
+    private static void finishResults(ResultWorker resultWorker) {
         try {
+            resultWorker.finish();
+
             // Wait for the result worker to finish processing all items
             LOG.info("Waiting for result worker to complete...");
 
-            writerManager.waitForCompletion();
-
-            LOG.info("Result pipeline completed.");
+            resultWorker.waitForCompletion();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Interrupted while waiting for result worker to complete", e);
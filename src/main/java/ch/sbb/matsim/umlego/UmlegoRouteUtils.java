@@ -1,9 +1,8 @@
 package ch.sbb.matsim.umlego;
 
-import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Utility class for handling routes in the Umlego context.
@@ -15,44 +14,30 @@ public class UmlegoRouteUtils {
     }
 
     /**
-     * Shallow clone of the foundRoutes map. Demand is not copied, but can be recalculated.
+     * Shallow clone of the found routes. Demand is not copied, but can be recalculated.
      */
-    public static Map<String, List<FoundRoute>> cloneRoutes(Map<String, List<FoundRoute>> foundRoutes) {
-        Map<String, List<FoundRoute>> clone = new LinkedHashMap<>();
-        // Use the copy constructor
-        for (Map.Entry<String, List<FoundRoute>> e : foundRoutes.entrySet()) {
-            clone.put(e.getKey(), e.getValue().stream().map(FoundRoute::new).collect(Collectors.toList()));
-        }
-
-        return clone;
+    public static ZoneRoutes cloneRoutes(ZoneRoutes foundRoutes) {
+        return foundRoutes.copy();
     }
 
     /**
-     * Checks if a route starts with a transfer within the same zone.
+     * Checks if a route starts with a transfer within the same zone, with the stops of the zone as bits indexed by the stop {@code Id.index()}.
      */
-    public static boolean routeStartsWithTransferWithinSameZone(Stop2StopRoute route, Set<TransitStopFacility> zoneStops) {
-        var firstRoutePart = route.routeParts.getFirst();
-        boolean isTransfer = route.originStop != firstRoutePart.fromStop;
-        if (isTransfer) {
-            // test if both the from and to stop are in the same zone
-            return zoneStops.contains(route.originStop) && zoneStops.contains(firstRoutePart.fromStop);
+    public static boolean routeStartsWithTransferWithinSameZone(Stop2StopRoute route, BitSet zoneStops) {
+        var firstFromStop = route.legFromStop(0);
+        if (route.originStop != firstFromStop) {
+            return zoneStops.get(route.originStop.getId().index()) && zoneStops.get(firstFromStop.getId().index());
         }
         return false;
     }
 
     /**
-     * Checks if a route ends with a transfer within the same zone.
+     * Checks if a route ends with a transfer within the same zone, with the stops of the zone as bits indexed by the stop {@code Id.index()}.
      */
-    public static boolean routeEndsWithTransferWithinSameZone(Stop2StopRoute route, Set<TransitStopFacility> zoneStops) {
-        var lastRoutePart = route.routeParts.getLast();
-        while (lastRoutePart.chainedPart != null) {
-            lastRoutePart = lastRoutePart.chainedPart;
-        }
-
-        boolean isTransfer = route.destinationStop != lastRoutePart.toStop;
-        if (isTransfer) {
-            // test if both the from and to stop are in the same zone
-            return zoneStops.contains(route.destinationStop) && zoneStops.contains(lastRoutePart.toStop);
+    public static boolean routeEndsWithTransferWithinSameZone(Stop2StopRoute route, BitSet zoneStops) {
+        var lastToStop = route.legToStop(route.legCount() - 1);
+        if (route.destinationStop != lastToStop) {
+            return zoneStops.get(route.destinationStop.getId().index()) && zoneStops.get(lastToStop.getId().index());
         }
         return false;
     }
@@ -63,73 +48,221 @@ public class UmlegoRouteUtils {
      * an earlier arrival time, fewer transfers, and a better search impedance.
      */
     public static void removeDominatedRoutes(List<FoundRoute> routes) {
-        // sort ascending by departure time, then descending by arrival time
-        // if a later route is fully contained in an earlier route, remove the earlier route except it is a direct route (no transfers)
-        routes.sort((o1, o2) -> {
-            if (o1.stop2stopRoute.depTime < o2.stop2stopRoute.depTime) {
-                return -1;
-            }
-            if (o1.stop2stopRoute.depTime > o2.stop2stopRoute.depTime) {
-                return +1;
-            }
-            if (o1.stop2stopRoute.arrTime < o2.stop2stopRoute.arrTime) {
-                return +1; // descending
+        routes.sort((o1, o2) -> compareForDominance(o1.stop2stopRoute, o2.stop2stopRoute));
+        int n = routes.size();
+        if (n < 2) {
+            return;
+        }
+        double[] depTimes = new double[n];
+        double[] arrTimes = new double[n];
+        int[] transfers = new int[n];
+        double[] impedances = new double[n];
+        for (int i = 0; i < n; i++) {
+            FoundRoute route = routes.get(i);
+            depTimes[i] = route.stop2stopRoute.depTime;
+            arrTimes[i] = route.stop2stopRoute.arrTime;
+            transfers[i] = route.stop2stopRoute.transfers;
+            impedances[i] = route.searchImpedance;
+        }
+
+        BitSet dominated = findDominatedRoutes(depTimes, arrTimes, transfers, impedances);
+        if (!dominated.isEmpty()) {
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (!dominated.get(i)) {
+                    routes.set(kept++, routes.get(i));
+                }
             }
-            if (o1.stop2stopRoute.arrTime > o2.stop2stopRoute.arrTime) {
-                return -1; // descending
+            routes.subList(kept, n).clear();
+        }
+    }
+
+    /**
+     * Removes dominated routes from the candidates like {@link #removeDominatedRoutes(List)}, leaving them in the same order.
+     *
+     * @param characteristics the evaluated characteristics of the candidates, indexed by route
+     */
+    static void removeDominatedRoutes(RouteHandles candidates, RouteCharacteristics characteristics) {
+        candidates.sort((h1, h2) -> compareForDominance(candidates.route(h1), candidates.route(h2)));
+        int n = candidates.size();
+        if (n < 2) {
+            return;
+        }
+        double[] depTimes = new double[n];
+        double[] arrTimes = new double[n];
+        int[] transfers = new int[n];
+        double[] impedances = new double[n];
+        for (int i = 0; i < n; i++) {
+            long handle = candidates.handle(i);
+            Stop2StopRoute route = candidates.route(handle);
+            depTimes[i] = route.depTime;
+            arrTimes[i] = route.arrTime;
+            transfers[i] = route.transfers;
+            impedances[i] = characteristics.searchImpedance(RouteHandles.routeIndex(handle));
+        }
+
+        BitSet dominated = findDominatedRoutes(depTimes, arrTimes, transfers, impedances);
+        if (!dominated.isEmpty()) {
+            candidates.remove(dominated);
+        }
+    }
+
+    /**
+     * Sorts ascending by departure time, then descending by arrival time, then ascending by transfers. If a later route is fully contained in an earlier route,
+     * the earlier route is removed, except it is a direct route (no transfers).
+     */
+    private static int compareForDominance(Stop2StopRoute o1, Stop2StopRoute o2) {
+        if (o1.depTime < o2.depTime) {
+            return -1;
+        }
+        if (o1.depTime > o2.depTime) {
+            return +1;
+        }
+        if (o1.arrTime < o2.arrTime) {
+            return +1; // descending
+        }
+        if (o1.arrTime > o2.arrTime) {
+            return -1; // descending
+        }
+        return Integer.compare(o1.transfers, o2.transfers);
+    }
+
+    /**
+     * Finds the dominated routes among routes sorted by {@link #compareForDominance(Stop2StopRoute, Stop2StopRoute)}, given as arrays in this order.
+     *
+     * @return the positions of the dominated routes
+     */
+    private static BitSet findDominatedRoutes(double[] depTimes, double[] arrTimes, int[] transfers, double[] impedances) {
+        // route 1 is dominated by any later route 2 in this order that is contained in it, has at most as many transfers and at most the same search
+        // impedance, and is strictly better in one of these. Walking backwards, the later routes are collected per number of transfers in Fenwick trees over
+        // the arrival time, storing the minimal search impedance, so each check only takes a few prefix queries instead of a scan over the later routes.
+        int n = depTimes.length;
+        int maxTransfers = 0;
+        for (int i = 0; i < n; i++) {
+            maxTransfers = Math.max(maxTransfers, transfers[i]);
+        }
+        double[] distinctArrTimes = Arrays.stream(arrTimes).sorted().distinct().toArray();
+        int arrTimeCount = distinctArrTimes.length;
+        int[] arrRanks = new int[n];
+        for (int i = 0; i < n; i++) {
+            arrRanks[i] = Arrays.binarySearch(distinctArrTimes, arrTimes[i]);
+        }
+        double[][] minImpedanceTrees = new double[maxTransfers + 1][];
+
+        BitSet dominated = new BitSet(n);
+        // minimal impedance of the later routes with the same arrival time and transfers, but a later departure, indexed by transfers and arrival rank
+        double[] laterDepartureImpedance = new double[(maxTransfers + 1) * arrTimeCount];
+        Arrays.fill(laterDepartureImpedance, Double.POSITIVE_INFINITY);
+        IntArrayList pendingRoutes = new IntArrayList();
+        double sameRunMinImpedance = Double.POSITIVE_INFINITY;
+
+        for (int i = n - 1; i >= 0; i--) {
+            int routeTransfers = transfers[i];
+            boolean sameDeparture = i + 1 < n && depTimes[i + 1] == depTimes[i];
+            if (!sameDeparture) {
+                // all collected routes depart later than the remaining ones
+                for (int p = 0; p < pendingRoutes.size(); p++) {
+                    int pending = pendingRoutes.getInt(p);
+                    int pendingCell = transfers[pending] * arrTimeCount + arrRanks[pending];
+                    laterDepartureImpedance[pendingCell] = Math.min(laterDepartureImpedance[pendingCell], impedances[pending]);
+                }
+                pendingRoutes.clear();
             }
-            return Integer.compare(o1.stop2stopRoute.transfers, o2.stop2stopRoute.transfers);
-        });
-
-        List<Integer> dominatedRouteIndices = new ArrayList<>(routes.size());
-        for (int route1Index = 0, n = routes.size(); route1Index < n; route1Index++) {
-            FoundRoute route1 = routes.get(route1Index);
-            if (route1.stop2stopRoute.transfers == 0) {
-                // always keep direct routes
-                continue;
+            boolean sameRun = sameDeparture && arrTimes[i + 1] == arrTimes[i] && transfers[i + 1] == routeTransfers;
+            if (!sameRun) {
+                sameRunMinImpedance = Double.POSITIVE_INFINITY;
             }
-            for (int route2Index = route1Index + 1; route2Index < n; route2Index++) {
-                FoundRoute route2 = routes.get(route2Index);
 
-                if (route2.stop2stopRoute.depTime > route1.stop2stopRoute.arrTime) {
-                    // no further route can be contained in route 1
-                    break;
+            double impedance = impedances[i];
+            int arrRank = arrRanks[i];
+            // always keep direct routes
+            if (routeTransfers > 0 && !Double.isNaN(impedance)) {
+                boolean isDominated = false;
+                for (int t = 0; t < routeTransfers && !isDominated; t++) {
+                    isDominated = minImpedance(minImpedanceTrees[t], arrRank) <= impedance;
+                }
+                isDominated = isDominated
+                    || minImpedance(minImpedanceTrees[routeTransfers], arrRank - 1) <= impedance
+                    || laterDepartureImpedance[routeTransfers * arrTimeCount + arrRank] <= impedance
+                    || sameRunMinImpedance < impedance;
+                if (isDominated) {
+                    dominated.set(i);
                 }
+            }
 
-                if (route2DominatesRoute1(route2, route1)) {
-                    dominatedRouteIndices.add(route1Index);
-                    break;
+            if (!Double.isNaN(impedance)) {
+                if (minImpedanceTrees[routeTransfers] == null) {
+                    minImpedanceTrees[routeTransfers] = new double[arrTimeCount];
+                    Arrays.fill(minImpedanceTrees[routeTransfers], Double.POSITIVE_INFINITY);
                 }
+                addImpedance(minImpedanceTrees[routeTransfers], arrRank, impedance);
+                pendingRoutes.add(i);
+                sameRunMinImpedance = Math.min(sameRunMinImpedance, impedance);
             }
         }
+        return dominated;
+    }
 
-        dominatedRouteIndices.sort((i1, i2) -> Integer.compare(i2, i1)); // reverse sort, descending
-        for (Integer routeIndex : dominatedRouteIndices) {
-            routes.remove(routeIndex.intValue());
+    /**
+     * Returns the minimal impedance stored in the Fenwick tree up to and including the given rank.
+     */
+    private static double minImpedance(double[] tree, int rank) {
+        double min = Double.POSITIVE_INFINITY;
+        if (tree != null) {
+            for (int i = rank; i >= 0; i = (i & (i + 1)) - 1) {
+                min = Math.min(min, tree[i]);
+            }
         }
+        return min;
     }
 
-    private static boolean route2DominatesRoute1(FoundRoute route2, FoundRoute route1) {
-        boolean isContained = route2.stop2stopRoute.depTime >= route1.stop2stopRoute.depTime && route2.stop2stopRoute.arrTime <= route1.stop2stopRoute.arrTime;
-        boolean isStrictlyContained = isContained && (route2.stop2stopRoute.depTime > route1.stop2stopRoute.depTime || route2.stop2stopRoute.arrTime < route1.stop2stopRoute.arrTime);
-
-        boolean equalOrLessTransfers = route2.stop2stopRoute.transfers <= route1.stop2stopRoute.transfers;
-        boolean lessTransfers = route2.stop2stopRoute.transfers < route1.stop2stopRoute.transfers;
-
-        boolean equalOrBetterSearchImpedance = route1.searchImpedance >= 1.0 * route2.searchImpedance + 0.0;
-        boolean betterSearchImpedance = route1.searchImpedance > 1.0 * route2.searchImpedance + 0.0;
-
-        boolean hasStrictInequality = isStrictlyContained || lessTransfers || betterSearchImpedance;
-
-        return isContained && equalOrLessTransfers && equalOrBetterSearchImpedance && hasStrictInequality;
+    private static void addImpedance(double[] tree, int rank, double impedance) {
+        for (int i = rank; i < tree.length; i = i | (i + 1)) {
+            tree[i] = Math.min(tree[i], impedance);
+        }
     }
 
     /**
      * Sorts the routes in each list of foundRoutes by their departure time.
      */
-    public static void sortRoutesByDepartureTime(Map<String, List<FoundRoute>> foundRoutes) {
-        for (List<FoundRoute> routes : foundRoutes.values()) {
-            routes.sort(UmlegoRouteUtils::compareFoundRoutesByDepartureTime);
+    public static void sortRoutesByDepartureTime(ZoneRoutes foundRoutes) {
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            List<FoundRoute> routes = foundRoutes.get(i);
+            if (routes != null) {
+                routes.sort(UmlegoRouteUtils::compareFoundRoutesByDepartureTime);
+            }
+        }
+    }
+
+    /**
+     * Orders routes left by {@link #removeDominatedRoutes(List)} by departure time like {@link #compareFoundRoutesByDepartureTime(FoundRoute, FoundRoute)}, in
+     * linear time. The routes with equal departure time are ordered by descending arrival time, so the groups with equal arrival time are reversed within
+     * each departure time, keeping the order within each group.
+     */
+    public static void orderDominanceSortedByDepartureTime(List<FoundRoute> routes) {
+        int n = routes.size();
+        int blockStart = 0;
+        while (blockStart < n) {
+            double depTime = routes.get(blockStart).stop2stopRoute.depTime;
+            int blockEnd = blockStart + 1;
+            while (blockEnd < n && routes.get(blockEnd).stop2stopRoute.depTime == depTime) {
+                blockEnd++;
+            }
+            if (blockEnd - blockStart > 1) {
+                List<FoundRoute> block = routes.subList(blockStart, blockEnd);
+                Collections.reverse(block);
+                int groupStart = 0;
+                while (groupStart < block.size()) {
+                    double arrTime = block.get(groupStart).stop2stopRoute.arrTime;
+                    int groupEnd = groupStart + 1;
+                    while (groupEnd < block.size() && block.get(groupEnd).stop2stopRoute.arrTime == arrTime) {
+                        groupEnd++;
+                    }
+                    Collections.reverse(block.subList(groupStart, groupEnd));
+                    groupStart = groupEnd;
+                }
+            }
+            blockStart = blockEnd;
         }
     }
 
@@ -152,43 +285,80 @@ public class UmlegoRouteUtils {
         return Integer.compare(o1.stop2stopRoute.transfers, o2.stop2stopRoute.transfers);
     }
 
+    /**
+     * Sets the originality of each route to one over the number of routes with equal departure and arrival time, search impedance and transfers.
+     * <p>
+     * Routes with equal times and transfers must be next to each other, which is the case after {@link #removeDominatedRoutes(List)} or
+     * {@link #sortRoutesByDepartureTime(ZoneRoutes)}. Otherwise, the routes are sorted by departure time first.
+     */
     public static void calculateOriginality(List<FoundRoute> routes) {
-        routes.sort(UmlegoRouteUtils::compareFoundRoutesByDepartureTime);
-        for (int i = 0; i < routes.size(); i++) {
-            FoundRoute route1 = routes.get(i);
-            int countEqualRoutes = 1; // comparison with itself would always result in equality
-
-            // search for equal routes before this route
-            for (int j = i - 1; j >= 0; j--) {
-                FoundRoute route2 = routes.get(j);
-                if (route1.stop2stopRoute.depTime != route2.stop2stopRoute.depTime) {
-                    break; // because the routes are sorted, there cannot be any more equal routes
-                }
+        if (!isGroupedByTimesAndTransfers(routes)) {
+            routes.sort(UmlegoRouteUtils::compareFoundRoutesByDepartureTime);
+        }
+        int n = routes.size();
+        int groupStart = 0;
+        while (groupStart < n) {
+            Stop2StopRoute first = routes.get(groupStart).stop2stopRoute;
+            int groupEnd = groupStart + 1;
+            while (groupEnd < n && hasEqualTimesAndTransfers(routes.get(groupEnd).stop2stopRoute, first)) {
+                groupEnd++;
+            }
+            if (groupEnd - groupStart == 1) {
+                routes.get(groupStart).originality = 1.0;
+            } else {
+                setOriginalityByImpedance(routes.subList(groupStart, groupEnd));
+            }
+            groupStart = groupEnd;
+        }
+    }
 
-                boolean areEqual = (route1.stop2stopRoute.depTime == route2.stop2stopRoute.depTime)
-                        && (route1.stop2stopRoute.arrTime == route2.stop2stopRoute.arrTime)
-                        && (route1.searchImpedance == route2.searchImpedance)
-                        && route1.stop2stopRoute.transfers == route2.stop2stopRoute.transfers;
-                if (areEqual) {
-                    countEqualRoutes++;
+    private static boolean hasEqualTimesAndTransfers(Stop2StopRoute route1, Stop2StopRoute route2) {
+        return route1.depTime == route2.depTime && route1.arrTime == route2.arrTime && route1.transfers == route2.transfers;
+    }
+
+    /**
+     * Counts the routes per search impedance within a group of routes with equal times and transfers. The groups are small, so each route scans the group
+     * instead of counting in a map. Comparing with == treats -0.0 and 0.0 as equal, and a route without impedance (NaN) is only equal to itself.
+     */
+    private static void setOriginalityByImpedance(List<FoundRoute> group) {
+        int size = group.size();
+        for (int i = 0; i < size; i++) {
+            double searchImpedance = group.get(i).searchImpedance;
+            int count = 1;
+            for (int j = 0; j < size; j++) {
+                if (j != i && group.get(j).searchImpedance == searchImpedance) {
+                    count++;
                 }
             }
-            // search for equal routes after this route
-            for (int j = i + 1; j < routes.size(); j++) {
-                FoundRoute route2 = routes.get(j);
-                if (route1.stop2stopRoute.depTime != route2.stop2stopRoute.depTime) {
-                    break; // because the routes are sorted, there cannot be any more equal routes
-                }
+            group.get(i).originality = 1.0 / count;
+        }
+    }
 
-                boolean areEqual = (route1.stop2stopRoute.depTime == route2.stop2stopRoute.depTime)
-                        && (route1.stop2stopRoute.arrTime == route2.stop2stopRoute.arrTime)
-                        && (route1.searchImpedance == route2.searchImpedance)
-                        && route1.stop2stopRoute.transfers == route2.stop2stopRoute.transfers;
-                if (areEqual) {
-                    countEqualRoutes++;
+    /**
+     * Checks that the routes are ordered by departure time and that, for each departure time, the arrival times are ordered in one direction and the transfers
+     * are ascending for equal arrival times.
+     */
+    private static boolean isGroupedByTimesAndTransfers(List<FoundRoute> routes) {
+        int arrivalOrder = 0;
+        for (int i = 1; i < routes.size(); i++) {
+            Stop2StopRoute prev = routes.get(i - 1).stop2stopRoute;
+            Stop2StopRoute cur = routes.get(i).stop2stopRoute;
+            if (cur.depTime > prev.depTime) {
+                arrivalOrder = 0;
+            } else if (cur.depTime != prev.depTime) {
+                return false;
+            } else if (cur.arrTime == prev.arrTime) {
+                if (cur.transfers < prev.transfers) {
+                    return false;
+                }
+            } else {
+                int order = cur.arrTime > prev.arrTime ? 1 : cur.arrTime < prev.arrTime ? -1 : 0;
+                if (order == 0 || (arrivalOrder != 0 && order != arrivalOrder)) {
+                    return false;
                 }
+                arrivalOrder = order;
             }
-            route1.originality = 1.0 / countEqualRoutes;
         }
+        return true;
     }
 }
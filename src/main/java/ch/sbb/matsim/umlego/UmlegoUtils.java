@@ -13,6 +13,7 @@ import jakarta.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,20 +85,19 @@ public class UmlegoUtils {
             ));
     }
 
-    public static Map<String, Map<TransitStopFacility, Connectors.ConnectedStop>> getStopLookupPerDestination(List<String> destinationZoneIds,
-        Map<String, List<Connectors.ConnectedStop>> stopsPerZone) {
-        // Build the destination stop lookup map
-        var stopLookupPerDestination = new HashMap<String, Map<TransitStopFacility, Connectors.ConnectedStop>>();
-        for (String destinationZoneId : destinationZoneIds) {
-            List<Connectors.ConnectedStop> stopsPerDestinationZone = stopsPerZone.getOrDefault(destinationZoneId, List.of());
-            Map<TransitStopFacility, Connectors.ConnectedStop> destinationStopLookup = new HashMap<>();
-            for (Connectors.ConnectedStop stop : stopsPerDestinationZone) {
-                destinationStopLookup.put(stop.stopFacility(), stop);
+    /**
+     * Creates for each zone the set of its connected stops, as bits indexed by {@link Id#index()} of the stops.
+     */
+    public static Map<String, BitSet> getStopSetPerZone(Map<String, List<Connectors.ConnectedStop>> stopsPerZone) {
+        var stopSetPerZone = new HashMap<String, BitSet>();
+        for (Map.Entry<String, List<Connectors.ConnectedStop>> e : stopsPerZone.entrySet()) {
+            BitSet stops = new BitSet();
+            for (Connectors.ConnectedStop stop : e.getValue()) {
+                stops.set(stop.stopFacility().getId().index());
             }
-            stopLookupPerDestination.put(destinationZoneId, destinationStopLookup);
+            stopSetPerZone.put(e.getKey(), stops);
         }
-        return stopLookupPerDestination;
-
+        return stopSetPerZone;
     }
 
     public static RaptorParameters getRaptorParameters(Scenario scenario) {
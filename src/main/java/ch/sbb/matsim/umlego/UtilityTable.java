@@ -0,0 +1,91 @@
+package ch.sbb.matsim.umlego;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A positive function of one variable, tabulated at equidistant points and linearly interpolated in between. Outside the tabulated range, the exact function
+ * is evaluated.
+ * <p>
+ * The number of points is doubled until the relative error of the interpolation, checked against the exact function in the middle and at the quarters of
+ * every interval, is within the requested bound.
+ */
+final class UtilityTable {
+
+    private static final int INITIAL_POINTS = 1 << 10;
+    private static final int MAX_POINTS = 1 << 24;
+
+    private final DoubleUnaryOperator function;
+    private final double min;
+    private final double max;
+    private final double pointsPerUnit;
+    private final double[] values;
+
+    UtilityTable(DoubleUnaryOperator function, double min, double max, double maxRelativeError) {
+        if (!(min < max) || !(maxRelativeError > 0)) {
+            throw new IllegalArgumentException("Invalid utility table range [" + min + ", " + max + "] or error " + maxRelativeError);
+        }
+        this.function = function;
+        this.min = min;
+        this.max = max;
+        int points = INITIAL_POINTS;
+        double[] values = tabulate(function, min, max, points);
+        double error;
+        while ((error = maxRelativeError(function, min, max, values)) > maxRelativeError) {
+            if (Double.isInfinite(error)) {
+                throw new IllegalArgumentException("The utility function is not positive and finite in [" + min + ", " + max + "]");
+            }
+            if (points >= MAX_POINTS) {
+                throw new IllegalArgumentException("The utility function cannot be tabulated with a relative error of " + maxRelativeError);
+            }
+            points *= 2;
+            values = tabulate(function, min, max, points);
+        }
+        this.values = values;
+        this.pointsPerUnit = (values.length - 1) / (max - min);
+    }
+
+    double value(double x) {
+        if (x >= this.min && x < this.max) {
+            double position = (x - this.min) * this.pointsPerUnit;
+            int index = (int) position;
+            double fraction = position - index;
+            double v0 = this.values[index];
+            return v0 + fraction * (this.values[index + 1] - v0);
+        }
+        return this.function.applyAsDouble(x);
+    }
+
+    /**
+     * @return the number of tabulated points
+     */
+    int size() {
+        return this.values.length;
+    }
+
+    private static double[] tabulate(DoubleUnaryOperator function, double min, double max, int intervals) {
+        double[] values = new double[intervals + 1];
+        double step = (max - min) / intervals;
+        for (int i = 0; i <= intervals; i++) {
+            values[i] = function.applyAsDouble(min + i * step);
+        }
+        return values;
+    }
+
+    private static double maxRelativeError(DoubleUnaryOperator function, double min, double max, double[] values) {
+        int intervals = values.length - 1;
+        double step = (max - min) / intervals;
+        double maxError = 0;
+        for (int i = 0; i < intervals; i++) {
+            for (int quarter = 1; quarter <= 3; quarter++) {
+                double fraction = quarter / 4.0;
+                double exact = function.applyAsDouble(min + (i + fraction) * step);
+                if (!(exact > 0) || Double.isInfinite(exact) || !(values[i] > 0) || !(values[i + 1] > 0) || Double.isInfinite(values[i] + values[i + 1])) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                double interpolated = values[i] + fraction * (values[i + 1] - values[i]);
+                maxError = Math.max(maxError, Math.abs(interpolated - exact) / exact);
+            }
+        }
+        return maxError;
+    }
+}
@@ -0,0 +1,130 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.workflows.interfaces.WorkItem;
+import ch.sbb.matsim.umlego.workflows.interfaces.WorkResult;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Processes work items on a fixed pool of platform threads, one thread per worker. The workers hold the routing contexts, which are not thread-safe, so each
+ * task borrows an idle worker and returns it afterward.
+ * <p>
+ * If a work item fails, the results of this item and of all items not started yet are completed exceptionally. Nothing waits forever for them, and the pool
+ * can be closed once the running items are done.
+ */
+final class WorkerPool<T extends WorkItem> implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(WorkerPool.class);
+
+    private final ExecutorService executor;
+    private final BlockingQueue<AbstractWorker<T>> idleWorkers;
+    private final int threadCount;
+    private final ZoneTimings timings;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder itemCount = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder computeNanos = new LongAdder();
+
+    /**
+     * @param workers one worker per thread
+     * @param timings receives the computation time of every zone
+     */
+    WorkerPool(List<AbstractWorker<T>> workers, ZoneTimings timings) {
+        this.threadCount = workers.size();
+        this.executor = Executors.newFixedThreadPool(this.threadCount, Thread.ofPlatform().name("umlego-worker-", 0).factory());
+        this.idleWorkers = new ArrayBlockingQueue<>(this.threadCount, false, workers);
+        this.timings = timings;
+    }
+
+    /**
+     * Queues the item for processing. Items submitted after a failure are not processed, but their results are completed exceptionally.
+     */
+    void submit(T item) {
+        long submitted = System.nanoTime();
+        this.executor.execute(() -> process(item, submitted));
+    }
+
+    private void process(T item, long submittedNanos) {
+        if (this.failure.get() != null) {
+            completeExceptionally(item, new CancellationException("Skipped zone " + item.originZone() + " after an earlier failure"));
+            return;
+        }
+        // never empty, as there are as many workers as threads
+        AbstractWorker<T> worker = this.idleWorkers.poll();
+        long start = System.nanoTime();
+        try {
+            worker.processOriginZone(item);
+            long end = System.nanoTime();
+            this.timings.record(item.originZone(), start, end);
+            this.itemCount.increment();
+            this.queueWaitNanos.add(start - submittedNanos);
+            this.computeNanos.add(end - start);
+        } catch (RuntimeException | Error e) {
+            if (this.failure.compareAndSet(null, e)) {
+                LOG.error("Failed to process zone {}, skipping the remaining zones", item.originZone(), e);
+            } else {
+                LOG.error("Failed to process zone {}", item.originZone(), e);
+            }
+            completeExceptionally(item, e);
+        } finally {
+            this.idleWorkers.add(worker);
+        }
+    }
+
+    private static void completeExceptionally(WorkItem item, Throwable e) {
+        for (CompletableFuture<? extends WorkResult> result : item.results()) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the first failure of a work item, or {@code null} if all items succeeded so far
+     */
+    Throwable getFailure() {
+        return this.failure.get();
+    }
+
+    /**
+     * Waits for all submitted items to be done, stops the threads and logs how long the items waited in the queue compared to their computation time.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+        try {
+            while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.debug("Waiting for the workers to finish...");
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the workers to finish", e);
+        }
+        logMetrics();
+    }
+
+    private void logMetrics() {
+        long items = this.itemCount.sum();
+        if (items == 0) {
+            return;
+        }
+        double wallSeconds = (System.nanoTime() - this.startNanos) / 1e9;
+        double computeSeconds = this.computeNanos.sum() / 1e9;
+        double waitSeconds = this.queueWaitNanos.sum() / 1e9;
+        LOG.info("Processed {} zones on {} threads: compute {} s (avg {} ms), queue wait {} s (avg {} ms), utilization {}%",
+            items, this.threadCount, String.format("%.1f", computeSeconds), String.format("%.1f", computeSeconds * 1000 / items),
+            String.format("%.1f", waitSeconds), String.format("%.1f", waitSeconds * 1000 / items),
+            String.format("%.1f", wallSeconds > 0 ? 100 * computeSeconds / (wallSeconds * this.threadCount) : 0.0));
+    }
+}
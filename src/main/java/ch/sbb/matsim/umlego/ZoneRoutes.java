@@ -0,0 +1,87 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The found routes from one origin zone, indexed by the {@link ZonesLookup} index of the destination zone.
+ * <p>
+ * Replaces the string keyed map of routes per destination zone in the workers. Destinations without an entry return {@code null}, destinations that were searched but
+ * could not be reached have an empty list.
+ */
+public final class ZoneRoutes {
+
+    private final ZonesLookup zonesLookup;
+    private final List<FoundRoute>[] routes;
+
+    @SuppressWarnings("unchecked")
+    public ZoneRoutes(ZonesLookup zonesLookup) {
+        this.zonesLookup = zonesLookup;
+        this.routes = new List[zonesLookup.size()];
+    }
+
+    public ZonesLookup zonesLookup() {
+        return this.zonesLookup;
+    }
+
+    /**
+     * @return the number of zone indices, not the number of destinations with routes
+     */
+    public int size() {
+        return this.routes.length;
+    }
+
+    /**
+     * @return the routes to the destination zone index, or {@code null} if the destination has no entry
+     */
+    public List<FoundRoute> get(int destinationIndex) {
+        return this.routes[destinationIndex];
+    }
+
+    /**
+     * Looks up the routes by zone number, for consumers such as {@link UmlegoListener}s that work with zone numbers.
+     *
+     * @return the routes to the destination zone, or {@code null} if the destination has no entry
+     */
+    public List<FoundRoute> get(String destinationZone) {
+        return this.routes[this.zonesLookup.getIndex(destinationZone)];
+    }
+
+    public void set(int destinationIndex, List<FoundRoute> routes) {
+        this.routes[destinationIndex] = routes;
+    }
+
+    /**
+     * Shallow copy with copies of the found routes. Demand is not copied, but can be recalculated.
+     */
+    public ZoneRoutes copy() {
+        ZoneRoutes copy = new ZoneRoutes(this.zonesLookup);
+        for (int i = 0; i < this.routes.length; i++) {
+            List<FoundRoute> list = this.routes[i];
+            if (list != null) {
+                List<FoundRoute> clone = new ArrayList<>(list.size());
+                for (FoundRoute route : list) {
+                    clone.add(new FoundRoute(route));
+                }
+                copy.routes[i] = clone;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Creates a map from destination zone number to routes, ordered by zone index.
+     */
+    public Map<String, List<FoundRoute>> asMap() {
+        Map<String, List<FoundRoute>> map = new LinkedHashMap<>();
+        for (int i = 0; i < this.routes.length; i++) {
+            if (this.routes[i] != null) {
+                map.put(this.zonesLookup.getZoneNo(i), this.routes[i]);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,174 @@
+package ch.sbb.matsim.umlego;
+
+import ch.sbb.matsim.umlego.config.SchedulingParameters;
+import ch.sbb.matsim.umlego.config.ZoneOrder;
+import ch.sbb.matsim.umlego.matrix.Matrices;
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import ch.sbb.matsim.umlego.workflows.interfaces.WorkflowFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Orders the origin zones for processing and estimates the makespan, i.e. the time until all workers are done.
+ * <p>
+ * The cost of a zone is estimated from the number of connected stops times the number of destinations with demand, as every stop requires a search and every
+ * destination an assignment. If timings of a previous run are available, these are used instead and the estimate is only scaled to seconds for zones without
+ * timing.
+ */
+public final class ZoneScheduler {
+
+    private static final Logger LOG = LogManager.getLogger(ZoneScheduler.class);
+
+    private final List<String> zones;
+    private final double[] costs;
+    private final boolean costsInSeconds;
+    private final int threadCount;
+    private final ZoneTimings previousTimings;
+
+    ZoneScheduler(List<String> zones, double[] costs, boolean costsInSeconds, int threadCount) {
+        this(zones, costs, costsInSeconds, threadCount, new ZoneTimings());
+    }
+
+    private ZoneScheduler(List<String> zones, double[] costs, boolean costsInSeconds, int threadCount, ZoneTimings previousTimings) {
+        this.zones = zones;
+        this.costs = costs;
+        this.costsInSeconds = costsInSeconds;
+        this.threadCount = threadCount;
+        this.previousTimings = previousTimings;
+    }
+
+    /**
+     * Creates the schedule for the origin zones.
+     *
+     * @param originZoneIds the origin zones, ordered by zone number
+     */
+    public static ZoneScheduler create(SchedulingParameters params, List<String> originZoneIds, Matrices demand, WorkflowFactory<?> workflowFactory, int threadCount) {
+        ZonesLookup zonesLookup = demand.getZonesLookup();
+        double[] estimates = new double[originZoneIds.size()];
+        for (int i = 0; i < estimates.length; i++) {
+            String zone = originZoneIds.get(i);
+            int destinations = demand.getDemandIndex().origin(zonesLookup.getIndex(zone)).size();
+            estimates[i] = (1.0 + workflowFactory.getConnectedStopCount(zone)) * (1.0 + destinations);
+        }
+
+        double[] costs = estimates;
+        boolean costsInSeconds = false;
+        ZoneTimings previousTimings = new ZoneTimings();
+        if (params.useZoneTimings() && Files.exists(Path.of(params.zoneTimingsFile()))) {
+            previousTimings = ZoneTimings.read(Path.of(params.zoneTimingsFile()));
+            costs = fromTimings(originZoneIds, estimates, previousTimings);
+            costsInSeconds = costs != estimates;
+        }
+
+        List<String> zones = originZoneIds;
+        if (params.zoneOrder() == ZoneOrder.COST) {
+            double[] unsortedCosts = costs;
+            List<Integer> order = new ArrayList<>(originZoneIds.size());
+            for (int i = 0; i < originZoneIds.size(); i++) {
+                order.add(i);
+            }
+            // the sort is stable, so zones with equal costs stay ordered by zone number
+            order.sort(Comparator.comparingDouble((Integer i) -> unsortedCosts[i]).reversed());
+            zones = order.stream().map(originZoneIds::get).toList();
+            costs = order.stream().mapToDouble(i -> unsortedCosts[i]).toArray();
+        }
+
+        ZoneScheduler scheduler = new ZoneScheduler(zones, costs, costsInSeconds, threadCount, previousTimings);
+        if (costsInSeconds) {
+            LOG.info("Expected makespan for {} zones on {} threads: {} s", zones.size(), threadCount, String.format("%.1f", scheduler.expectedMakespan(1.0)));
+        }
+        return scheduler;
+    }
+
+    /**
+     * Uses the recorded timings, zones without timing get their estimate scaled by the ratio of timings to estimates of the other zones.
+     *
+     * @return the costs in seconds, or the estimates if no zone has a timing
+     */
+    private static double[] fromTimings(List<String> originZoneIds, double[] estimates, ZoneTimings timings) {
+        double timedSeconds = 0;
+        double timedEstimates = 0;
+        for (int i = 0; i < estimates.length; i++) {
+            Double seconds = timings.getSeconds(originZoneIds.get(i));
+            if (seconds != null) {
+                timedSeconds += seconds;
+                timedEstimates += estimates[i];
+            }
+        }
+        if (timedEstimates == 0) {
+            return estimates;
+        }
+        double scale = timedSeconds / timedEstimates;
+        double[] costs = new double[estimates.length];
+        for (int i = 0; i < estimates.length; i++) {
+            Double seconds = timings.getSeconds(originZoneIds.get(i));
+            costs[i] = seconds != null ? seconds : estimates[i] * scale;
+        }
+        return costs;
+    }
+
+    /**
+     * @return the origin zones in the order they should be processed
+     */
+    public List<String> getZones() {
+        return this.zones;
+    }
+
+    /**
+     * Simulates the workers taking the zones from a shared queue, each zone is taken by the worker that is free first.
+     *
+     * @param scale factor to convert the costs into seconds
+     * @return the time until the last worker is done
+     */
+    double expectedMakespan(double scale) {
+        PriorityQueue<Double> workerLoads = new PriorityQueue<>();
+        for (int i = 0; i < this.threadCount; i++) {
+            workerLoads.add(0.0);
+        }
+        double makespan = 0;
+        for (double cost : this.costs) {
+            double load = workerLoads.poll() + cost * scale;
+            makespan = Math.max(makespan, load);
+            workerLoads.add(load);
+        }
+        return makespan;
+    }
+
+    /**
+     * @return the timings of the previous run the schedule is based on, empty if there were none
+     */
+    public ZoneTimings getPreviousTimings() {
+        return this.previousTimings;
+    }
+
+    /**
+     * Logs the expected and the actual makespan of the run. Without timings of a previous run, the estimates are scaled to the computation time of this run.
+     *
+     * @param timings    the timings recorded by the workers
+     * @param startNanos the {@link System#nanoTime()} at which the first zone was submitted
+     */
+    public void logMakespan(ZoneTimings timings, long startNanos) {
+        if (timings.size() == 0) {
+            return;
+        }
+        double totalSeconds = timings.getTotalSeconds();
+        double scale = 1.0;
+        if (!this.costsInSeconds) {
+            double totalCosts = 0;
+            for (double cost : this.costs) {
+                totalCosts += cost;
+            }
+            scale = totalCosts > 0 ? totalSeconds / totalCosts : 0.0;
+        }
+        double actual = (timings.getLastEndNanos() - startNanos) / 1e9;
+        LOG.info("Makespan: expected {} s, actual {} s, lower bound {} s (computation time {} s on {} threads)",
+            String.format("%.1f", expectedMakespan(scale)), String.format("%.1f", actual), String.format("%.1f", totalSeconds / this.threadCount),
+            String.format("%.1f", totalSeconds), this.threadCount);
+    }
+}
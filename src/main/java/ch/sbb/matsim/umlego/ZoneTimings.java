@@ -0,0 +1,105 @@
+package ch.sbb.matsim.umlego;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computation time per origin zone, recorded by the workers. The timings can be saved and used to estimate the costs of the zones in a later run.
+ */
+public final class ZoneTimings {
+
+    private static final String HEADER = "ZONE,SECONDS";
+
+    private final Map<String, Double> secondsPerZone = new ConcurrentHashMap<>();
+    private final AtomicLong lastEndNanos = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records the computation of a zone, measured with {@link System#nanoTime()}.
+     */
+    public void record(String zone, long startNanos, long endNanos) {
+        this.secondsPerZone.put(zone, (endNanos - startNanos) / 1e9);
+        this.lastEndNanos.accumulateAndGet(endNanos, Math::max);
+    }
+
+    /**
+     * @return the computation time of the zone in seconds, or {@code null} if it was not recorded
+     */
+    public Double getSeconds(String zone) {
+        return this.secondsPerZone.get(zone);
+    }
+
+    /**
+     * @return the sum of the computation times of all zones in seconds
+     */
+    public double getTotalSeconds() {
+        return this.secondsPerZone.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the last zone was finished
+     */
+    public long getLastEndNanos() {
+        return this.lastEndNanos.get();
+    }
+
+    public int size() {
+        return this.secondsPerZone.size();
+    }
+
+    /**
+     * @return the timings of this run, completed by the previous timings of the zones that were not computed in this run
+     */
+    public ZoneTimings mergedWith(ZoneTimings previous) {
+        ZoneTimings merged = new ZoneTimings();
+        merged.secondsPerZone.putAll(previous.secondsPerZone);
+        merged.secondsPerZone.putAll(this.secondsPerZone);
+        return merged;
+    }
+
+    /**
+     * Reads timings written by {@link #write(Path)}.
+     */
+    public static ZoneTimings read(Path file) {
+        ZoneTimings timings = new ZoneTimings();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IllegalArgumentException("Unexpected header in zone timings file " + file + ": " + line);
+            }
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf(',');
+                if (separator > 0) {
+                    timings.secondsPerZone.put(line.substring(0, separator), Double.parseDouble(line.substring(separator + 1)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return timings;
+    }
+
+    /**
+     * Writes the timings ordered by zone.
+     */
+    public void write(Path file) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Double> e : new TreeMap<>(this.secondsPerZone).entrySet()) {
+                writer.write(e.getKey() + "," + String.format(Locale.US, "%.6f", e.getValue()));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
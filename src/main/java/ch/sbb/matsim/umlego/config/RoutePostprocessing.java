@@ -0,0 +1,15 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * How the found routes are prepared for the assignment. Both give the same results.
+ */
+public enum RoutePostprocessing {
+    /**
+     * Each step (characteristics, dominance, preselection, originality) is applied to all destinations before the next step.
+     */
+    STAGED,
+    /**
+     * All steps are applied per destination, with one sort of the routes. The routes are only created as {@code FoundRoute} after the preselection.
+     */
+    FUSED
+}
@@ -0,0 +1,16 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * How routes from an origin zone are searched.
+ */
+public enum RouteSearchMode {
+    /**
+     * One search per stop connected to the origin zone.
+     */
+    STOP,
+    /**
+     * One search per origin zone, starting at all connected stops at once, each delayed by its connector walk time. Only the routes that are best for the
+     * raptor over all connected stops are found, so routes from other stops that the search per stop would return can be missing.
+     */
+    ZONE
+}
@@ -6,7 +6,9 @@ public record RouteSelectionParameters(
         boolean limitSelectionToTimewindow,
         double beforeTimewindow,
         double afterTimewindow,
-        UtilityFunctionParams utilityCalculator
+        UtilityFunctionParams utilityCalculator,
+        RouteShareMode shares,
+        double shareTolerance
 ) {
 
 }
@@ -0,0 +1,16 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * How the demand of a time window is distributed over the routes.
+ */
+public enum RouteShareMode {
+    /**
+     * The route shares are calculated every minute of the time window and averaged.
+     */
+    SAMPLED,
+    /**
+     * The route shares of all minutes of the time window are summed with interpolation between a few evaluated minutes, up to the share tolerance. The
+     * time window is split where the adaptation time of a route changes its slope. Falls back to sampling if the delta T calculator is not piecewise linear.
+     */
+    INTEGRATED
+}
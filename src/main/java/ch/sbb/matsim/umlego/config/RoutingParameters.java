@@ -0,0 +1,42 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * Parameters for the route search.
+ *
+ * @param routeCacheDirectory directory where the routes found per origin stop are persisted and reused in later runs, empty to disable the cache
+ * @param routeCacheMaxRoutes maximum number of routes kept in memory and shared between all origin zones, 0 to disable the in-memory cache
+ * @param limitToDemandWindows if true, only routes departing within the time windows with demand of the origin zone, extended by
+ *                             {@link RouteSelectionParameters#beforeTimewindow()} and {@link RouteSelectionParameters#afterTimewindow()}, are searched.
+ *                             Only used with {@link RouteSelectionParameters#limitSelectionToTimewindow()}, otherwise all routes of the day are
+ *                             candidates for every time window
+ * @param maxJourneyDuration   maximum duration of a route between origin and destination stop in seconds, 0 to not limit the duration
+ * @param searchMode           whether routes are searched per origin stop or per origin zone, the route cache is only created for the search per origin stop
+ * @param pruneDominatedRoutes if true, routes are dropped during the search if another route between the same stops dominates them, the remaining routes
+ *                             are the same
+ * @param postprocessing       whether the found routes are filtered step by step for all destinations or all steps at once per destination
+ */
+public record RoutingParameters(
+        String routeCacheDirectory,
+        int routeCacheMaxRoutes,
+        boolean limitToDemandWindows,
+        double maxJourneyDuration,
+        RouteSearchMode searchMode,
+        boolean pruneDominatedRoutes,
+        RoutePostprocessing postprocessing
+) {
+
+    /**
+     * Returns true if the persistent route cache should be used.
+     */
+    public boolean useRouteCache() {
+        return routeCacheDirectory != null && !routeCacheDirectory.isBlank();
+    }
+
+    /**
+     * Returns true if routes should be limited to a maximum journey duration.
+     */
+    public boolean limitJourneyDuration() {
+        return maxJourneyDuration > 0;
+    }
+
+}
@@ -0,0 +1,22 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * Parameters for scheduling the origin zones on the worker threads.
+ *
+ * @param zoneOrder       order in which the origin zones are processed
+ * @param zoneTimingsFile file with the computation time per origin zone, used to estimate the costs if it exists and overwritten with the timings of the run, empty
+ *                        to disable
+ */
+public record SchedulingParameters(
+        ZoneOrder zoneOrder,
+        String zoneTimingsFile
+) {
+
+    /**
+     * Returns true if the computation times per zone should be read and written.
+     */
+    public boolean useZoneTimings() {
+        return zoneTimingsFile != null && !zoneTimingsFile.isBlank();
+    }
+
+}
@@ -14,7 +14,9 @@ public record UmlegoParameters(
     SkimsParameters skims,
     WriterParameters writer,
     List<String> zones,
-    WorkflowEnum workflow
+    WorkflowEnum workflow,
+    RoutingParameters routing,
+    SchedulingParameters scheduling
 ) {
 
 }
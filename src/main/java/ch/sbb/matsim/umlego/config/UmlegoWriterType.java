@@ -1,5 +1,9 @@
 package ch.sbb.matsim.umlego.config;
 
 public enum UmlegoWriterType {
-    CSV, PutSurvey, BLP, SKIM
+    CSV, PutSurvey, BLP, SKIM,
+    /**
+     * One BLP per segment of the share matrices.
+     */
+    SegmentBLP
 }
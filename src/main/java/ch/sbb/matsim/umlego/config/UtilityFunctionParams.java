@@ -8,14 +8,21 @@ import java.util.Map;
 /**
  * Utility function parameters for the route selection.
  * @param params
+ * @param tableError maximal relative error of the tabulated utility function, 0 to evaluate the function exactly
  */
-public record UtilityFunctionParams(Type type, Map<String, Double> params) {
+public record UtilityFunctionParams(Type type, Map<String, Double> params, double tableError) {
 
     /**
-     * Reads the utility function parameters and creates a RouteUtilityCalculator.
+     * Reads the utility function parameters and creates a RouteUtilityCalculator. The calculators are immutable, so a tabulated one should be created once
+     * and shared by all workers.
      */
     public RouteUtilityCalculator createUtilityCalculator() {
-
+        if (tableError > 0) {
+            return switch (type) {
+                case Type.boxcox -> RouteUtilityCalculators.tabulatedBoxcox(params.get("beta"), params.get("tau"), tableError);
+                case Type.lohse -> RouteUtilityCalculators.tabulatedLohse(params.get("beta"), tableError);
+            };
+        }
         return switch (type) {
             case Type.boxcox -> RouteUtilityCalculators.boxcox(params.get("beta"), params.get("tau"));
             case Type.lohse -> RouteUtilityCalculators.lohse(params.get("beta"));
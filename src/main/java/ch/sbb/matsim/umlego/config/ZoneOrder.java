@@ -0,0 +1,15 @@
+package ch.sbb.matsim.umlego.config;
+
+/**
+ * Order in which the origin zones are processed.
+ */
+public enum ZoneOrder {
+    /**
+     * Ordered by zone number.
+     */
+    ALPHABETICAL,
+    /**
+     * Ordered by estimated computation time, largest first, so no long running zone is started at the end of the run.
+     */
+    COST
+}
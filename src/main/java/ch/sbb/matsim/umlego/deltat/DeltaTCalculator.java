@@ -18,6 +18,39 @@ public interface DeltaTCalculator {
 	double calculateDeltaTEarly(double departureTime, double intervalStart, double intervalEnd);
 	double calculateDeltaTLate(double departureTime, double intervalStart, double intervalEnd);
 
+	/**
+	 * Calculates the early and late adaptation times of count departures for the same interval, like the scalar methods. Implementations should avoid
+	 * branches, so the loop can be vectorized.
+	 */
+	default void calculateDeltaT(double[] departureTimes, int count, double intervalStart, double intervalEnd, double[] early, double[] late) {
+		for (int i = 0; i < count; i++) {
+			early[i] = calculateDeltaTEarly(departureTimes[i], intervalStart, intervalEnd);
+			late[i] = calculateDeltaTLate(departureTimes[i], intervalStart, intervalEnd);
+		}
+	}
+
+	/**
+	 * Normalizes like {@link #normalizeDeltaT(double)} with conditional moves instead of loops, but wraps around at most once, which is enough for
+	 * differences up to 36h. Larger ones are fixed by {@link #recalculateOutOfRange}.
+	 */
+	static double normalizeDeltaTOnce(double deltaT) {
+		return deltaT - (deltaT > 12 * 3600 ? 24 * 3600 : 0.0) + (deltaT < -12 * 3600 ? 24 * 3600 : 0.0);
+	}
+
+	/**
+	 * Recalculates the adaptation times with the scalar methods for departures more than 36h away from the interval, which need more than one
+	 * wrap-around. This is a separate loop, so the loop of the batch calculation stays free of branches.
+	 */
+	static void recalculateOutOfRange(DeltaTCalculator calculator, double[] departureTimes, int count, double intervalStart, double intervalEnd,
+		double[] early, double[] late) {
+		for (int i = 0; i < count; i++) {
+			if (Math.abs(departureTimes[i] - intervalStart) > 36 * 3600 || Math.abs(departureTimes[i] - intervalEnd) > 36 * 3600) {
+				early[i] = calculator.calculateDeltaTEarly(departureTimes[i], intervalStart, intervalEnd);
+				late[i] = calculator.calculateDeltaTLate(departureTimes[i], intervalStart, intervalEnd);
+			}
+		}
+	}
+
 	default double normalizeDeltaT(double deltaT) {
 		// assume wrap-around of 24 hours for schedule
 		// normalize the delta in the range of -12h ... +12h
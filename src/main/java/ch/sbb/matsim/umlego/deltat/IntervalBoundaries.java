@@ -1,6 +1,8 @@
 package ch.sbb.matsim.umlego.deltat;
 
-public class IntervalBoundaries implements DeltaTCalculator {
+import java.util.function.DoubleConsumer;
+
+public class IntervalBoundaries implements PiecewiseLinearDeltaTCalculator {
 
 	@Override
 	public double calculateDeltaTEarly(double departureTime, double intervalStart, double intervalEnd) {
@@ -23,4 +25,19 @@ public class IntervalBoundaries implements DeltaTCalculator {
 		}
 		return 0.0;
 	}
+
+	@Override
+	public void calculateDeltaT(double[] departureTimes, int count, double intervalStart, double intervalEnd, double[] early, double[] late) {
+		for (int i = 0; i < count; i++) {
+			early[i] = Math.max(-DeltaTCalculator.normalizeDeltaTOnce(departureTimes[i] - intervalStart), 0.0);
+			late[i] = Math.max(DeltaTCalculator.normalizeDeltaTOnce(departureTimes[i] - intervalEnd), 0.0);
+		}
+		DeltaTCalculator.recalculateOutOfRange(this, departureTimes, count, intervalStart, intervalEnd, early, late);
+	}
+
+	@Override
+	public void breakpoints(double departureTime, double intervalLength, double from, double to, DoubleConsumer breakpoints) {
+		PiecewiseLinearDeltaTCalculator.addBreakpoints(departureTime, 0, from, to, breakpoints);
+		PiecewiseLinearDeltaTCalculator.addBreakpoints(departureTime, intervalLength, from, to, breakpoints);
+	}
 }
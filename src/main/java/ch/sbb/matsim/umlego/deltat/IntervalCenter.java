@@ -1,6 +1,8 @@
 package ch.sbb.matsim.umlego.deltat;
 
-public class IntervalCenter implements DeltaTCalculator {
+import java.util.function.DoubleConsumer;
+
+public class IntervalCenter implements PiecewiseLinearDeltaTCalculator {
 
 	@Override
 	public double calculateDeltaTEarly(double departureTime, double intervalStart, double intervalEnd) {
@@ -25,4 +27,20 @@ public class IntervalCenter implements DeltaTCalculator {
 		}
 		return 0.0;
 	}
+
+	@Override
+	public void calculateDeltaT(double[] departureTimes, int count, double intervalStart, double intervalEnd, double[] early, double[] late) {
+		double center = (intervalStart + intervalEnd) / 2;
+		for (int i = 0; i < count; i++) {
+			double delta = DeltaTCalculator.normalizeDeltaTOnce(departureTimes[i] - center);
+			early[i] = Math.max(-delta, 0.0);
+			late[i] = Math.max(delta, 0.0);
+		}
+		DeltaTCalculator.recalculateOutOfRange(this, departureTimes, count, intervalStart, intervalEnd, early, late);
+	}
+
+	@Override
+	public void breakpoints(double departureTime, double intervalLength, double from, double to, DoubleConsumer breakpoints) {
+		PiecewiseLinearDeltaTCalculator.addBreakpoints(departureTime, intervalLength / 2, from, to, breakpoints);
+	}
 }
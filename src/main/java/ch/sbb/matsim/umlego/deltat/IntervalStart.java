@@ -1,6 +1,8 @@
 package ch.sbb.matsim.umlego.deltat;
 
-public class IntervalStart implements DeltaTCalculator {
+import java.util.function.DoubleConsumer;
+
+public class IntervalStart implements PiecewiseLinearDeltaTCalculator {
 
 	@Override
 	public double calculateDeltaTEarly(double departureTime, double intervalStart, double intervalEnd) {
@@ -23,4 +25,19 @@ public class IntervalStart implements DeltaTCalculator {
 		}
 		return 0.0;
 	}
+
+	@Override
+	public void calculateDeltaT(double[] departureTimes, int count, double intervalStart, double intervalEnd, double[] early, double[] late) {
+		for (int i = 0; i < count; i++) {
+			double delta = DeltaTCalculator.normalizeDeltaTOnce(departureTimes[i] - intervalStart);
+			early[i] = Math.max(-delta, 0.0);
+			late[i] = Math.max(delta, 0.0);
+		}
+		DeltaTCalculator.recalculateOutOfRange(this, departureTimes, count, intervalStart, intervalEnd, early, late);
+	}
+
+	@Override
+	public void breakpoints(double departureTime, double intervalLength, double from, double to, DoubleConsumer breakpoints) {
+		PiecewiseLinearDeltaTCalculator.addBreakpoints(departureTime, 0, from, to, breakpoints);
+	}
 }
@@ -0,0 +1,36 @@
+package ch.sbb.matsim.umlego.deltat;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * A {@link DeltaTCalculator} whose adaptation times for an interval from t to t + intervalLength are linear in t between the times passed by
+ * {@link #breakpoints(double, double, double, double, DoubleConsumer)}, so route shares can be integrated instead of sampled.
+ */
+public interface PiecewiseLinearDeltaTCalculator extends DeltaTCalculator {
+
+	/**
+	 * Passes the interval starts t within (from, to) at which the adaptation times of the departure for an interval from t to t + intervalLength
+	 * change from one linear piece to another.
+	 */
+	void breakpoints(double departureTime, double intervalLength, double from, double to, DoubleConsumer breakpoints);
+
+	/**
+	 * Passes the times t within (from, to) at which departureTime - (t + offset) is zero or at a boundary of {@link #normalizeDeltaT(double)}.
+	 */
+	static void addBreakpoints(double departureTime, double offset, double from, double to, DoubleConsumer breakpoints) {
+		double zero = departureTime - offset;
+		if (zero > from && zero < to) {
+			breakpoints.accept(zero);
+		}
+		for (double wrap = zero - 12 * 3600; wrap > from; wrap -= 24 * 3600) {
+			if (wrap < to) {
+				breakpoints.accept(wrap);
+			}
+		}
+		for (double wrap = zero + 12 * 3600; wrap < to; wrap += 24 * 3600) {
+			if (wrap > from) {
+				breakpoints.accept(wrap);
+			}
+		}
+	}
+}
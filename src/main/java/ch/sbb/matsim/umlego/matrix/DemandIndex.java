@@ -0,0 +1,150 @@
+package ch.sbb.matsim.umlego.matrix;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Sparse index of the demand matrices. Stores for each origin zone the destination zones with demand, and for each of these destinations the time windows with demand.
+ * <p>
+ * Zones are identified by their {@link ZonesLookup} index, time windows by their position in {@link Matrices#getDemandMatrices()}. The index only tells where demand
+ * is, the values are still read from the matrices.
+ */
+public final class DemandIndex {
+
+    private static final OriginDemand NO_DEMAND = new OriginDemand(new int[0], new int[1], new int[0]);
+
+    private final OriginDemand[] origins;
+    private final long entryCount;
+
+    private DemandIndex(OriginDemand[] origins) {
+        this.origins = origins;
+        this.entryCount = Arrays.stream(origins).mapToLong(OriginDemand::size).sum();
+    }
+
+    /**
+     * Creates the index over all cells with a positive value.
+     *
+     * @param matrices the demand matrices, ordered by time window
+     */
+    public static DemandIndex create(List<DemandMatrix> matrices) {
+        int zoneCount = matrices.isEmpty() ? 0 : matrices.getFirst().getData().length;
+        OriginDemand[] origins = IntStream.range(0, zoneCount).parallel()
+            .mapToObj(origin -> createOrigin(matrices, origin, zoneCount))
+            .toArray(OriginDemand[]::new);
+        return new DemandIndex(origins);
+    }
+
+    private static OriginDemand createOrigin(List<DemandMatrix> matrices, int origin, int zoneCount) {
+        // count the windows with demand per destination, then fill the windows grouped by destination
+        int[] windowCounts = new int[zoneCount];
+        int cellCount = 0;
+        for (DemandMatrix matrix : matrices) {
+            double[] row = matrix.getData()[origin];
+            for (int d = 0; d < zoneCount; d++) {
+                if (row[d] > 0) {
+                    windowCounts[d]++;
+                    cellCount++;
+                }
+            }
+        }
+        if (cellCount == 0) {
+            return NO_DEMAND;
+        }
+
+        int destinationCount = 0;
+        for (int count : windowCounts) {
+            if (count > 0) {
+                destinationCount++;
+            }
+        }
+        int[] destinations = new int[destinationCount];
+        int[] windowOffsets = new int[destinationCount + 1];
+        int[] next = new int[zoneCount];
+        int k = 0;
+        for (int d = 0; d < zoneCount; d++) {
+            if (windowCounts[d] > 0) {
+                destinations[k] = d;
+                next[d] = windowOffsets[k];
+                windowOffsets[k + 1] = windowOffsets[k] + windowCounts[d];
+                k++;
+            }
+        }
+
+        int[] windows = new int[cellCount];
+        for (int w = 0; w < matrices.size(); w++) {
+            double[] row = matrices.get(w).getData()[origin];
+            for (int d = 0; d < zoneCount; d++) {
+                if (row[d] > 0) {
+                    windows[next[d]++] = w;
+                }
+            }
+        }
+        return new OriginDemand(destinations, windowOffsets, windows);
+    }
+
+    /**
+     * @return the demand of the origin zone with the given index
+     */
+    public OriginDemand origin(int originIndex) {
+        return originIndex < this.origins.length ? this.origins[originIndex] : NO_DEMAND;
+    }
+
+    /**
+     * @return the number of origin-destination pairs with demand
+     */
+    public long size() {
+        return this.entryCount;
+    }
+
+    /**
+     * The destinations with demand of one origin zone, in ascending order of their index.
+     */
+    public static final class OriginDemand {
+
+        private final int[] destinations;
+        private final int[] windowOffsets;
+        private final int[] windows;
+
+        private OriginDemand(int[] destinations, int[] windowOffsets, int[] windows) {
+            this.destinations = destinations;
+            this.windowOffsets = windowOffsets;
+            this.windows = windows;
+        }
+
+        /**
+         * @return the number of destinations with demand
+         */
+        public int size() {
+            return this.destinations.length;
+        }
+
+        /**
+         * @return the zone index of the k-th destination
+         */
+        public int destination(int k) {
+            return this.destinations[k];
+        }
+
+        /**
+         * @return the position of the first time window of the k-th destination, use with {@link #window(int)}
+         */
+        public int windowsStart(int k) {
+            return this.windowOffsets[k];
+        }
+
+        /**
+         * @return the position after the last time window of the k-th destination
+         */
+        public int windowsEnd(int k) {
+            return this.windowOffsets[k + 1];
+        }
+
+        /**
+         * @return the time window at the given position, as index into {@link Matrices#getDemandMatrices()}
+         */
+        public int window(int position) {
+            return this.windows[position];
+        }
+    }
+}
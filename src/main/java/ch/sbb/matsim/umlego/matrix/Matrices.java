@@ -21,12 +21,17 @@ public class Matrices {
     @Getter private Zones zones;
     private final Map<TimeWindow, DemandMatrix> demandMatricesByTimewindow;
     private final Map<String, ShareMatrix> shareMatricesBySegment;
+    private final List<DemandMatrix> demandMatrices;
+    private DemandIndex demandIndex;
 
     public Matrices(List<AbstractMatrix> matrices, Zones zones, ZonesLookup zonesLookup) {
         this.zones = zones;
         this.zonesLookup = zonesLookup;
         this.demandMatricesByTimewindow = matrices.stream().filter(m -> m instanceof DemandMatrix).map(m -> (DemandMatrix) m).collect(Collectors.toMap(DemandMatrix::getTimeWindow, m -> m));
         this.shareMatricesBySegment = matrices.stream().filter(m -> m instanceof ShareMatrix).map(m -> (ShareMatrix) m).collect(Collectors.toMap(ShareMatrix::getSegment, m -> m));
+        this.demandMatrices = this.demandMatricesByTimewindow.values().stream()
+            .sorted(Comparator.comparingInt(m -> m.getTimeWindow().startTimeInclusiveMin()))
+            .toList();
 
         LOG.info("Loaded {} demand matrices and {} share matrices for {} zones.",
             this.demandMatricesByTimewindow.size(), this.shareMatricesBySegment.size(), this.zones.getAllZoneNos().size());
@@ -36,6 +41,8 @@ public class Matrices {
         LOG.info("- Demand Total: {}", this.getSum());
         LOG.info("- Segment Shares: {}", this.getSegments());
 
+        this.demandIndex = DemandIndex.create(this.demandMatrices);
+        LOG.info("- OD pairs with demand: {}", this.demandIndex.size());
     }
 
     private void validateShareMatrices() {
@@ -68,15 +75,27 @@ public class Matrices {
     }
 
     public List<DemandMatrix> getDemandMatrices() {
-        return this.demandMatricesByTimewindow.values().stream()
-            .sorted(Comparator.comparingInt(m -> m.getTimeWindow().startTimeInclusiveMin()))
-            .toList();
+        return this.demandMatrices;
+    }
+
+    /**
+     * Returns the sparse index of the demand, the time windows of the index refer to the positions in {@link #getDemandMatrices()}.
+     */
+    public DemandIndex getDemandIndex() {
+        return this.demandIndex;
     }
 
     public List<String> getSegments() {
         return this.shareMatricesBySegment.keySet().stream().sorted().toList();
     }
 
+    /**
+     * Returns the share matrices in the order of {@link #getSegments()}.
+     */
+    public List<ShareMatrix> getShareMatrices() {
+        return getSegments().stream().map(this.shareMatricesBySegment::get).toList();
+    }
+
     public List<TimeWindow> getTimeWindows() {
         return this.demandMatricesByTimewindow.values().stream()
             .map(DemandMatrix::getTimeWindow)
@@ -95,6 +114,7 @@ public class Matrices {
      */
     public void multiplyWith(Matrix matrix) {
         this.demandMatricesByTimewindow.values().forEach((v) -> v.multiplyWith(matrix));
+        this.demandIndex = DemandIndex.create(this.demandMatrices);
     }
 
     public double getMatrixValue(String fromZoneNo, String toZoneNo, TimeWindow timeWindow) throws ZoneNotFoundException {
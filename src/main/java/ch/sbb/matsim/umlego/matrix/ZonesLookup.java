@@ -5,9 +5,18 @@ import java.util.Map;
 public class ZonesLookup {
 
     Map<String, Integer> indexByNo;
+    private final String[] noByIndex;
 
     public ZonesLookup(Map<String, Integer> indexByNo) {
         this.indexByNo = indexByNo;
+        int size = 0;
+        for (int index : indexByNo.values()) {
+            size = Math.max(size, index + 1);
+        }
+        this.noByIndex = new String[size];
+        for (Map.Entry<String, Integer> e : indexByNo.entrySet()) {
+            this.noByIndex[e.getValue()] = e.getKey();
+        }
     }
 
     public int getIndex(String zoneNo) {
@@ -18,4 +27,26 @@ public class ZonesLookup {
         return index;
     }
 
+    /**
+     * @return the index of the zone, or -1 if the zone is not in the lookup
+     */
+    public int findIndex(String zoneNo) {
+        Integer index = this.indexByNo.get(zoneNo);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the zone number at the given index, or {@code null} if no zone uses this index
+     */
+    public String getZoneNo(int index) {
+        return this.noByIndex[index];
+    }
+
+    /**
+     * @return the number of indices, i.e. the largest index plus one
+     */
+    public int size() {
+        return this.noByIndex.length;
+    }
+
 }
@@ -0,0 +1,240 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.RouteArena;
+import ch.sbb.matsim.umlego.RouteLeg;
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Persists the routes found from an origin stop on disk, so they can be reused by later runs with the same inputs.
+ * <p>
+ * The routes of an origin stop are always calculated for all possible destination stops, independent of the demand of the current origin zone. The cache is stored in a
+ * sub-directory named after the {@link RouteSetFingerprint fingerprint} of the inputs, so a changed schedule, changed connectors or changed routing parameters never
+ * reuse outdated routes.
+ */
+public final class DiskRouteSetCache implements RouteSetCache {
+
+    private static final Logger LOG = LogManager.getLogger(DiskRouteSetCache.class);
+
+    private static final int MAGIC = 0x554d5243;
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final TransitSchedule schedule;
+    private final RouteArena arena;
+    private final IntSet destinationStopIndices;
+
+    private DiskRouteSetCache(Path directory, TransitSchedule schedule, RouteArena arena, IntSet destinationStopIndices) {
+        this.directory = directory;
+        this.schedule = schedule;
+        this.arena = arena;
+        this.destinationStopIndices = destinationStopIndices;
+    }
+
+    /**
+     * Creates the cache for the given inputs inside the base directory.
+     *
+     * @param baseDirectory the directory containing the caches of all fingerprints
+     * @param schedule the transit schedule used for routing, also used to resolve the ids of cached routes
+     * @param arena the arena to store the loaded routes in
+     * @param stopsPerZone the connectors of all zones
+     * @param destinationStopIndices all stops connected to any destination zone
+     * @param maxTransfers the maximum number of transfers
+     * @param raptorParams the parameters of the route search
+     */
+    public static DiskRouteSetCache create(String baseDirectory, TransitSchedule schedule, RouteArena arena, Map<String, List<ConnectedStop>> stopsPerZone, IntSet destinationStopIndices,
+        int maxTransfers, RaptorParameters raptorParams) {
+        String fingerprint = RouteSetFingerprint.compute(schedule, stopsPerZone, destinationStopIndices, maxTransfers, raptorParams);
+        Path directory = Path.of(baseDirectory, fingerprint);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOG.info("Using route cache in {}", directory);
+        return new DiskRouteSetCache(directory, schedule, arena, destinationStopIndices);
+    }
+
+    @Override
+    public IntSet destinationStopIndices() {
+        return this.destinationStopIndices;
+    }
+
+    @Override
+    public List<Stop2StopRoute> load(TransitStopFacility originStop) {
+        Path file = getFile(originStop);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a route cache file of version " + VERSION);
+            }
+            int routeCount = in.readInt();
+            if (routeCount < 0) {
+                throw new IOException("invalid route count " + routeCount);
+            }
+            List<Stop2StopRoute> routes = new ArrayList<>(routeCount);
+            for (int i = 0; i < routeCount; i++) {
+                TransitStopFacility destinationStop = getStop(in.readUTF());
+                int legCount = in.readInt();
+                if (legCount < 0) {
+                    throw new IOException("invalid leg count " + legCount);
+                }
+                List<RouteLeg> legs = new ArrayList<>(legCount);
+                for (int j = 0; j < legCount; j++) {
+                    legs.add(readLeg(in));
+                }
+                routes.add(new Stop2StopRoute(this.arena, legs, destinationStop));
+            }
+            return routes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (UnknownIdException e) {
+            LOG.warn("Ignoring cached routes from stop {}: {}", originStop.getId(), e.getMessage());
+            return null;
+        } catch (IOException e) {
+            // a truncated or corrupt file, e.g. from an interrupted run, is calculated again and overwritten
+            LOG.warn("Ignoring unreadable cached routes from stop {}: {}", originStop.getId(), e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void store(TransitStopFacility originStop, List<Stop2StopRoute> routes) {
+        Path file = getFile(originStop);
+        Path tmpFile = null;
+        try {
+            tmpFile = Files.createTempFile(this.directory, "routes", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(routes.size());
+                for (Stop2StopRoute route : routes) {
+                    out.writeUTF(route.destinationStop.getId().toString());
+                    int partCount = 0;
+                    for (int leg = 0; leg < route.legCount(); leg++) {
+                        if (!route.isChained(leg)) {
+                            partCount++;
+                        }
+                    }
+                    out.writeInt(partCount);
+                    for (int leg = 0; leg < route.legCount(); leg++) {
+                        if (!route.isChained(leg)) {
+                            writeLeg(out, route, leg);
+                        }
+                    }
+                }
+            }
+            // another worker might store the same stop concurrently, both write identical content
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the routes are only missing in the cache, they are calculated again by the next run
+            LOG.warn("Could not store the routes from stop {} in the cache: {}", originStop.getId(), e.toString());
+        } finally {
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException e) {
+                    LOG.warn("Could not delete {}: {}", tmpFile, e.toString());
+                }
+            }
+        }
+    }
+
+    private Path getFile(TransitStopFacility stop) {
+        return this.directory.resolve(URLEncoder.encode(stop.getId().toString(), StandardCharsets.UTF_8) + ".bin");
+    }
+
+    private static void writeLeg(DataOutputStream out, Stop2StopRoute route, int leg) throws IOException {
+        out.writeUTF(route.legFromStop(leg).getId().toString());
+        out.writeUTF(route.legToStop(leg).getId().toString());
+        boolean isTransfer = route.isTransferLeg(leg);
+        out.writeBoolean(!isTransfer);
+        if (!isTransfer) {
+            out.writeUTF(route.legLine(leg).getId().toString());
+            out.writeUTF(route.legRoute(leg).getId().toString());
+        }
+        String mode = route.legMode(leg);
+        out.writeBoolean(mode != null);
+        if (mode != null) {
+            out.writeUTF(mode);
+        }
+        out.writeDouble(route.legDepTime(leg));
+        out.writeDouble(route.legVehicleDepTime(leg));
+        out.writeDouble(route.legArrivalTime(leg));
+        out.writeDouble(route.legDistance(leg));
+        boolean hasChained = leg + 1 < route.legCount() && route.isChained(leg + 1);
+        out.writeBoolean(hasChained);
+        if (hasChained) {
+            writeLeg(out, route, leg + 1);
+        }
+    }
+
+    private RouteLeg readLeg(DataInputStream in) throws IOException {
+        TransitStopFacility fromStop = getStop(in.readUTF());
+        TransitStopFacility toStop = getStop(in.readUTF());
+        TransitLine line = null;
+        TransitRoute route = null;
+        if (in.readBoolean()) {
+            String lineId = in.readUTF();
+            String routeId = in.readUTF();
+            line = lookup(this.schedule.getTransitLines(), lineId, TransitLine.class);
+            route = line == null ? null : lookup(line.getRoutes(), routeId, TransitRoute.class);
+            if (route == null) {
+                throw new UnknownIdException("transit route " + lineId + "/" + routeId);
+            }
+        }
+        String mode = in.readBoolean() ? in.readUTF() : null;
+        double depTime = in.readDouble();
+        double vehicleDepTime = in.readDouble();
+        double arrivalTime = in.readDouble();
+        double distance = in.readDouble();
+        RouteLeg chainedPart = in.readBoolean() ? readLeg(in) : null;
+        return new RouteLeg(fromStop, toStop, mode, depTime, vehicleDepTime, arrivalTime, distance, line, route, chainedPart);
+    }
+
+    private TransitStopFacility getStop(String stopId) {
+        TransitStopFacility stop = lookup(this.schedule.getFacilities(), stopId, TransitStopFacility.class);
+        if (stop == null) {
+            throw new UnknownIdException("stop " + stopId);
+        }
+        return stop;
+    }
+
+    /**
+     * Looks up an object of the schedule without creating an id, so the ids of outdated cache files do not end up in the global id registry.
+     */
+    private static <T> T lookup(Map<Id<T>, ? extends T> objects, String key, Class<T> type) {
+        Id<T> id = Id.get(key, type);
+        return id == null ? null : objects.get(id);
+    }
+
+    private static final class UnknownIdException extends RuntimeException {
+
+        UnknownIdException(String message) {
+            super("unknown " + message);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Keeps the routes found from origin stops in memory, so stops connected to several zones are only routed once.
+ * <p>
+ * The cache is bounded by the total number of cached routes, the least recently used route sets are evicted first. Optionally, a second (persistent) cache can be used
+ * for entries not found in memory.
+ */
+public final class MemoryRouteSetCache implements RouteSetCache {
+
+    private static final Logger LOG = LogManager.getLogger(MemoryRouteSetCache.class);
+
+    private final long maxRoutes;
+    private final IntSet destinationStopIndices;
+    private final RouteSetCache delegate;
+
+    /**
+     * Route sets in access order, guarded by {@code this}.
+     */
+    private final LinkedHashMap<TransitStopFacility, List<Stop2StopRoute>> routesPerStop = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRoutes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder delegateHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxRoutes the maximum number of routes to keep in memory, summed over all origin stops
+     * @param destinationStopIndices all stops connected to any destination zone
+     * @param delegate cache to use for entries not found in memory, may be {@code null}
+     */
+    public MemoryRouteSetCache(long maxRoutes, IntSet destinationStopIndices, RouteSetCache delegate) {
+        this.maxRoutes = maxRoutes;
+        this.destinationStopIndices = delegate == null ? destinationStopIndices : delegate.destinationStopIndices();
+        this.delegate = delegate;
+    }
+
+    @Override
+    public IntSet destinationStopIndices() {
+        return this.destinationStopIndices;
+    }
+
+    @Override
+    public List<Stop2StopRoute> load(TransitStopFacility originStop) {
+        List<Stop2StopRoute> routes;
+        synchronized (this) {
+            routes = this.routesPerStop.get(originStop);
+        }
+        if (routes != null) {
+            this.hits.increment();
+            return routes;
+        }
+        if (this.delegate != null) {
+            routes = this.delegate.load(originStop);
+            if (routes != null) {
+                this.delegateHits.increment();
+                put(originStop, routes);
+                return routes;
+            }
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    @Override
+    public void store(TransitStopFacility originStop, List<Stop2StopRoute> routes) {
+        put(originStop, routes);
+        if (this.delegate != null) {
+            this.delegate.store(originStop, routes);
+        }
+    }
+
+    private synchronized void put(TransitStopFacility originStop, List<Stop2StopRoute> routes) {
+        if (routes.size() > this.maxRoutes) {
+            return;
+        }
+        List<Stop2StopRoute> previous = this.routesPerStop.put(originStop, List.copyOf(routes));
+        if (previous != null) {
+            this.cachedRoutes -= previous.size();
+        }
+        this.cachedRoutes += routes.size();
+
+        Iterator<Map.Entry<TransitStopFacility, List<Stop2StopRoute>>> it = this.routesPerStop.entrySet().iterator();
+        while (this.cachedRoutes > this.maxRoutes && it.hasNext()) {
+            Map.Entry<TransitStopFacility, List<Stop2StopRoute>> eldest = it.next();
+            this.cachedRoutes -= eldest.getValue().size();
+            it.remove();
+            this.evictions.increment();
+        }
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public void logStatistics() {
+        long cachedStops;
+        long routes;
+        synchronized (this) {
+            cachedStops = this.routesPerStop.size();
+            routes = this.cachedRoutes;
+        }
+        LOG.info("Route cache: {} hits, {} loaded from disk, {} misses, {} evictions, {} routes of {} stops cached",
+            getHits(), this.delegateHits.sum(), getMisses(), getEvictions(), routes, cachedStops);
+        if (this.delegate != null) {
+            this.delegate.logStatistics();
+        }
+    }
+}
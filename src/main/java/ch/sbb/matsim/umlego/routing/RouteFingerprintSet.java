@@ -0,0 +1,103 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import java.util.Arrays;
+
+/**
+ * Set of routes, identified by their origin stop, destination stop and {@link Stop2StopRoute#fingerprint fingerprint}.
+ * <p>
+ * Uses open addressing with linear probing on primitive arrays, so adding a route does not allocate. Two routes are considered equal if origin, destination and
+ * fingerprint match, the fingerprint is not compared with {@link Stop2StopRoute#equals(Object)}. With 64 bits, collisions of different routes between the same stops
+ * are negligible.
+ */
+public final class RouteFingerprintSet {
+
+    private static final int EMPTY = -1;
+
+    private int[] originStops;
+    private int[] destinationStops;
+    private long[] fingerprints;
+    private int mask;
+    private int size = 0;
+
+    public RouteFingerprintSet() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize the expected number of routes, the set grows if more routes are added
+     */
+    public RouteFingerprintSet(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1);
+    }
+
+    private void allocate(int capacity) {
+        this.originStops = new int[capacity];
+        Arrays.fill(this.originStops, EMPTY);
+        this.destinationStops = new int[capacity];
+        this.fingerprints = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds the route to the set.
+     *
+     * @return true if the route was not yet contained in the set
+     */
+    public boolean add(Stop2StopRoute route) {
+        return add(route.originStop.getId().index(), route.destinationStop.getId().index(), route.fingerprint);
+    }
+
+    /**
+     * Adds the route with the given origin stop index, destination stop index and fingerprint.
+     *
+     * @return true if the route was not yet contained in the set
+     */
+    public boolean add(int originStopIndex, int destinationStopIndex, long fingerprint) {
+        int slot = slot(originStopIndex, destinationStopIndex, fingerprint);
+        while (this.originStops[slot] != EMPTY) {
+            if (this.fingerprints[slot] == fingerprint && this.originStops[slot] == originStopIndex && this.destinationStops[slot] == destinationStopIndex) {
+                return false;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.originStops[slot] = originStopIndex;
+        this.destinationStops[slot] = destinationStopIndex;
+        this.fingerprints[slot] = fingerprint;
+        this.size++;
+        if (this.size * 2 > this.mask) {
+            rehash();
+        }
+        return true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private int slot(int originStopIndex, int destinationStopIndex, long fingerprint) {
+        long h = fingerprint ^ (originStopIndex * 0x9E3779B97F4A7C15L) ^ (destinationStopIndex * 0xC2B2AE3D27D4EB4FL);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & this.mask;
+    }
+
+    private void rehash() {
+        int[] oldOrigins = this.originStops;
+        int[] oldDestinations = this.destinationStops;
+        long[] oldFingerprints = this.fingerprints;
+        allocate(oldOrigins.length * 2);
+        for (int i = 0; i < oldOrigins.length; i++) {
+            if (oldOrigins[i] != EMPTY) {
+                int slot = slot(oldOrigins[i], oldDestinations[i], oldFingerprints[i]);
+                while (this.originStops[slot] != EMPTY) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.originStops[slot] = oldOrigins[i];
+                this.destinationStops[slot] = oldDestinations[i];
+                this.fingerprints[slot] = oldFingerprints[i];
+            }
+        }
+    }
+}
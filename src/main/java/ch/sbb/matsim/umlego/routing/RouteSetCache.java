@@ -0,0 +1,38 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.List;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Cache of the routes found from an origin stop. Implementations must be thread-safe, as one cache is shared by all workers.
+ * <p>
+ * A cached route set always contains the routes to all {@link #destinationStopIndices() destination stops}, so it can be reused by every zone connected to the origin stop.
+ */
+public interface RouteSetCache {
+
+    /**
+     * The stops for which routes must be calculated before they are stored in the cache.
+     */
+    IntSet destinationStopIndices();
+
+    /**
+     * Loads the cached routes starting at the given stop.
+     *
+     * @return the cached routes, or {@code null} if no routes are cached for this stop.
+     */
+    List<Stop2StopRoute> load(TransitStopFacility originStop);
+
+    /**
+     * Stores the routes starting at the given stop. An existing entry is replaced.
+     */
+    void store(TransitStopFacility originStop, List<Stop2StopRoute> routes);
+
+    /**
+     * Logs statistics about the usage of the cache.
+     */
+    default void logStatistics() {
+    }
+
+}
@@ -0,0 +1,47 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.RouteArena;
+import ch.sbb.matsim.umlego.config.RouteSearchMode;
+import ch.sbb.matsim.umlego.config.UmlegoParameters;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+/**
+ * Creates the {@link RouteSetCache} according to the routing parameters.
+ */
+public final class RouteSetCaches {
+
+    private static final Logger LOG = LogManager.getLogger(RouteSetCaches.class);
+
+    private RouteSetCaches() {
+    }
+
+    /**
+     * Creates the route cache shared by all workers of a scenario.
+     *
+     * @return the cache, or {@code null} if routes should not be cached or are searched per zone, where the routes of a stop are not cached
+     */
+    public static RouteSetCache create(UmlegoParameters params, TransitSchedule schedule, RouteArena arena, Map<String, List<ConnectedStop>> stopsPerZone,
+        IntSet destinationStopIndices, RaptorParameters raptorParams) {
+        boolean cacheConfigured = params.routing().useRouteCache() || params.routing().routeCacheMaxRoutes() > 0;
+        if (cacheConfigured && params.routing().searchMode() == RouteSearchMode.ZONE) {
+            LOG.warn("The route cache is not used with the search per zone, the routes are searched from all stops of a zone at once");
+            return null;
+        }
+        RouteSetCache cache = null;
+        if (params.routing().useRouteCache()) {
+            cache = DiskRouteSetCache.create(params.routing().routeCacheDirectory(), schedule, arena, stopsPerZone, destinationStopIndices,
+                params.maxTransfers(), raptorParams);
+        }
+        if (params.routing().routeCacheMaxRoutes() > 0) {
+            cache = new MemoryRouteSetCache(params.routing().routeCacheMaxRoutes(), destinationStopIndices, cache);
+        }
+        return cache;
+    }
+}
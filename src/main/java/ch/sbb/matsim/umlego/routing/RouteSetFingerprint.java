@@ -0,0 +1,142 @@
+package ch.sbb.matsim.umlego.routing;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Computes a fingerprint of all inputs that influence the routes found from a stop. Routes stored under the same fingerprint can be reused, as long as none of the inputs changed.
+ * <p>
+ * All collections are hashed in a sorted order, so the fingerprint does not depend on the order in which the schedule was read.
+ */
+public final class RouteSetFingerprint {
+
+    /**
+     * Increase whenever the persisted format or the way routes are collected changes.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private RouteSetFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint as hex string.
+     *
+     * @param schedule the transit schedule used for routing
+     * @param stopsPerZone the connectors of all zones
+     * @param destinationStopIndices the stops that routes are collected for
+     * @param maxTransfers the maximum number of transfers
+     * @param raptorParams the parameters of the route search
+     */
+    public static String compute(TransitSchedule schedule, Map<String, List<ConnectedStop>> stopsPerZone, IntSet destinationStopIndices,
+        int maxTransfers, RaptorParameters raptorParams) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        update(digest, "version", FORMAT_VERSION);
+        update(digest, "maxTransfers", maxTransfers);
+        update(digest, "transferPenaltyFix", raptorParams.getTransferPenaltyFixCostPerTransfer());
+        update(digest, "transferPenaltyMin", raptorParams.getTransferPenaltyMinimum());
+        update(digest, "transferPenaltyMax", raptorParams.getTransferPenaltyMaximum());
+        update(digest, "searchRadius", raptorParams.getSearchRadius());
+        update(digest, "beelineWalkSpeed", raptorParams.getBeelineWalkSpeed());
+        update(digest, "transferPenaltyPerHour", raptorParams.getTransferPenaltyPerTravelTimeHour());
+        update(digest, "waitingUtility", raptorParams.getMarginalUtilityOfWaitingPt_utl_s());
+        update(digest, "useModeUtilities", raptorParams.isUseTransportModeUtilities());
+        // the marginal utilities of the modes the route search looks up, the route modes are only used with transport mode utilities
+        SortedSet<String> modes = new TreeSet<>(List.of(TransportMode.walk));
+        if (raptorParams.isUseTransportModeUtilities()) {
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                for (TransitRoute route : line.getRoutes().values()) {
+                    modes.add(route.getTransportMode());
+                }
+            }
+        } else {
+            modes.add(TransportMode.pt);
+        }
+        for (String mode : modes) {
+            update(digest, "modeUtility", mode, raptorParams.getMarginalUtilityOfTravelTime_utl_s(mode));
+        }
+
+        List<TransitStopFacility> stops = new ArrayList<>(schedule.getFacilities().values());
+        stops.sort(Comparator.comparing(stop -> stop.getId().toString()));
+        for (TransitStopFacility stop : stops) {
+            update(digest, "stop", stop.getId(), stop.getCoord().getX(), stop.getCoord().getY(),
+                destinationStopIndices.contains(stop.getId().index()));
+        }
+
+        List<TransitLine> lines = new ArrayList<>(schedule.getTransitLines().values());
+        lines.sort(Comparator.comparing(line -> line.getId().toString()));
+        for (TransitLine line : lines) {
+            update(digest, "line", line.getId());
+            List<TransitRoute> routes = new ArrayList<>(line.getRoutes().values());
+            routes.sort(Comparator.comparing(route -> route.getId().toString()));
+            for (TransitRoute route : routes) {
+                update(digest, "route", route.getId(), route.getTransportMode());
+                for (TransitRouteStop routeStop : route.getStops()) {
+                    update(digest, "routeStop", routeStop.getStopFacility().getId(),
+                        routeStop.getArrivalOffset().orElse(Double.NaN), routeStop.getDepartureOffset().orElse(Double.NaN));
+                }
+                List<Departure> departures = new ArrayList<>(route.getDepartures().values());
+                departures.sort(Comparator.comparing(departure -> departure.getId().toString()));
+                for (Departure departure : departures) {
+                    update(digest, "departure", departure.getId(), departure.getDepartureTime());
+                }
+            }
+        }
+
+        List<String> transferTimes = new ArrayList<>();
+        MinimalTransferTimes.MinimalTransferTimesIterator it = schedule.getMinimalTransferTimes().iterator();
+        while (it.hasNext()) {
+            it.next();
+            transferTimes.add(it.getFromStopId() + ">" + it.getToStopId() + "=" + it.getSeconds());
+        }
+        transferTimes.sort(String::compareTo);
+        for (String transferTime : transferTimes) {
+            update(digest, "transfer", transferTime);
+        }
+
+        List<String> zones = new ArrayList<>(stopsPerZone.keySet());
+        zones.sort(String::compareTo);
+        for (String zone : zones) {
+            List<ConnectedStop> connectedStops = new ArrayList<>(stopsPerZone.get(zone));
+            connectedStops.sort(Comparator.comparing(stop -> stop.stopFacility().getId().toString()));
+            for (ConnectedStop stop : connectedStops) {
+                update(digest, "connector", zone, stop.stopFacility().getId(), stop.walkTime());
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String type, Object... values) {
+        StringBuilder sb = new StringBuilder(type);
+        for (Object value : values) {
+            sb.append('|').append(value);
+        }
+        sb.append('\n');
+        digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
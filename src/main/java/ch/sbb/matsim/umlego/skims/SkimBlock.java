@@ -0,0 +1,103 @@
+package ch.sbb.matsim.umlego.skims;
+
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Skim values from one origin zone to all destination zones, stored as one dense block indexed by the {@link ZonesLookup} index of the destination and the skim index
+ * of {@link UmlegoSkimCalculator}.
+ * <p>
+ * The block is allocated on the first write, so results without skims stay cheap.
+ */
+public final class SkimBlock {
+
+    private final ZonesLookup zonesLookup;
+    private final int skimCount;
+    private double[] values;
+    private boolean[] present;
+
+    public SkimBlock(ZonesLookup zonesLookup, int skimCount) {
+        this.zonesLookup = zonesLookup;
+        this.skimCount = skimCount;
+    }
+
+    public int skimCount() {
+        return this.skimCount;
+    }
+
+    public ZonesLookup zonesLookup() {
+        return this.zonesLookup;
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        if (this.present != null) {
+            Arrays.fill(this.values, 0.0);
+            Arrays.fill(this.present, false);
+        }
+    }
+
+    /**
+     * @return true if skims were calculated for the destination zone index
+     */
+    public boolean contains(int destinationIndex) {
+        return this.present != null && this.present[destinationIndex];
+    }
+
+    public double get(int destinationIndex, int skim) {
+        return this.values == null ? 0.0 : this.values[destinationIndex * this.skimCount + skim];
+    }
+
+    public void set(int destinationIndex, int skim, double value) {
+        ensureAllocated();
+        this.present[destinationIndex] = true;
+        this.values[destinationIndex * this.skimCount + skim] = value;
+    }
+
+    /**
+     * Marks the destination as present, all skims are initialized with zero.
+     */
+    public void add(int destinationIndex) {
+        ensureAllocated();
+        this.present[destinationIndex] = true;
+    }
+
+    private void ensureAllocated() {
+        if (this.values == null) {
+            this.values = new double[this.zonesLookup.size() * this.skimCount];
+            this.present = new boolean[this.zonesLookup.size()];
+        }
+    }
+
+    /**
+     * Copies the skims of a destination zone, for consumers that work with zone numbers.
+     *
+     * @return the skims, or {@code null} if no skims were calculated for the destination
+     */
+    public double[] get(String destinationZone) {
+        int index = this.zonesLookup.getIndex(destinationZone);
+        if (!contains(index)) {
+            return null;
+        }
+        return Arrays.copyOfRange(this.values, index * this.skimCount, (index + 1) * this.skimCount);
+    }
+
+    /**
+     * Creates a map from destination zone number to skims, ordered by zone index.
+     */
+    public Map<String, double[]> asMap() {
+        Map<String, double[]> map = new LinkedHashMap<>();
+        if (this.present != null) {
+            for (int i = 0; i < this.present.length; i++) {
+                if (this.present[i]) {
+                    map.put(this.zonesLookup.getZoneNo(i), Arrays.copyOfRange(this.values, i * this.skimCount, (i + 1) * this.skimCount));
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -6,7 +6,7 @@ public class SkimDemand implements SkimCalculator {
 
     @Override
     public double aggregateRoute(double currentValue, String destZone, FoundRoute route) {
-        return currentValue + route.demand;
+        return currentValue + route.skimDemand;
     }
 
     @Override
@@ -10,7 +10,7 @@ public class SkimWeightedAdaptationTime implements SkimCalculator {
     @Override
     public double aggregateRoute(double currentValue, String destZone, FoundRoute route) {
         // The adaptation time is already weighted during calculation of the routes
-        return currentValue + route.adaptationTime / 60; // Convert seconds to minutes
+        return currentValue + route.skimAdaptationTime / 60; // Convert seconds to minutes
     }
 
     @Override
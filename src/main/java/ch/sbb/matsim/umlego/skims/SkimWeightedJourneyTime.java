@@ -9,7 +9,7 @@ public class SkimWeightedJourneyTime implements SkimCalculator {
 
     @Override
     public double aggregateRoute(double currentValue, String destZone, FoundRoute route) {
-        var demand = route.demand;
+        var demand = route.skimDemand;
         return currentValue + demand * (route.travelTimeWithAccess / 60);
     }
 
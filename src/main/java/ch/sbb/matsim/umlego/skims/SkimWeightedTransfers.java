@@ -6,7 +6,7 @@ public class SkimWeightedTransfers implements SkimCalculator {
 
     @Override
     public double aggregateRoute(double currentValue, String destZone, FoundRoute route) {
-        var demand = route.demand;
+        var demand = route.skimDemand;
         return currentValue + demand * route.stop2stopRoute.transfers;
     }
 
@@ -22,8 +22,8 @@ package ch.sbb.matsim.umlego.skims;
 import ch.sbb.matsim.umlego.FoundRoute;
 
 import ch.sbb.matsim.umlego.UmlegoWorkResult;
+import ch.sbb.matsim.umlego.ZoneRoutes;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Utility class for calculating skims values.
@@ -81,30 +81,36 @@ public final class UmlegoSkimCalculator {
     }
 
     /**
-     * Calculates skims for the given work result. The result is stored in {@link UmlegoWorkResult#skims()}.
+     * Calculates skims for the given work result. The result is stored in {@link UmlegoWorkResult#skims()}. The demand weighted skims use the demand of
+     * the skim interval, {@link FoundRoute#skimDemand} and {@link FoundRoute#skimAdaptationTime}.
      *
      * @param result The work result containing the routes per destination zone.
-     * @param target The target map for storing the skim values.
+     * @param target The target block for storing the skim values.
      */
-    public void calculateSkims(UmlegoWorkResult result,  Map<String, double[]> target) {
+    public void calculateSkims(UmlegoWorkResult result, SkimBlock target) {
 
         target.clear();
-        for (Map.Entry<String, List<FoundRoute>> e : result.routesPerDestinationZone().entrySet()) {
-            String destZone = e.getKey();
-
-            double[] matrices = new double[this.calculators.size()];
-            target.put(destZone, matrices);
+        ZoneRoutes routes = result.routesPerDestinationZone();
+        for (int d = 0; d < routes.size(); d++) {
+            List<FoundRoute> routesToDestination = routes.get(d);
+            if (routesToDestination == null) {
+                continue;
+            }
+            String destZone = routes.zonesLookup().getZoneNo(d);
+            target.add(d);
 
             for (int i = 0; i < this.calculators.size(); i++) {
                 SkimCalculator calculator = this.calculators.get(i);
 
-                for (FoundRoute route : e.getValue()) {
-                    matrices[i] = calculator.aggregateRoute(matrices[i], destZone, route);
+                double value = 0;
+                for (FoundRoute route : routesToDestination) {
+                    value = calculator.aggregateRoute(value, destZone, route);
                 }
 
                 if (calculator.isNormalizedByDemand()) {
-                    matrices[i] = matrices[i] / matrices[0]; // Demand is at index 0
+                    value = value / target.get(d, 0); // Demand is at index 0
                 }
+                target.set(d, i, value);
             }
 
         }
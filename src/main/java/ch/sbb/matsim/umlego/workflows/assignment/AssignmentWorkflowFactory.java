@@ -5,13 +5,16 @@ import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
 import ch.sbb.matsim.umlego.AbstractWorker;
 import ch.sbb.matsim.umlego.Connectors;
-import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.RouteArena;
+import ch.sbb.matsim.umlego.RouteUtilityCalculator;
 import ch.sbb.matsim.umlego.RoutingContext;
 import ch.sbb.matsim.umlego.UmlegoListener;
 import ch.sbb.matsim.umlego.UmlegoUtils;
 import ch.sbb.matsim.umlego.config.UmlegoParameters;
 import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
 import ch.sbb.matsim.umlego.matrix.Matrices;
+import ch.sbb.matsim.umlego.routing.RouteSetCache;
+import ch.sbb.matsim.umlego.routing.RouteSetCaches;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkResultHandler;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkflowFactory;
 import ch.sbb.matsim.umlego.writers.ResultWriter;
@@ -19,10 +22,9 @@ import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
@@ -39,15 +41,23 @@ public class AssignmentWorkflowFactory implements WorkflowFactory<AssignmentWork
     private final RaptorParameters raptorParams;
     private final SwissRailRaptorData raptorData;
     private final Map<String, List<Connectors.ConnectedStop>> stopsPerZone;
-    private Map<String, Map<TransitStopFacility, ConnectedStop>> stopLookupPerDestination;
+    private final RouteArena routeArena;
+    private Map<String, BitSet> stopSetPerZone;
+    private IntSet destinationStopIndices;
+    private RouteSetCache routeCache;
+
+    /**
+     * Calculator of the route utilities, created with the first worker and shared by all workers.
+     */
+    private RouteUtilityCalculator utilityCalculator;
 
     public AssignmentWorkflowFactory(Matrices demand, Map<String, List<Connectors.ConnectedStop>> stopsPerZone, Scenario baseCase) {
         this.demand = demand;
         this.raptorParams = UmlegoUtils.getRaptorParameters(baseCase);
         this.raptorData = UmlegoUtils.getRaptorData(baseCase);
         this.stopsPerZone = stopsPerZone;
-        this.stopLookupPerDestination = new HashMap<>();
         this.scenario = baseCase;
+        this.routeArena = new RouteArena(baseCase.getTransitSchedule());
 
     }
 
@@ -56,11 +66,18 @@ public class AssignmentWorkflowFactory implements WorkflowFactory<AssignmentWork
     }
 
     @Override
-    public AbstractWorker<AssignmentWorkItem> createWorker(BlockingQueue<AssignmentWorkItem> workerQueue, UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
+    public AbstractWorker<AssignmentWorkItem> createWorker(UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
         SwissRailRaptor raptor = new SwissRailRaptor.Builder(raptorData, this.scenario.getConfig()).build();
-        RoutingContext ctx = new RoutingContext(raptor, raptorParams, stopsPerZone, stopLookupPerDestination);
+        if (this.routeCache == null) {
+            this.routeCache = RouteSetCaches.create(params, this.scenario.getTransitSchedule(), this.routeArena, this.stopsPerZone, this.destinationStopIndices, this.raptorParams);
+        }
+        if (this.utilityCalculator == null) {
+            this.utilityCalculator = params.routeSelection().utilityCalculator().createUtilityCalculator();
+        }
+        RoutingContext ctx = new RoutingContext(raptor, raptorParams, stopsPerZone, this.stopSetPerZone, this.routeArena,
+            this.routeCache);
 
-        return new AssignmentWorker(workerQueue, params, demand, ctx, destinationZoneIds, deltaTCalculator);
+        return new AssignmentWorker(params, demand, ctx, destinationZoneIds, this.utilityCalculator, deltaTCalculator);
 
     }
 
@@ -82,7 +99,8 @@ public class AssignmentWorkflowFactory implements WorkflowFactory<AssignmentWork
             scenario.getTransitSchedule(),
             listeners,
             params.writer(),
-            destinationZoneIds
+            destinationZoneIds,
+            demand.getSegments()
         ));
 
         return handler;
@@ -100,8 +118,21 @@ public class AssignmentWorkflowFactory implements WorkflowFactory<AssignmentWork
             }
         }
 
-        this.stopLookupPerDestination = UmlegoUtils.getStopLookupPerDestination(destinationZoneIds, this.stopsPerZone);
+        this.stopSetPerZone = UmlegoUtils.getStopSetPerZone(this.stopsPerZone);
+        this.destinationStopIndices = destinationStopIndices;
 
         return destinationStopIndices;
     }
+
+    @Override
+    public int getConnectedStopCount(String zone) {
+        return this.stopsPerZone.getOrDefault(zone, List.of()).size();
+    }
+
+    @Override
+    public void workflowCompleted() {
+        if (this.routeCache != null) {
+            this.routeCache.logStatistics();
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package ch.sbb.matsim.umlego.workflows.bewerto;
 
+import ch.sbb.matsim.umlego.skims.SkimBlock;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkResult;
 
 import java.util.Map;
@@ -13,7 +14,7 @@ import java.util.Map;
 public record BewertoWorkResult(
         String originZone,
         Map<String, double[]> factors,
-        Map<String, double[]> skimsRef,
-        Map<String, double[]> skimsVar
+        SkimBlock skimsRef,
+        SkimBlock skimsVar
 ) implements WorkResult {
 }
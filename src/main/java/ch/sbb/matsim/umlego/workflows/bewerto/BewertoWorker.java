@@ -1,19 +1,16 @@
 package ch.sbb.matsim.umlego.workflows.bewerto;
 
 import ch.sbb.matsim.umlego.AbstractWorker;
-import ch.sbb.matsim.umlego.FoundRoute;
+import ch.sbb.matsim.umlego.RouteUtilityCalculator;
 import ch.sbb.matsim.umlego.RoutingContext;
 import ch.sbb.matsim.umlego.UmlegoRouteUtils;
 import ch.sbb.matsim.umlego.UmlegoWorkResult;
+import ch.sbb.matsim.umlego.ZoneRoutes;
 import ch.sbb.matsim.umlego.config.UmlegoParameters;
 import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
-import ch.sbb.matsim.umlego.matrix.DemandMatrixMultiplier;
 import ch.sbb.matsim.umlego.matrix.Matrices;
-import ch.sbb.matsim.umlego.skims.UmlegoSkimCalculator;
 import ch.sbb.matsim.umlego.workflows.bewerto.elasticities.DemandFactorCalculator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * Worker for the Bewerto workflow.
@@ -30,11 +27,10 @@ public class BewertoWorker extends AbstractWorker<BewertoWorkItem> {
      */
     private final DemandFactorCalculator factorCalculator;
 
-    public BewertoWorker(BlockingQueue<BewertoWorkItem> workerQueue, UmlegoParameters params, Matrices demand,
-        List<RoutingContext> scenarios, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator,
+    public BewertoWorker(UmlegoParameters params, Matrices demand,
+        List<RoutingContext> scenarios, List<String> destinationZoneIds, RouteUtilityCalculator utilityCalculator, DeltaTCalculator deltaTCalculator,
         DemandFactorCalculator factorCalculator) {
-        super(workerQueue, params, destinationZoneIds, demand,
-            params.routeSelection().utilityCalculator().createUtilityCalculator(), deltaTCalculator);
+        super(params, destinationZoneIds, demand, utilityCalculator, deltaTCalculator);
         this.scenarios = scenarios;
         this.factorCalculator = factorCalculator;
     }
@@ -44,33 +40,19 @@ public class BewertoWorker extends AbstractWorker<BewertoWorkItem> {
 
         RoutingContext baseCtx = scenarios.getFirst();
 
-        Map<String, List<FoundRoute>> baseRoutes = process(baseCtx, item.originZone());
+        ZoneRoutes baseRoutes = process(baseCtx, item.originZone());
         UmlegoWorkResult baseResult = assignDemand(item.originZone(), baseRoutes);
 
-        // Reassign the demand for the filtered interval
-        UmlegoWorkResult filteredDemand = assignDemand(item.originZone(), UmlegoRouteUtils.cloneRoutes(baseRoutes),
-            params.skims().startTimeMinute(), params.skims().endTimeMinute(),
-            DemandMatrixMultiplier.IDENTITY);
-
-        UmlegoSkimCalculator.INSTANCE.calculateSkims(filteredDemand, baseResult.skims());
-
         item.baseCase().complete(baseResult);
 
         for (int i = 1; i < scenarios.size(); i++) {
 
             RoutingContext ctx = scenarios.get(i);
 
-            Map<String, List<FoundRoute>> foundRoutes = process(ctx, item.originZone());
+            ZoneRoutes foundRoutes = process(ctx, item.originZone());
 
             UmlegoWorkResult result = assignDemand(item.originZone(), foundRoutes);
 
-            // Reassign the demand for the filtered interval
-            UmlegoWorkResult filtered = assignDemand(item.originZone(), UmlegoRouteUtils.cloneRoutes(foundRoutes),
-                params.skims().startTimeMinute(), params.skims().endTimeMinute(),
-                DemandMatrixMultiplier.IDENTITY);
-
-            UmlegoSkimCalculator.INSTANCE.calculateSkims(filtered, result.skims());
-
             item.variants().get(i - 1).complete(result);
 
             DemandFactorCalculator.Multiplier f = factorCalculator.createMultiplier(baseResult.skims(), result.skims());
@@ -83,11 +65,8 @@ public class BewertoWorker extends AbstractWorker<BewertoWorkItem> {
         }
     }
 
-    private Map<String, List<FoundRoute>> process(RoutingContext ctx, String originZone) {
-        Map<String, List<FoundRoute>> foundRoutes = calculateRoutesForZone(ctx, originZone);
-        calculateRouteCharacteristics(foundRoutes);
-        filterRoutes(foundRoutes);
-        calculateOriginality(foundRoutes);
+    private ZoneRoutes process(RoutingContext ctx, String originZone) {
+        ZoneRoutes foundRoutes = findRoutesForZone(ctx, originZone);
         return foundRoutes;
     }
 }
@@ -6,6 +6,8 @@ import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
 import ch.sbb.matsim.umlego.AbstractWorker;
 import ch.sbb.matsim.umlego.Connectors;
 import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.RouteArena;
+import ch.sbb.matsim.umlego.RouteUtilityCalculator;
 import ch.sbb.matsim.umlego.RoutingContext;
 import ch.sbb.matsim.umlego.UmlegoListener;
 import ch.sbb.matsim.umlego.UmlegoUtils;
@@ -13,6 +15,8 @@ import ch.sbb.matsim.umlego.UmlegoWorkResult;
 import ch.sbb.matsim.umlego.config.UmlegoParameters;
 import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
 import ch.sbb.matsim.umlego.matrix.Matrices;
+import ch.sbb.matsim.umlego.routing.RouteSetCache;
+import ch.sbb.matsim.umlego.routing.RouteSetCaches;
 import ch.sbb.matsim.umlego.workflows.bewerto.config.BewertoParameters;
 import ch.sbb.matsim.umlego.workflows.bewerto.elasticities.DemandFactorCalculator;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkResultHandler;
@@ -24,7 +28,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.IntStream;
 import org.matsim.api.core.v01.Scenario;
@@ -49,6 +52,18 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
      */
     private final List<RoutingContext> ctxs = new ArrayList<>();
     private final List<SwissRailRaptorData> raptorData = new ArrayList<>();
+    private final List<RouteArena> routeArenas = new ArrayList<>();
+
+    /**
+     * Route caches for each scenario, created with the first worker. Contains {@code null} if routes are not cached.
+     */
+    private final List<RouteSetCache> routeCaches = new ArrayList<>();
+    private IntSet destinationStopIndices;
+
+    /**
+     * Calculator of the route utilities, created with the first worker and shared by all workers.
+     */
+    private RouteUtilityCalculator utilityCalculator;
 
     public BewertoWorkflowFactory(BewertoParameters parameters, Matrices demand, String zoneConnectionsFile,
         Scenario baseCase, List<Scenario> variants) throws IOException {
@@ -65,6 +80,7 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
         for (Scenario scenario : scenarios) {
             SwissRailRaptorData d = UmlegoUtils.getRaptorData(scenario);
             raptorData.add(d);
+            routeArenas.add(new RouteArena(scenario.getTransitSchedule()));
         }
 
     }
@@ -73,8 +89,7 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
     public IntSet computeDestinationStopIndices(List<String> destinationZoneIds) throws IOException {
         for (Scenario scenario : scenarios) {
             Map<String, List<ConnectedStop>> stopsPerZone = UmlegoUtils.readConnectors(zoneConnectionsFile, scenario.getTransitSchedule());
-            Map<String, Map<TransitStopFacility, Connectors.ConnectedStop>> stopLookupPerDestination = UmlegoUtils.getStopLookupPerDestination(destinationZoneIds, stopsPerZone);
-            ctxs.add(new RoutingContext(null, null, stopsPerZone, stopLookupPerDestination));
+            ctxs.add(new RoutingContext(null, null, stopsPerZone, UmlegoUtils.getStopSetPerZone(stopsPerZone), null, null));
         }
 
         // Use stop indices from the first scenario
@@ -86,13 +101,24 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
                 destinationStopIndices.add(stop.getId().index());
             }
         }
+        this.destinationStopIndices = destinationStopIndices;
 
         return destinationStopIndices;
 
     }
 
     @Override
-    public AbstractWorker<BewertoWorkItem> createWorker(BlockingQueue<BewertoWorkItem> workerQueue, UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
+    public AbstractWorker<BewertoWorkItem> createWorker(UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
+
+        if (this.routeCaches.isEmpty()) {
+            for (int i = 0; i < scenarios.size(); i++) {
+                this.routeCaches.add(RouteSetCaches.create(params, this.scenarios.get(i).getTransitSchedule(), this.routeArenas.get(i),
+                    ctxs.get(i).stopsPerZone(), this.destinationStopIndices, this.raptorParams));
+            }
+        }
+        if (this.utilityCalculator == null) {
+            this.utilityCalculator = params.routeSelection().utilityCalculator().createUtilityCalculator();
+        }
 
         List<RoutingContext> routingContexts = new ArrayList<>();
         for (int i = 0; i < scenarios.size(); i++) {
@@ -100,13 +126,15 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
                 new SwissRailRaptor.Builder(raptorData.get(i), this.scenarios.getFirst().getConfig()).build(),
                 raptorParams,
                 ctxs.get(i).stopsPerZone(),
-                ctxs.get(i).stopLookupPerDestination()
+                ctxs.get(i).stopSetPerZone(),
+                this.routeArenas.get(i),
+                this.routeCaches.get(i)
             );
             routingContexts.add(ctx);
         }
 
         return new BewertoWorker(
-            workerQueue, params, demand, routingContexts, destinationZoneIds, deltaTCalculator, demandFactorCalculator
+            params, demand, routingContexts, destinationZoneIds, this.utilityCalculator, deltaTCalculator, demandFactorCalculator
         );
     }
 
@@ -135,7 +163,8 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
             scenarios.getFirst().getTransitSchedule(),
             listeners,
             params.writer(),
-            destinationZoneIds
+            destinationZoneIds,
+            demand.getSegments()
         ));
 
         for (int i = 1; i < scenarios.size(); i++) {
@@ -147,7 +176,8 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
                 s.getTransitSchedule(),
                 listeners,
                 params.writer(),
-                destinationZoneIds
+                destinationZoneIds,
+                demand.getSegments()
             );
             handler.add(writer);
 
@@ -157,7 +187,8 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
                 s.getTransitSchedule(),
                 listeners,
                 params.writer(),
-                destinationZoneIds
+                destinationZoneIds,
+                demand.getSegments()
             );
 
             handler.add(writer2);
@@ -166,4 +197,23 @@ public class BewertoWorkflowFactory implements WorkflowFactory<BewertoWorkItem>
 
         return handler;
     }
+
+    @Override
+    public int getConnectedStopCount(String zone) {
+        // every work item routes all scenarios
+        int count = 0;
+        for (RoutingContext ctx : this.ctxs) {
+            count += ctx.stopsPerZone().getOrDefault(zone, List.of()).size();
+        }
+        return count;
+    }
+
+    @Override
+    public void workflowCompleted() {
+        for (RouteSetCache routeCache : this.routeCaches) {
+            if (routeCache != null) {
+                routeCache.logStatistics();
+            }
+        }
+    }
 }
@@ -3,6 +3,8 @@ package ch.sbb.matsim.umlego.workflows.bewerto.elasticities;
 import ch.sbb.matsim.umlego.matrix.DemandMatrixMultiplier;
 import ch.sbb.matsim.umlego.matrix.Matrices;
 import ch.sbb.matsim.umlego.matrix.Zones;
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import ch.sbb.matsim.umlego.skims.SkimBlock;
 import ch.sbb.matsim.umlego.skims.UmlegoSkimCalculator;
 import ch.sbb.matsim.umlego.workflows.bewerto.BewertoWorkResult;
 import ch.sbb.matsim.umlego.workflows.bewerto.config.ElasticitiesParameters;
@@ -19,11 +21,6 @@ import java.util.Objects;
  */
 public final class DemandFactorCalculator {
 
-    /**
-     * Empty array to represent no data.
-     */
-    private final static double[] EMPTY = new double[0];
-
     private final ElasticitiesParameters params;
     private final Matrices matrices;
 
@@ -56,14 +53,38 @@ public final class DemandFactorCalculator {
     /**
      * Creates a demand matrix multiplier based on the base and variant skim matrices.
      *
-     * @param base the base skim matrix
-     * @param variant the variant skim matrix
+     * @param base the base skims from the origin zone
+     * @param variant the variant skims from the origin zone
      * @return a {@link DemandMatrixMultiplier} that can be used to multiply demand matrices
      */
-    public Multiplier createMultiplier(Map<String, double[]> base, Map<String, double[]> variant) {
+    public Multiplier createMultiplier(SkimBlock base, SkimBlock variant) {
         return new Multiplier(base, variant);
     }
 
+    /**
+     * Adapter for skims mapped by destination zone number, which are copied into blocks of the zones of the matrices.
+     *
+     * @see #createMultiplier(SkimBlock, SkimBlock)
+     */
+    public Multiplier createMultiplier(Map<String, double[]> base, Map<String, double[]> variant) {
+        return new Multiplier(toSkimBlock(base), toSkimBlock(variant));
+    }
+
+    private SkimBlock toSkimBlock(Map<String, double[]> skims) {
+        ZonesLookup zonesLookup = this.matrices.getZonesLookup();
+        SkimBlock block = new SkimBlock(zonesLookup, UmlegoSkimCalculator.INSTANCE.getCalculators().size());
+        for (Map.Entry<String, double[]> e : skims.entrySet()) {
+            int index = zonesLookup.findIndex(e.getKey());
+            if (index >= 0) {
+                block.add(index);
+                for (int skim = 0; skim < Math.min(e.getValue().length, block.skimCount()); skim++) {
+                    block.set(index, skim, e.getValue()[skim]);
+                }
+            }
+        }
+        return block;
+    }
+
     /**
      * Compute the cluster, i.e. type of relation (international or national) based on the origin and destination zones.
      */
@@ -83,49 +104,55 @@ public final class DemandFactorCalculator {
         return Math.max(e.min(), Math.min(e.max(), e.elasticity0() + e.a() * ax + e.b() * bx));
     }
 
-    private double computeFactor(double[] variantValues, double[] baseValues, int idx, double e) {
+    private double computeFactor(double variantValue, double baseValue, int idx, double e) {
 
         if (idx == UmlegoSkimCalculator.NTR_IDX) {
             // For NTR, a different calculation is applied
-            return Math.pow((variantValues[idx] + params.getTransferOffset()) / (baseValues[idx] + params.getTransferOffset()), e);
+            return Math.pow((variantValue + params.getTransferOffset()) / (baseValue + params.getTransferOffset()), e);
         }
 
-        if (baseValues[idx] == 0) {
+        if (baseValue == 0) {
             // If the base value is zero, we cannot compute a factor, return 1
             return 1;
         }
 
-        return Math.pow(variantValues[idx] / baseValues[idx], e);
+        return Math.pow(variantValue / baseValue, e);
     }
 
     public final class Multiplier implements DemandMatrixMultiplier {
 
-        private final Map<String, double[]> base;
-        private final Map<String, double[]> variant;
+        private final SkimBlock base;
+        private final SkimBlock variant;
 
         /**
          * Store the computed factors for each target zone.
          */
         private final Map<String, double[]> factors = new LinkedHashMap<>();
 
-        public Multiplier(Map<String, double[]> base, Map<String, double[]> variant) {
+        public Multiplier(SkimBlock base, SkimBlock variant) {
             this.base = base;
             this.variant = variant;
         }
 
         @Override
         public double getFactor(String fromZoneNo, String toZoneNo, int timeMin) {
-            double[] baseValues = base.getOrDefault(toZoneNo, EMPTY);
-            double[] variantValues = variant.getOrDefault(toZoneNo, EMPTY);
+            int to = base.zonesLookup().findIndex(toZoneNo);
 
-            if (baseValues == EMPTY || variantValues == EMPTY ) {
+            if (to < 0 || !base.contains(to) || !variant.contains(to)) {
                 return 1.0; // No data available, return neutral factor
             }
 
             String cluster = computeCluster(fromZoneNo, toZoneNo);
 
-            double ax = Math.min(baseValues[UmlegoSkimCalculator.ADT_IDX], params.getAdtUB()) / 15;
-            double bx = baseValues[UmlegoSkimCalculator.JRT_IDX] / 45;
+            double baseJRT = base.get(to, UmlegoSkimCalculator.JRT_IDX);
+            double baseADT = base.get(to, UmlegoSkimCalculator.ADT_IDX);
+            double baseNTR = base.get(to, UmlegoSkimCalculator.NTR_IDX);
+            double variantJRT = variant.get(to, UmlegoSkimCalculator.JRT_IDX);
+            double variantADT = variant.get(to, UmlegoSkimCalculator.ADT_IDX);
+            double variantNTR = variant.get(to, UmlegoSkimCalculator.NTR_IDX);
+
+            double ax = Math.min(baseADT, params.getAdtUB()) / 15;
+            double bx = baseJRT / 45;
 
             double FJRT = 0;
             double FADT = 0;
@@ -135,13 +162,13 @@ public final class DemandFactorCalculator {
                 var share = matrices.getShareMatrixValue(segment, fromZoneNo, toZoneNo);
 
                 double eJRT = computeElasticity(entriesBySegmentAndCluster.get(segment).get(cluster).get(SkimType.JRT), ax, bx);
-                FJRT += computeFactor(variantValues, baseValues, UmlegoSkimCalculator.JRT_IDX, eJRT) * share;
+                FJRT += computeFactor(variantJRT, baseJRT, UmlegoSkimCalculator.JRT_IDX, eJRT) * share;
 
                 double eADT = computeElasticity(entriesBySegmentAndCluster.get(segment).get(cluster).get(SkimType.ADT), ax, bx);
-                FADT += computeFactor(variantValues, baseValues, UmlegoSkimCalculator.ADT_IDX, eADT) * share;
+                FADT += computeFactor(variantADT, baseADT, UmlegoSkimCalculator.ADT_IDX, eADT) * share;
 
                 double eNTR = computeElasticity(entriesBySegmentAndCluster.get(segment).get(cluster).get(SkimType.NTR), ax, bx);
-                FNTR += computeFactor(variantValues, baseValues, UmlegoSkimCalculator.NTR_IDX, eNTR) * share;
+                FNTR += computeFactor(variantNTR, baseNTR, UmlegoSkimCalculator.NTR_IDX, eNTR) * share;
 
             }
 
@@ -8,7 +8,6 @@ import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.IOException;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 
 
 /**
@@ -24,10 +23,9 @@ public interface WorkflowFactory<T extends WorkItem> {
     IntSet computeDestinationStopIndices(List<String> destinationZoneIds) throws IOException;
 
     /**
-     * Creates a worker that processes work items from the provided queue.
+     * Creates a worker that processes work items. Called once per thread, a worker is only used by one thread at a time.
      */
-    AbstractWorker<T> createWorker(BlockingQueue<T> workerQueue, UmlegoParameters params,
-                                   List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator);
+    AbstractWorker<T> createWorker(UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator);
 
 
     /**
@@ -47,4 +45,18 @@ public interface WorkflowFactory<T extends WorkItem> {
      */
     List<? extends WorkResultHandler<?>> createResultHandler(UmlegoParameters params, String outputFolder, List<String> destinationZoneIds, List<UmlegoListener> listeners);
 
+    /**
+     * Returns the number of stops connected to the zone, used to estimate the computation time of a work item. Only called after
+     * {@link #computeDestinationStopIndices(List)}.
+     */
+    default int getConnectedStopCount(String zone) {
+        return 1;
+    }
+
+    /**
+     * Called after all work items have been processed and all results were handled.
+     */
+    default void workflowCompleted() {
+    }
+
 }
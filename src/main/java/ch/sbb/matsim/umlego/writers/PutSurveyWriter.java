@@ -26,9 +26,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 
-import ch.sbb.matsim.routing.pt.raptor.RaptorRoute;
-import ch.sbb.matsim.routing.pt.raptor.RaptorRoute.RoutePart;
 import ch.sbb.matsim.umlego.FoundRoute;
+import ch.sbb.matsim.umlego.Stop2StopRoute;
 import ch.sbb.matsim.umlego.UmlegoListener;
 import ch.sbb.matsim.umlego.config.WriterParameters;
 
@@ -93,25 +92,22 @@ public class PutSurveyWriter implements UmlegoListener {
 
         double demand = route.demand;
 
-        for (RaptorRoute.RoutePart routePart : route.stop2stopRoute.routeParts) {
-            if (routePart.line != null) {
+        Stop2StopRoute s2s = route.stop2stopRoute;
+        for (int leg = 0; leg < s2s.legCount(); leg++) {
+            // chained legs directly follow the pt leg they are chained to
+            if (!s2s.isTransferLeg(leg)) {
                 legId++;
-                writeRow(routePart, legId, pathId, teilweg_kennung, fromZone, toZone, demand);
+                writeRow(s2s, leg, legId, pathId, teilweg_kennung, fromZone, toZone, demand);
                 teilweg_kennung = "N";
-                while (routePart.chainedPart != null) {
-                    legId++;
-                    routePart = routePart.chainedPart;
-                    writeRow(routePart, legId, pathId, teilweg_kennung, fromZone, toZone, demand);
-                }
             }
         }
 
     }
 
-    private void writeRow(RoutePart routePart, int legId, String pathId, String teilweg_kennung, String fromZone, String toZone, double demand) {
-        TransitRoute transitRoute = routePart.route;
-        String fromStop = String.valueOf(routePart.fromStop.getAttributes().getAttribute(STOP_NO));
-        String toStop = String.valueOf(routePart.toStop.getAttributes().getAttribute(STOP_NO));
+    private void writeRow(Stop2StopRoute route, int leg, int legId, String pathId, String teilweg_kennung, String fromZone, String toZone, double demand) {
+        TransitRoute transitRoute = route.legRoute(leg);
+        String fromStop = String.valueOf(route.legFromStop(leg).getAttributes().getAttribute(STOP_NO));
+        String toStop = String.valueOf(route.legToStop(leg).getAttributes().getAttribute(STOP_NO));
         String vsyscode = String.valueOf(transitRoute.getAttributes().getAttribute(TSYS_CODE));
         String linname = String.valueOf(transitRoute.getAttributes().getAttribute(TRANSITLINE));
         String linroutename = String.valueOf(transitRoute.getAttributes().getAttribute(LINEROUTENAME));
@@ -122,7 +118,7 @@ public class PutSurveyWriter implements UmlegoListener {
         // always use day = 1
         String einhstabfahrtstag = "1";
         //				String einhstabfahrtstag = getDayIndex(routePart.vehicleDepTime);
-        String einhstabfahrtszeit = getTime(routePart.vehicleDepTime);
+        String einhstabfahrtszeit = getTime(route.legVehicleDepTime(leg));
 
         writer.set(COL_PATH_ID, pathId);
         writer.set(COL_LEG_ID, Integer.toString(legId));
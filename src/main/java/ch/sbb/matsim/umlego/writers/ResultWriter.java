@@ -1,6 +1,7 @@
 package ch.sbb.matsim.umlego.writers;
 
 import ch.sbb.matsim.umlego.UmlegoWorkResult;
+import ch.sbb.matsim.umlego.ZoneRoutes;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -9,7 +10,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
@@ -36,6 +36,7 @@ public class ResultWriter implements WorkResultHandler<UmlegoWorkResult> {
     private final List<UmlegoListener> listeners;
     private final WriterParameters params;
     private final List<String> destinationZoneIds;
+    private final List<String> segments;
     private final UnroutableDemand unroutableDemand = new UnroutableDemand();
 
     /**
@@ -67,19 +68,42 @@ public class ResultWriter implements WorkResultHandler<UmlegoWorkResult> {
     public ResultWriter(String outputFolder, TransitSchedule schedule,
                         List<UmlegoListener> listeners,
                         WriterParameters params, List<String> destinationZoneIds) {
+        this(outputFolder, schedule, listeners, params, destinationZoneIds, List.of());
+    }
+
+    /**
+     * @param segments the segments of the share matrices, for which {@link UmlegoWriterType#SegmentBLP} writes a BLP each
+     */
+    public ResultWriter(String outputFolder, TransitSchedule schedule,
+                        List<UmlegoListener> listeners,
+                        WriterParameters params, List<String> destinationZoneIds, List<String> segments) {
         ensureDir(outputFolder);
         this.outputFolder = outputFolder;
         this.schedule = schedule;
         this.params = params;
         this.destinationZoneIds = destinationZoneIds;
-        
+        this.segments = segments;
+
         // Combine external listeners with configured writers
-        List<UmlegoListener> writers = params.writerTypes().stream().map(this::getWriter).toList();
+        List<UmlegoListener> writers = params.writerTypes().stream().flatMap(type -> getWriters(type).stream()).toList();
         this.listeners = new ArrayList<>();
         this.listeners.addAll(listeners);
         this.listeners.addAll(writers);
     }
 
+    private List<UmlegoListener> getWriters(UmlegoWriterType type) {
+        if (type == UmlegoWriterType.SegmentBLP) {
+            List<UmlegoListener> writers = new ArrayList<>();
+            for (int s = 0; s < this.segments.size(); s++) {
+                int segment = s;
+                String filename = getFilename(this.outputFolder, "belastungsteppich_" + this.segments.get(s) + ".csv", params.compression());
+                writers.add(new UmlegoBlpWriter(filename, params, schedule, route -> route.getSegmentDemand(segment)));
+            }
+            return writers;
+        }
+        return List.of(getWriter(type));
+    }
+
     private UmlegoListener getWriter(UmlegoWriterType type) {
         return switch (type) {
             case BLP ->
@@ -88,6 +112,7 @@ public class ResultWriter implements WorkResultHandler<UmlegoWorkResult> {
             case CSV ->
                     new UmlegoCsvWriter(getFilename(this.outputFolder, "connections.csv", params.compression()), true, params);
             case PutSurvey -> new PutSurveyWriter(getFilename(this.outputFolder, "visum.net", params.compression()), params);
+            case SegmentBLP -> throw new IllegalArgumentException("Segment writers are created per segment");
         };
     }
 
@@ -100,7 +125,7 @@ public class ResultWriter implements WorkResultHandler<UmlegoWorkResult> {
 
         unroutableDemand.getParts().addAll(result.unroutableDemand().getParts());
         String origZone = result.originZone();
-        Map<String, List<FoundRoute>> routesPerDestination = result.routesPerDestinationZone();
+        ZoneRoutes routesPerDestination = result.routesPerDestinationZone();
         if (routesPerDestination == null) {
             // looks like this zone cannot reach any destination
             return;
@@ -19,8 +19,8 @@
 
 package ch.sbb.matsim.umlego.writers;
 
-import ch.sbb.matsim.routing.pt.raptor.RaptorRoute.RoutePart;
 import ch.sbb.matsim.umlego.FoundRoute;
+import ch.sbb.matsim.umlego.Stop2StopRoute;
 import ch.sbb.matsim.umlego.UmlegoListener;
 import ch.sbb.matsim.umlego.config.WriterParameters;
 import ch.sbb.matsim.umlego.writers.types.volume.Journey;
@@ -32,6 +32,7 @@ import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -68,6 +69,7 @@ public class UmlegoBlpWriter implements UmlegoListener {
 
     private final String filename;
     private final WriterParameters params;
+    private final ToDoubleFunction<FoundRoute> routeDemand;
     private final Map<Id<TransitLine>, Map<Id<TransitRoute>, Map<Id<TransitStopFacility>, Map<Double, TrainNo>>>> trainNos;
     private final Map<TrainNo, Journey> journeyByTrainNo = new HashMap<>();
 
@@ -94,8 +96,18 @@ public class UmlegoBlpWriter implements UmlegoListener {
      * @param schedule the transitSchedule
      */
     public UmlegoBlpWriter(String filename, WriterParameters params, TransitSchedule schedule) {
+        this(filename, params, schedule, route -> route.demand);
+    }
+
+    /**
+     * Writes the volumes of the given part of the demand of each route, e.g. of one segment.
+     *
+     * @param routeDemand the demand of a route to aggregate
+     */
+    public UmlegoBlpWriter(String filename, WriterParameters params, TransitSchedule schedule, ToDoubleFunction<FoundRoute> routeDemand) {
         this.filename = filename;
         this.params = params;
+        this.routeDemand = routeDemand;
 
         this.trainNos = new HashMap<>();
         for (TransitLine line : schedule.getTransitLines().values()) {
@@ -142,26 +154,35 @@ public class UmlegoBlpWriter implements UmlegoListener {
 
     @Override
     public void processRoute(String origZone, String destZone, FoundRoute route) {
-        double demand = route.demand;
+        double demand = this.routeDemand.applyAsDouble(route);
 
         if (demand < this.params.minimalDemandForWriting()) {
             return;
         }
 
-        for (int i = 0; i<route.stop2stopRoute.routeParts.size(); i++) {
-            RoutePart routePart = route.stop2stopRoute.routeParts.get(i);
-            if (routePart.line != null && routePart.mode.equals("pt")) {
-                routePart.route.getAttributes();
+        Stop2StopRoute s2s = route.stop2stopRoute;
+        int lastPart = s2s.legCount() - 1;
+        while (s2s.isChained(lastPart)) {
+            lastPart--;
+        }
+        for (int i = 0; i < s2s.legCount(); i++) {
+            if (s2s.isChained(i)) {
+                continue;
+            }
+            if (!s2s.isTransferLeg(i) && s2s.legMode(i).equals("pt")) {
+                Id<TransitStopFacility> fromStopId = s2s.legFromStop(i).getId();
+                Id<TransitStopFacility> toStopId = s2s.legToStop(i).getId();
+                double vehicleDepTime = s2s.legVehicleDepTime(i);
 
-                Map<Id<TransitStopFacility>, Map<Double, TrainNo>> trainNoByStopId = trainNos.get(routePart.line.getId()).get(routePart.route.getId());
-                Map<Double, TrainNo> trainNoByDeparture = trainNoByStopId.get(routePart.fromStop.getId());
-                TrainNo trainNo = trainNoByDeparture.get(routePart.vehicleDepTime);
+                Map<Id<TransitStopFacility>, Map<Double, TrainNo>> trainNoByStopId = trainNos.get(s2s.legLine(i).getId()).get(s2s.legRoute(i).getId());
+                Map<Double, TrainNo> trainNoByDeparture = trainNoByStopId.get(fromStopId);
+                TrainNo trainNo = trainNoByDeparture.get(vehicleDepTime);
 
                 Journey journey = this.journeyByTrainNo.get(trainNo);
                 boolean record = false;
                 for (JourneyItem item : journey.items()) {
-                    if (item.getFromStopFacilityId().equals(routePart.fromStop.getId())
-                        && item.getDeparture() == routePart.vehicleDepTime) {
+                    if (item.getFromStopFacilityId().equals(fromStopId)
+                        && item.getDeparture() == vehicleDepTime) {
                         record = true;
                         item.addBoarding(demand);
                         if (i == 0) {
@@ -169,9 +190,9 @@ public class UmlegoBlpWriter implements UmlegoListener {
                         }
                     }
 
-                    if (item.getFromStopFacilityId().equals(routePart.toStop.getId())) {
+                    if (item.getFromStopFacilityId().equals(toStopId)) {
                         item.addAlighting(demand);
-                        if (i == route.stop2stopRoute.routeParts.size() - 1) {
+                        if (i == lastPart) {
                             item.addDestinationAlighting(demand);
                         }
                         break;
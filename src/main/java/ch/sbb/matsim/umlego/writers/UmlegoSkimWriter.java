@@ -13,6 +13,7 @@ import ch.sbb.matsim.umlego.FoundRoute;
 import ch.sbb.matsim.umlego.UmlegoListener;
 import ch.sbb.matsim.umlego.workflows.interfaces.WorkResult;
 import ch.sbb.matsim.umlego.config.WriterParameters;
+import ch.sbb.matsim.umlego.skims.SkimBlock;
 import ch.sbb.matsim.umlego.skims.SkimCalculator;
 import ch.sbb.matsim.umlego.skims.UmlegoSkimCalculator;
 import static ch.sbb.matsim.umlego.writers.ResultWriter.newBufferedWriter;
@@ -61,13 +62,14 @@ public final class UmlegoSkimWriter implements UmlegoListener {
         row[0] = result.originZone();
         row[1] = destZone;
 
-        double[] values = wr.skims().get(destZone);
-        if (values == null) {
+        SkimBlock skims = wr.skims();
+        int destIndex = skims.zonesLookup().getIndex(destZone);
+        if (!skims.contains(destIndex)) {
             return;
         }
 
-        for (int i = 0; i < values.length; i++) {
-            row[i + 2] = String.format(Locale.US, "%.5f", values[i]);
+        for (int i = 0; i < skims.skimCount(); i++) {
+            row[i + 2] = String.format(Locale.US, "%.5f", skims.get(destIndex, i));
         }
 
         writer.writeNext(row);
@@ -0,0 +1,64 @@
+package ch.sbb.matsim.umlego;
+
+import static ch.sbb.matsim.umlego.it.UmlegoFixture.createUmlegoParameters;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import ch.sbb.matsim.umlego.deltat.IntervalBoundaries;
+import ch.sbb.matsim.umlego.matrix.DemandMatrix;
+import ch.sbb.matsim.umlego.matrix.DemandMatrixMultiplier;
+import ch.sbb.matsim.umlego.matrix.Matrices;
+import ch.sbb.matsim.umlego.matrix.Zone;
+import ch.sbb.matsim.umlego.matrix.Zones;
+import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import ch.sbb.matsim.umlego.skims.UmlegoSkimCalculator;
+import ch.sbb.matsim.umlego.workflows.interfaces.WorkItem;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+
+class AbstractWorkerTest {
+
+    @Test
+    void skimsOfAssignedInterval() throws Exception {
+        TestRoutes fixture = new TestRoutes();
+        var stopA = fixture.stop("A", 0);
+        var stopB = fixture.stop("B", 1000);
+        TransitRoute transitRoute = fixture.transitRoute("L", "R", stopA, stopB);
+
+        Zones zones = new Zones(List.of(new Zone("1", "1", "CH"), new Zone("2", "2", "CH")));
+        ZonesLookup zonesLookup = zones.createDefaultZonesLookup();
+        int origin = zonesLookup.getIndex("1");
+        int destination = zonesLookup.getIndex("2");
+        double[][] m = new double[2][2];
+        m[origin][destination] = 10.0;
+        Matrices demand = new Matrices(List.of(new DemandMatrix(5 * 60, 6 * 60, m)), zones, zonesLookup);
+
+        AbstractWorker<WorkItem> worker = new AbstractWorker<>(createUmlegoParameters(), List.of("1", "2"), demand,
+            RouteUtilityCalculators.boxcox(1.536, 0.5), new IntervalBoundaries()) {
+            @Override
+            protected void processOriginZone(WorkItem item) {
+            }
+        };
+
+        List<FoundRoute> routesToB = new ArrayList<>();
+        for (double depTime : new double[]{5 * 3600 + 600, 5 * 3600 + 2400}) {
+            Stop2StopRoute s2s = fixture.route(stopB, fixture.ride(stopA, stopB, transitRoute, depTime, depTime, depTime + 600, 1000));
+            FoundRoute route = new FoundRoute(s2s, new Connectors.ConnectedStop("1", 60, stopA), new Connectors.ConnectedStop("2", 60, stopB));
+            route.perceivedJourneyTimeMin = 12;
+            route.originality = 1.0;
+            routesToB.add(route);
+        }
+        ZoneRoutes foundRoutes = new ZoneRoutes(zonesLookup);
+        foundRoutes.set(destination, routesToB);
+
+        UmlegoWorkResult result = worker.assignDemand("1", foundRoutes, 0, 24 * 60, DemandMatrixMultiplier.IDENTITY);
+        UmlegoSkimCalculator.INSTANCE.calculateSkims(result, result.skims());
+
+        assertThat(result.skims().get(destination, 0)).isCloseTo(10.0, within(1e-9));
+        for (int skim = 1; skim < result.skims().skimCount(); skim++) {
+            assertThat(result.skims().get(destination, skim)).isNotNaN();
+        }
+    }
+}
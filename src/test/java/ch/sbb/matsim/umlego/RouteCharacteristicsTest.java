@@ -0,0 +1,38 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
+import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import org.junit.jupiter.api.Test;
+
+class RouteCharacteristicsTest {
+
+    @Test
+    void evaluateAllRoutes() {
+        var pjt = new PerceivedJourneyTimeParameters(1.0, 2.0, 2.0, 2.0, 1.5, 10.0, 0.1, 30.0);
+        var search = new SearchImpedanceParameters(1.0, 2.0, 2.0, 2.0, 1.5, 5.0);
+
+        RouteCharacteristics characteristics = new RouteCharacteristics();
+        // more routes than the initial capacity
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            characteristics.add(600 + i, 120, 60, 180, 300, i % 3, 1260 + i, i % 5);
+        }
+        characteristics.evaluate(pjt, search);
+
+        assertThat(characteristics.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            double totalTravelTime = 1260 + i;
+            double expectedPjt = (600 + i) / 60.0 + 2.0 * 2 + 2.0 * 1 + 2.0 * 3 + 1.5 * 5
+                + (i % 3) * (10.0 + 0.1 * (totalTravelTime / 60.0)) + 0.5 * (i % 5);
+            double expectedImpedance = (600 + i) / 60.0 + 2.0 * 2 + 2.0 * 1 + 2.0 * 3 + 1.5 * 5 + 5.0 * (i % 3);
+            assertThat(characteristics.perceivedJourneyTimeMin(i)).isCloseTo(expectedPjt, within(1e-9));
+            assertThat(characteristics.searchImpedance(i)).isCloseTo(expectedImpedance, within(1e-9));
+        }
+
+        characteristics.clear();
+        assertThat(characteristics.size()).isZero();
+    }
+}
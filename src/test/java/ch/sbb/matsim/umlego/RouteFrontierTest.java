@@ -0,0 +1,94 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
+import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+
+class RouteFrontierTest {
+
+    private static final SearchImpedanceParameters SEARCH = new SearchImpedanceParameters(1.0, 1.0, 1.0, 1.3, 1.7, 10.0);
+    private static final PerceivedJourneyTimeParameters PJT = new PerceivedJourneyTimeParameters(1.0, 1.0, 1.0, 1.0, 1.0, 0.0, 0.0, 0.0);
+
+    @Test
+    void pruningKeepsUndominatedRoutes() {
+        TestRoutes fixture = new TestRoutes();
+        var stopA = fixture.stop("A", 0);
+        var stopB = fixture.stop("B", 1000);
+        TransitRoute transitRoute = fixture.transitRoute("L", "R", stopA, stopB);
+        var origin = new Connectors.ConnectedStop("1", 120, stopA);
+        var destination = new Connectors.ConnectedStop("2", 180, stopB);
+
+        assertThat(RouteFrontier.canPrune(SEARCH)).isTrue();
+
+        Random random = new Random(3);
+        for (int iteration = 0; iteration < 300; iteration++) {
+            RouteFrontier frontier = new RouteFrontier(true);
+            List<Stop2StopRoute> all = new ArrayList<>();
+            int count = 1 + random.nextInt(50);
+            for (int i = 0; i < count; i++) {
+                // pt legs from A to B with walks in between, all routes start and end at the same stops
+                List<RouteLeg> legs = new ArrayList<>();
+                double time = 60 * random.nextInt(20);
+                int rides = 1 + random.nextInt(3);
+                for (int ride = 0; ride < rides; ride++) {
+                    double vehicleDepTime = time + 60 * random.nextInt(3);
+                    double arrivalTime = vehicleDepTime + 60 * (1 + random.nextInt(4));
+                    legs.add(fixture.ride(stopA, stopB, transitRoute, time, vehicleDepTime, arrivalTime, 1000));
+                    time = arrivalTime;
+                    if (ride < rides - 1) {
+                        double walkArrival = time + 60 * random.nextInt(2);
+                        legs.add(fixture.walk(stopB, stopA, time, walkArrival, 100));
+                        time = walkArrival;
+                    }
+                }
+                Stop2StopRoute route = new Stop2StopRoute(fixture.arena, legs, stopB);
+                all.add(route);
+                frontier.add(route);
+            }
+
+            assertThat(survivors(frontier.routes(), origin, destination))
+                .containsExactlyInAnyOrderElementsOf(survivors(all, origin, destination));
+        }
+    }
+
+    /**
+     * The routes remaining after removing dominated routes.
+     */
+    private static List<Stop2StopRoute> survivors(List<Stop2StopRoute> routes, Connectors.ConnectedStop origin, Connectors.ConnectedStop destination) {
+        RouteCharacteristics characteristics = new RouteCharacteristics();
+        List<FoundRoute> foundRoutes = new ArrayList<>();
+        for (Stop2StopRoute route : routes) {
+            FoundRoute foundRoute = new FoundRoute(route, origin, destination);
+            double inVehicleTime = 0;
+            double walkTime = 0;
+            double waitTime = 0;
+            boolean afterWalk = false;
+            for (int leg = 0; leg < route.legCount(); leg++) {
+                if (route.isTransferLeg(leg)) {
+                    walkTime += route.legArrivalTime(leg) - route.legDepTime(leg);
+                    afterWalk = true;
+                } else {
+                    if (afterWalk) {
+                        waitTime += route.legVehicleDepTime(leg) - route.legDepTime(leg);
+                    }
+                    inVehicleTime += route.legArrivalTime(leg) - route.legVehicleDepTime(leg);
+                    afterWalk = false;
+                }
+            }
+            characteristics.add(inVehicleTime, origin.walkTime(), destination.walkTime(), walkTime, waitTime, route.transfers, 0, 0);
+            foundRoutes.add(foundRoute);
+        }
+        characteristics.evaluate(PJT, SEARCH);
+        for (int i = 0; i < foundRoutes.size(); i++) {
+            foundRoutes.get(i).searchImpedance = characteristics.searchImpedance(i);
+        }
+        UmlegoRouteUtils.removeDominatedRoutes(foundRoutes);
+        return foundRoutes.stream().map(route -> route.stop2stopRoute).toList();
+    }
+}
@@ -0,0 +1,30 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.umlego.config.PreselectionParameters;
+import org.junit.jupiter.api.Test;
+
+class RoutePreselectionTest {
+
+    @Test
+    void rejectRoutesComparedToBest() {
+        RoutePreselection preselection = new RoutePreselection(new PreselectionParameters(2.0, 60.0));
+        preselection.add(0, 100, 3600);
+        preselection.add(1, 150, 3000);
+        preselection.add(5, 120, 3300);
+
+        // the search impedance is limited to 2 * 100 + 60
+        assertThat(preselection.isRejected(0, 260, 3600)).isFalse();
+        assertThat(preselection.isRejected(0, 261, 3600)).isTrue();
+        // more than three transfers more than the best route are only kept for the fastest route
+        assertThat(preselection.isRejected(3, 120, 3300)).isFalse();
+        assertThat(preselection.isRejected(4, 120, 3300)).isTrue();
+        assertThat(preselection.isRejected(4, 120, 3000)).isFalse();
+
+        // the routes of the next pair are compared with their own best values
+        preselection.clear();
+        preselection.add(4, 300, 3300);
+        assertThat(preselection.isRejected(4, 300, 3300)).isFalse();
+    }
+}
@@ -0,0 +1,73 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import ch.sbb.matsim.umlego.config.RouteImpedanceParameters;
+import ch.sbb.matsim.umlego.config.RouteShareMode;
+import ch.sbb.matsim.umlego.deltat.DeltaTCalculator;
+import ch.sbb.matsim.umlego.deltat.IntervalBoundaries;
+import ch.sbb.matsim.umlego.deltat.IntervalCenter;
+import ch.sbb.matsim.umlego.deltat.IntervalStart;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+
+class RouteSharesTest {
+
+    private static final RouteImpedanceParameters IMPEDANCE = new RouteImpedanceParameters(1.0, 1.85, 1.85);
+    private static final double DEMAND = 100.0;
+
+    @Test
+    void integrationMatchesSampling() {
+        TestRoutes fixture = new TestRoutes();
+        var stopA = fixture.stop("A", 0);
+        var stopB = fixture.stop("B", 1000);
+        TransitRoute transitRoute = fixture.transitRoute("L", "R", stopA, stopB);
+
+        DeltaTCalculator[] calculators = {new IntervalStart(), new IntervalBoundaries(), new IntervalCenter()};
+        RouteUtilityCalculator[] utilityCalculators = {RouteUtilityCalculators.boxcox(1.536, 0.5), RouteUtilityCalculators.lohse(1.0)};
+        Random random = new Random(5);
+        for (int iteration = 0; iteration < 300; iteration++) {
+            DeltaTCalculator calculator = calculators[random.nextInt(calculators.length)];
+            RouteUtilityCalculator utilityCalculator = utilityCalculators[random.nextInt(utilityCalculators.length)];
+            double startTime = 60 * (300 + random.nextInt(600));
+            double endTime = startTime + 60 * (10 + random.nextInt(240));
+            int count = 1 + random.nextInt(10);
+            FoundRoute[] sampled = new FoundRoute[count];
+            FoundRoute[] exact = new FoundRoute[count];
+            FoundRoute[] approximated = new FoundRoute[count];
+            for (int i = 0; i < count; i++) {
+                double depTime = startTime - 3600 + random.nextInt((int) (endTime - startTime) + 7200);
+                double arrTime = depTime + 60 * (10 + random.nextInt(60));
+                Stop2StopRoute s2s = fixture.route(stopB, fixture.ride(stopA, stopB, transitRoute, depTime, depTime, arrTime, 1000));
+                FoundRoute route = new FoundRoute(s2s, new Connectors.ConnectedStop("1", 60 * random.nextInt(10), stopA),
+                    new Connectors.ConnectedStop("2", 60, stopB));
+                route.perceivedJourneyTimeMin = (arrTime - depTime) / 60.0 + 5;
+                route.originality = random.nextBoolean() ? 1.0 : 0.5;
+                sampled[i] = route;
+                exact[i] = new FoundRoute(route);
+                approximated[i] = new FoundRoute(route);
+            }
+
+            new RouteShares(IMPEDANCE, utilityCalculator, calculator, RouteShareMode.SAMPLED, 0)
+                .assign(sampled, 0, count, startTime, endTime, DEMAND, false);
+            new RouteShares(IMPEDANCE, utilityCalculator, calculator, RouteShareMode.INTEGRATED, 0)
+                .assign(exact, 0, count, startTime, endTime, DEMAND, true);
+            new RouteShares(IMPEDANCE, utilityCalculator, calculator, RouteShareMode.INTEGRATED, 1e-3)
+                .assign(approximated, 0, count, startTime, endTime, DEMAND, false);
+
+            double total = 0;
+            for (int i = 0; i < count; i++) {
+                assertThat(exact[i].demand).isCloseTo(sampled[i].demand, within(1e-9));
+                assertThat(exact[i].adaptationTime).isCloseTo(sampled[i].adaptationTime, within(1e-6));
+                assertThat(approximated[i].demand).isCloseTo(sampled[i].demand, within(DEMAND * 3e-3));
+                assertThat(exact[i].skimDemand).isEqualTo(exact[i].demand);
+                assertThat(exact[i].skimAdaptationTime).isEqualTo(exact[i].adaptationTime);
+                assertThat(sampled[i].skimDemand).isZero();
+                total += approximated[i].demand;
+            }
+            assertThat(total).isCloseTo(DEMAND, within(1e-9));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RouteUtilityCalculatorsTest {
+
+    private static final double MAX_ERROR = 1e-4;
+
+    @Test
+    void tabulatedUtilitiesAreWithinErrorBound() {
+        RouteUtilityCalculator boxcox = RouteUtilityCalculators.boxcox(1.536, 0.5);
+        RouteUtilityCalculator tabulatedBoxcox = RouteUtilityCalculators.tabulatedBoxcox(1.536, 0.5, MAX_ERROR);
+        RouteUtilityCalculator lohse = RouteUtilityCalculators.lohse(1.0);
+        RouteUtilityCalculator tabulatedLohse = RouteUtilityCalculators.tabulatedLohse(1.0, MAX_ERROR);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // includes impedances below and ratios above the tabulated range
+            double minImpedance = 0.5 + random.nextDouble() * 300;
+            double impedance = minImpedance * (1 + random.nextDouble() * 20);
+            assertThat(relativeError(tabulatedBoxcox, boxcox, impedance, minImpedance)).isLessThanOrEqualTo(MAX_ERROR);
+            assertThat(relativeError(tabulatedBoxcox, boxcox, minImpedance, minImpedance)).isLessThanOrEqualTo(MAX_ERROR);
+            assertThat(relativeError(tabulatedLohse, lohse, impedance, minImpedance)).isLessThanOrEqualTo(MAX_ERROR);
+        }
+        assertThat(tabulatedLohse.calculateUtility(42.0, 42.0)).isEqualTo(1.0);
+    }
+
+    @Test
+    void tableRejectsUnboundedError() {
+        assertThatThrownBy(() -> new UtilityTable(x -> x - 1.0, 0.0, 2.0, MAX_ERROR)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static double relativeError(RouteUtilityCalculator tabulated, RouteUtilityCalculator exact, double r, double rMin) {
+        double expected = exact.calculateUtility(r, rMin);
+        return Math.abs(tabulated.calculateUtility(r, rMin) - expected) / expected;
+    }
+}
@@ -0,0 +1,96 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+
+class Stop2StopRouteTest {
+
+    @Test
+    void encodeLegsInArena() {
+        TestRoutes fixture = new TestRoutes();
+        var stopA = fixture.stop("A", 0);
+        var stopB = fixture.stop("B", 1000);
+        var stopC = fixture.stop("C", 2000);
+        var stopD = fixture.stop("D", 2100);
+        TransitRoute route1 = fixture.transitRoute("L1", "R1", stopA, stopB);
+        TransitRoute route2 = fixture.transitRoute("L2", "R2", stopB, stopC);
+        TransitLine line2 = fixture.line(route2);
+
+        RouteArena arena = fixture.arena(4);
+
+        // stay seated from L1 to L2 at B, then walk to D
+        RouteLeg chained = fixture.ride(stopB, stopC, route2, 160, 160, 220, 1000);
+        RouteLeg ride = fixture.ride(stopA, stopB, route1, 50, 100, 160, 1000, chained);
+        RouteLeg walk = fixture.walk(stopC, stopD, 220, 300, 100);
+        RouteLeg ride2 = fixture.ride(stopD, stopA, route1, 300, 360, 400, 500);
+
+        var route = new Stop2StopRoute(arena, List.of(ride, walk, ride2), stopA);
+
+        assertThat(route.legCount()).isEqualTo(4);
+        assertThat(route.originStop).isSameAs(stopA);
+        assertThat(route.destinationStop).isSameAs(stopA);
+        assertThat(route.depTime).isEqualTo(100);
+        assertThat(route.arrTime).isEqualTo(400);
+        assertThat(route.transfers).isEqualTo(1);
+        assertThat(route.distance).isEqualTo(2500);
+
+        assertThat(route.isChained(1)).isTrue();
+        assertThat(route.chainEnd(0)).isEqualTo(1);
+        assertThat(route.legChainedArrivalTime(0)).isEqualTo(220);
+        assertThat(route.legLine(1)).isSameAs(line2);
+        assertThat(route.isTransferLeg(2)).isTrue();
+        assertThat(route.legMode(2)).isEqualTo("walk");
+        assertThat(route.legFromStop(2)).isSameAs(stopC);
+        assertThat(route.legToStop(2)).isSameAs(stopD);
+        assertThat(route.legDepTime(3)).isEqualTo(300);
+        assertThat(route.legVehicleDepTime(3)).isEqualTo(360);
+
+        // a second route does not fit into the first chunk anymore
+        var other = new Stop2StopRoute(arena, List.of(ride, walk, ride2), stopA);
+        assertThat(other).isEqualTo(route);
+        assertThat(other.getRouteAsString()).isEqualTo(route.getRouteAsString());
+        assertThat(route.getRouteAsString()).contains(" => ");
+
+        // moving the legs into a chunk of their own keeps the route unchanged
+        String description = route.getRouteAsString();
+        var chunk = arena.compactChunk(route.legCount());
+        route.moveTo(chunk);
+        assertThat(chunk.used).isEqualTo(chunk.capacity);
+        assertThat(route).isEqualTo(other);
+        assertThat(route.getRouteAsString()).isEqualTo(description);
+        assertThat(route.isChained(1)).isTrue();
+        assertThat(route.legMode(2)).isEqualTo("walk");
+        assertThat(route.legVehicleDepTime(3)).isEqualTo(360);
+    }
+
+    @Test
+    void countIntermediateStops() {
+        TestRoutes fixture = new TestRoutes();
+        var stopA = fixture.stop("A", 0);
+        var stopB = fixture.stop("B", 1000);
+        var stopC = fixture.stop("C", 2000);
+        var stopD = fixture.stop("D", 3000);
+        TransitRoute straight = fixture.transitRoute("L", "straight", stopA, stopB, stopC, stopD);
+        // serves A twice
+        TransitRoute loop = fixture.transitRoute("L", "loop", stopA, stopB, stopA, stopC, stopD);
+
+        RouteLeg rideAD = fixture.ride(stopA, stopD, straight, 0, 0, 180, 3000);
+        RouteLeg rideDA = fixture.ride(stopD, stopA, straight, 0, 0, 180, 3000);
+        RouteLeg loopAD = fixture.ride(stopA, stopD, loop, 0, 0, 240, 3000);
+        RouteLeg loopBA = fixture.ride(stopB, stopA, loop, 60, 60, 120, 1000);
+        RouteLeg walk = fixture.walk(stopD, stopC, 240, 300, 1000);
+
+        var route = fixture.route(stopC, rideAD, rideDA, loopAD, loopBA, walk);
+
+        assertThat(route.legIntermediateStopCount(0)).isEqualTo(2);
+        assertThat(route.legIntermediateStopCount(1)).isEqualTo(-1);
+        // boards at the second visit of A
+        assertThat(route.legIntermediateStopCount(2)).isEqualTo(1);
+        assertThat(route.legIntermediateStopCount(3)).isZero();
+        assertThat(route.legIntermediateStopCount(4)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,99 @@
+package ch.sbb.matsim.umlego;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Builds small transit schedules and the legs of routes on them for the unit tests.
+ */
+public class TestRoutes {
+
+    public final Config config = ConfigUtils.createConfig();
+    public final TransitSchedule schedule = ScenarioUtils.createScenario(this.config).getTransitSchedule();
+    public final RouteArena arena = new RouteArena(this.schedule);
+
+    private final TransitScheduleFactory factory = this.schedule.getFactory();
+    private final Map<TransitRoute, TransitLine> lineByRoute = new HashMap<>();
+
+    /**
+     * Adds a stop on the x-axis.
+     */
+    public TransitStopFacility stop(String id, double x) {
+        TransitStopFacility stop = this.factory.createTransitStopFacility(Id.create(id, TransitStopFacility.class), new Coord(x, 0), false);
+        this.schedule.addStopFacility(stop);
+        return stop;
+    }
+
+    /**
+     * Adds a rail route serving the stops one minute apart, with a line of the given id, which is created if it does not exist yet.
+     */
+    public TransitRoute transitRoute(String lineId, String routeId, TransitStopFacility... stops) {
+        Id<TransitLine> id = Id.create(lineId, TransitLine.class);
+        TransitLine line = this.schedule.getTransitLines().get(id);
+        if (line == null) {
+            line = this.factory.createTransitLine(id);
+            this.schedule.addTransitLine(line);
+        }
+        List<TransitRouteStop> routeStops = new ArrayList<>();
+        for (int i = 0; i < stops.length; i++) {
+            routeStops.add(this.factory.createTransitRouteStop(stops[i], 60 * i, 60 * i));
+        }
+        TransitRoute route = this.factory.createTransitRoute(Id.create(routeId, TransitRoute.class), null, routeStops, "rail");
+        line.addRoute(route);
+        this.lineByRoute.put(route, line);
+        return route;
+    }
+
+    public void addDeparture(TransitRoute route, String id, double time) {
+        route.addDeparture(this.factory.createDeparture(Id.create(id, Departure.class), time));
+    }
+
+    public TransitLine line(TransitRoute route) {
+        return this.lineByRoute.get(route);
+    }
+
+    public RouteLeg ride(TransitStopFacility from, TransitStopFacility to, TransitRoute route, double depTime, double vehicleDepTime, double arrivalTime,
+        double distance) {
+        return ride(from, to, route, depTime, vehicleDepTime, arrivalTime, distance, null);
+    }
+
+    /**
+     * A pt leg, continuing with the chained leg if the passengers stay seated.
+     */
+    public RouteLeg ride(TransitStopFacility from, TransitStopFacility to, TransitRoute route, double depTime, double vehicleDepTime, double arrivalTime,
+        double distance, RouteLeg chained) {
+        return new RouteLeg(from, to, "pt", depTime, vehicleDepTime, arrivalTime, distance, line(route), route, chained);
+    }
+
+    public RouteLeg walk(TransitStopFacility from, TransitStopFacility to, double depTime, double arrivalTime, double distance) {
+        return new RouteLeg(from, to, "walk", depTime, depTime, arrivalTime, distance, null, null, null);
+    }
+
+    /**
+     * A route with its legs in the arena of the schedule.
+     */
+    public Stop2StopRoute route(TransitStopFacility destinationStop, RouteLeg... legs) {
+        return new Stop2StopRoute(this.arena, List.of(legs), destinationStop);
+    }
+
+    /**
+     * An arena with chunks of the given number of legs, to test routes spread over several chunks.
+     */
+    public RouteArena arena(int chunkLegs) {
+        return new RouteArena(this.schedule, chunkLegs);
+    }
+}
@@ -0,0 +1,220 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
+import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+class UmlegoRouteUtilsTest {
+
+    private final TestRoutes fixture = new TestRoutes();
+    private final TransitStopFacility stopA = this.fixture.stop("A", 0);
+    private final TransitStopFacility stopB = this.fixture.stop("B", 1000);
+    private final TransitRoute transitRoute = this.fixture.transitRoute("L", "R", this.stopA, this.stopB);
+
+    private FoundRoute createRoute(double depTime, double arrTime, int transfers, double searchImpedance) {
+        List<RouteLeg> legs = new ArrayList<>();
+        for (int leg = 0; leg <= transfers; leg++) {
+            legs.add(fixture.ride(stopA, stopB, transitRoute, depTime, depTime, leg == transfers ? arrTime : depTime, 100));
+        }
+        FoundRoute route = new FoundRoute(new Stop2StopRoute(fixture.arena, legs, stopB), new Connectors.ConnectedStop("1", 60, stopA),
+            new Connectors.ConnectedStop("2", 60, stopB));
+        route.searchImpedance = searchImpedance;
+        return route;
+    }
+
+    @Test
+    void transferWithinSameZoneWithStopSets() {
+        // the route ends at stop A and walks to stop B
+        Stop2StopRoute route = fixture.route(stopB, fixture.ride(stopB, stopA, transitRoute, 600, 600, 660, 100));
+        var zoneStops = UmlegoUtils.getStopSetPerZone(Map.of(
+            "1", List.of(new Connectors.ConnectedStop("1", 60, stopA), new Connectors.ConnectedStop("1", 60, stopB)),
+            "2", List.of(new Connectors.ConnectedStop("2", 60, stopB))));
+
+        assertThat(UmlegoRouteUtils.routeEndsWithTransferWithinSameZone(route, zoneStops.get("1"))).isTrue();
+        assertThat(UmlegoRouteUtils.routeEndsWithTransferWithinSameZone(route, zoneStops.get("2"))).isFalse();
+        assertThat(UmlegoRouteUtils.routeEndsWithTransferWithinSameZone(route, new BitSet())).isFalse();
+        assertThat(UmlegoRouteUtils.routeStartsWithTransferWithinSameZone(route, zoneStops.get("1"))).isFalse();
+    }
+
+    @Test
+    void removeDominatedRoutesLikePairwiseComparison() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 2000; iteration++) {
+            // few distinct values, so that many routes have equal times, transfers or impedances
+            List<FoundRoute> routes = new ArrayList<>();
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                double depTime = 60 * random.nextInt(10);
+                double arrTime = depTime + 60 * random.nextInt(8);
+                routes.add(createRoute(depTime, arrTime, random.nextInt(4), random.nextInt(6)));
+            }
+
+            List<FoundRoute> expected = new ArrayList<>(routes);
+            removeDominatedRoutesPairwise(expected);
+            UmlegoRouteUtils.removeDominatedRoutes(routes);
+
+            assertThat(routes).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void removeDominatedCandidatesLikeFoundRoutes() {
+        var pjt = new PerceivedJourneyTimeParameters(1.0, 0, 0, 0, 0, 0, 0, 0);
+        var search = new SearchImpedanceParameters(1.0, 0, 0, 0, 0, 0);
+        RouteHandles candidates = new RouteHandles();
+        RouteCharacteristics characteristics = new RouteCharacteristics();
+        Random random = new Random(11);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<FoundRoute> routes = new ArrayList<>();
+            candidates.clear();
+            characteristics.clear();
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                double depTime = 60 * random.nextInt(10);
+                int impedance = random.nextInt(6);
+                FoundRoute route = createRoute(depTime, depTime + 60 * random.nextInt(8), random.nextInt(4), impedance);
+                routes.add(route);
+                candidates.add(route.stop2stopRoute, i % 3, i % 5, route.travelTimeWithAccess);
+                // the impedance is the in-vehicle time in minutes
+                characteristics.add(60 * impedance, 0, 0, 0, 0, 0, 0, 0);
+            }
+            characteristics.evaluate(pjt, search);
+
+            UmlegoRouteUtils.removeDominatedRoutes(routes);
+            UmlegoRouteUtils.removeDominatedRoutes(candidates, characteristics);
+
+            assertThat(candidates.size()).isEqualTo(routes.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                long handle = candidates.handle(i);
+                assertThat(candidates.route(handle)).isSameAs(routes.get(i).stop2stopRoute);
+                assertThat(RouteHandles.originConnector(handle)).isEqualTo(RouteHandles.routeIndex(handle) % 3);
+                assertThat(RouteHandles.destinationConnector(handle)).isEqualTo(RouteHandles.routeIndex(handle) % 5);
+            }
+        }
+    }
+
+    @Test
+    void orderDominanceSortedRoutesByDepartureTime() {
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<FoundRoute> routes = new ArrayList<>();
+            int count = random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                double depTime = 60 * random.nextInt(5);
+                routes.add(createRoute(depTime, depTime + 60 * random.nextInt(4), random.nextInt(3), random.nextInt(3)));
+            }
+            UmlegoRouteUtils.removeDominatedRoutes(routes);
+
+            List<FoundRoute> expected = new ArrayList<>(routes);
+            expected.sort(UmlegoRouteUtils::compareFoundRoutesByDepartureTime);
+            UmlegoRouteUtils.orderDominanceSortedByDepartureTime(routes);
+
+            assertThat(routes).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void calculateOriginalityPerGroup() {
+        FoundRoute r1 = createRoute(600, 1200, 1, 10);
+        FoundRoute r2 = createRoute(600, 1200, 1, 12);
+        FoundRoute r3 = createRoute(600, 1200, 1, 10);
+        FoundRoute r4 = createRoute(600, 1200, 0, 10);
+        FoundRoute r5 = createRoute(900, 1200, 1, 10);
+        FoundRoute r6 = createRoute(600, 1200, 1, 10);
+
+        // not grouped, r6 is separated from the other routes with the same times
+        List<FoundRoute> routes = new ArrayList<>(List.of(r1, r2, r3, r5, r4, r6));
+        UmlegoRouteUtils.calculateOriginality(routes);
+
+        assertThat(r1.originality).isEqualTo(1.0 / 3);
+        assertThat(r3.originality).isEqualTo(1.0 / 3);
+        assertThat(r6.originality).isEqualTo(1.0 / 3);
+        assertThat(r2.originality).isEqualTo(1.0);
+        assertThat(r4.originality).isEqualTo(1.0);
+        assertThat(r5.originality).isEqualTo(1.0);
+    }
+
+    @Test
+    void calculateOriginalityOfSignedZeroAndNaN() {
+        FoundRoute r1 = createRoute(600, 1200, 1, 0.0);
+        FoundRoute r2 = createRoute(600, 1200, 1, -0.0);
+        FoundRoute r3 = createRoute(600, 1200, 1, Double.NaN);
+        FoundRoute r4 = createRoute(600, 1200, 1, Double.NaN);
+        FoundRoute r5 = createRoute(600, 1200, 1, 5);
+
+        List<FoundRoute> routes = new ArrayList<>(List.of(r1, r2, r3, r4, r5));
+        UmlegoRouteUtils.calculateOriginality(routes);
+
+        assertThat(r1.originality).isEqualTo(0.5);
+        assertThat(r2.originality).isEqualTo(0.5);
+        // a route without impedance is only equal to itself
+        assertThat(r3.originality).isEqualTo(1.0);
+        assertThat(r4.originality).isEqualTo(1.0);
+        assertThat(r5.originality).isEqualTo(1.0);
+    }
+
+    /**
+     * The former implementation, comparing each route with all later routes it could contain.
+     */
+    private static void removeDominatedRoutesPairwise(List<FoundRoute> routes) {
+        routes.sort((o1, o2) -> {
+            if (o1.stop2stopRoute.depTime < o2.stop2stopRoute.depTime) {
+                return -1;
+            }
+            if (o1.stop2stopRoute.depTime > o2.stop2stopRoute.depTime) {
+                return +1;
+            }
+            if (o1.stop2stopRoute.arrTime < o2.stop2stopRoute.arrTime) {
+                return +1;
+            }
+            if (o1.stop2stopRoute.arrTime > o2.stop2stopRoute.arrTime) {
+                return -1;
+            }
+            return Integer.compare(o1.stop2stopRoute.transfers, o2.stop2stopRoute.transfers);
+        });
+
+        List<Integer> dominatedRouteIndices = new ArrayList<>(routes.size());
+        for (int route1Index = 0, n = routes.size(); route1Index < n; route1Index++) {
+            FoundRoute route1 = routes.get(route1Index);
+            if (route1.stop2stopRoute.transfers == 0) {
+                continue;
+            }
+            for (int route2Index = route1Index + 1; route2Index < n; route2Index++) {
+                FoundRoute route2 = routes.get(route2Index);
+                if (route2.stop2stopRoute.depTime > route1.stop2stopRoute.arrTime) {
+                    break;
+                }
+                if (route2DominatesRoute1(route2, route1)) {
+                    dominatedRouteIndices.add(route1Index);
+                    break;
+                }
+            }
+        }
+
+        dominatedRouteIndices.sort((i1, i2) -> Integer.compare(i2, i1));
+        for (Integer routeIndex : dominatedRouteIndices) {
+            routes.remove(routeIndex.intValue());
+        }
+    }
+
+    private static boolean route2DominatesRoute1(FoundRoute route2, FoundRoute route1) {
+        boolean isContained = route2.stop2stopRoute.depTime >= route1.stop2stopRoute.depTime && route2.stop2stopRoute.arrTime <= route1.stop2stopRoute.arrTime;
+        boolean isStrictlyContained = isContained && (route2.stop2stopRoute.depTime > route1.stop2stopRoute.depTime
+            || route2.stop2stopRoute.arrTime < route1.stop2stopRoute.arrTime);
+        boolean equalOrLessTransfers = route2.stop2stopRoute.transfers <= route1.stop2stopRoute.transfers;
+        boolean lessTransfers = route2.stop2stopRoute.transfers < route1.stop2stopRoute.transfers;
+        boolean equalOrBetterSearchImpedance = route1.searchImpedance >= route2.searchImpedance;
+        boolean betterSearchImpedance = route1.searchImpedance > route2.searchImpedance;
+        boolean hasStrictInequality = isStrictlyContained || lessTransfers || betterSearchImpedance;
+        return isContained && equalOrLessTransfers && equalOrBetterSearchImpedance && hasStrictInequality;
+    }
+}
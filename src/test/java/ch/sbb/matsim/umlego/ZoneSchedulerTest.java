@@ -0,0 +1,22 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ZoneSchedulerTest {
+
+    @Test
+    void largestFirstShortensMakespan() {
+        List<String> zones = List.of("a", "b", "c", "d", "e");
+
+        // the large zone at the end has to be processed alone after all others
+        var fifo = new ZoneScheduler(zones, new double[]{1, 1, 1, 1, 4}, true, 2);
+        assertThat(fifo.expectedMakespan(1.0)).isEqualTo(6.0);
+
+        var largestFirst = new ZoneScheduler(zones, new double[]{4, 1, 1, 1, 1}, true, 2);
+        assertThat(largestFirst.expectedMakespan(1.0)).isEqualTo(4.0);
+        assertThat(largestFirst.expectedMakespan(0.5)).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,34 @@
+package ch.sbb.matsim.umlego;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZoneTimingsTest {
+
+    @Test
+    void writeSubsetKeepsPreviousZones(@TempDir Path directory) {
+        Path file = directory.resolve("timings.csv");
+        ZoneTimings firstRun = new ZoneTimings();
+        firstRun.record("a", 0, 1_000_000_000L);
+        firstRun.record("b", 0, 2_000_000_000L);
+        firstRun.record("c", 0, 3_000_000_000L);
+        firstRun.write(file);
+
+        // the second run only computes zone b
+        ZoneTimings previous = ZoneTimings.read(file);
+        ZoneTimings secondRun = new ZoneTimings();
+        secondRun.record("b", 0, 500_000_000L);
+        secondRun.mergedWith(previous).write(file);
+
+        ZoneTimings timings = ZoneTimings.read(file);
+        assertThat(timings.size()).isEqualTo(3);
+        assertThat(timings.getSeconds("a")).isCloseTo(1.0, within(1e-6));
+        assertThat(timings.getSeconds("b")).isCloseTo(0.5, within(1e-6));
+        assertThat(timings.getSeconds("c")).isCloseTo(3.0, within(1e-6));
+        assertThat(secondRun.size()).isEqualTo(1);
+    }
+}
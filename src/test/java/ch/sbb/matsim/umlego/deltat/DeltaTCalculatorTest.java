@@ -0,0 +1,34 @@
+package ch.sbb.matsim.umlego.deltat;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DeltaTCalculatorTest {
+
+	@Test
+	public void testBatchMatchesScalarCalculations() {
+		DeltaTCalculator[] calculators = {new IntervalStart(), new IntervalBoundaries(), new IntervalCenter()};
+		Random random = new Random(3);
+		int count = 200;
+		double[] departureTimes = new double[count];
+		double[] early = new double[count];
+		double[] late = new double[count];
+		for (DeltaTCalculator calculator : calculators) {
+			for (int iteration = 0; iteration < 500; iteration++) {
+				double intervalStart = random.nextInt(3 * 86400) - 86400;
+				for (int i = 0; i < count; i++) {
+					// also departures close to the wrap-arounds and several days away
+					departureTimes[i] = random.nextInt(5) == 0
+						? intervalStart + (random.nextInt(9) - 4) * 43200 + (random.nextInt(3) - 1) * 60
+						: random.nextDouble() * 6 * 86400 - 3 * 86400;
+				}
+				calculator.calculateDeltaT(departureTimes, count, intervalStart, intervalStart + 60, early, late);
+				for (int i = 0; i < count; i++) {
+					Assertions.assertEquals(calculator.calculateDeltaTEarly(departureTimes[i], intervalStart, intervalStart + 60), early[i]);
+					Assertions.assertEquals(calculator.calculateDeltaTLate(departureTimes[i], intervalStart, intervalStart + 60), late[i]);
+				}
+			}
+		}
+	}
+}
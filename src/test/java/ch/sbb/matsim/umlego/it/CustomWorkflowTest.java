@@ -18,12 +18,19 @@ import ch.sbb.matsim.umlego.matrix.DemandMatrix;
 import ch.sbb.matsim.umlego.matrix.Zone;
 import ch.sbb.matsim.umlego.matrix.Zones;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -103,6 +110,154 @@ public class CustomWorkflowTest {
             "Work item should have been processed by the worker");
     }
 
+    /**
+     * If a worker fails, the run fails as well, but only after the remaining items were skipped, the results handled and the threads stopped.
+     */
+    @Test
+    void testFailingWorker() throws Exception {
+        List<String> zoneIds = List.of("A", "B", "C", "D", "E", "F");
+        FailingWorkflowFactory factory = new FailingWorkflowFactory("B", "D");
+        Umlego umlego = new Umlego(createUniformDemand(zoneIds), factory);
+
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> umlego.run(zoneIds, zoneIds, createUmlegoParameters(), 1, ""));
+        Assertions.assertEquals("zone B failed", e.getCause().getMessage());
+
+        // the zone after the failing one was submitted before the failure, it is skipped
+        Assertions.assertTrue(factory.workItems.size() >= 4);
+        for (MockWorkItem item : factory.workItems.subList(2, factory.workItems.size())) {
+            for (CompletableFuture<? extends WorkResult> result : item.results()) {
+                Assertions.assertTrue(result.isCompletedExceptionally(), "Zone " + item.originZone() + " should be skipped");
+                Assertions.assertThrows(CancellationException.class, result::join);
+            }
+        }
+        Assertions.assertTrue(factory.workItems.getFirst().results().getFirst().isDone());
+        Assertions.assertFalse(factory.workItems.getFirst().results().getFirst().isCompletedExceptionally());
+
+        // the result worker completed and closed its handlers
+        Assertions.assertEquals(2, factory.handlers.size());
+        Assertions.assertTrue(factory.handlers.stream().allMatch(handler -> handler.closed));
+        Assertions.assertEquals(1, factory.handlers.getFirst().handled);
+
+        // the threads of the pool stopped
+        Assertions.assertFalse(factory.workerThreads.isEmpty());
+        for (Thread thread : factory.workerThreads) {
+            thread.join(10_000);
+            Assertions.assertFalse(thread.isAlive(), "Worker thread " + thread.getName() + " should have stopped");
+        }
+    }
+
+    /**
+     * A work item with the wrong number of results fails the run, but only after the results submitted before were handled and the handlers closed.
+     */
+    @Test
+    void testResultCountMismatch() {
+        List<String> zoneIds = List.of("A", "B", "C");
+        FailingWorkflowFactory factory = new FailingWorkflowFactory("", "") {
+            @Override
+            public MockWorkItem createWorkItem(String originZone) {
+                if ("C".equals(originZone)) {
+                    return new MockWorkItem(originZone, List.of(new CompletableFuture<MockWorkResult>()));
+                }
+                return super.createWorkItem(originZone);
+            }
+        };
+        Umlego umlego = new Umlego(createUniformDemand(zoneIds), factory);
+
+        Assertions.assertTimeoutPreemptively(Duration.ofMinutes(1),
+            () -> Assertions.assertThrows(IllegalArgumentException.class, () -> umlego.run(zoneIds, zoneIds, createUmlegoParameters(), 1, "")));
+
+        Assertions.assertEquals(2, factory.handlers.size());
+        Assertions.assertTrue(factory.handlers.stream().allMatch(handler -> handler.closed));
+        Assertions.assertEquals(factory.workItems.size(), factory.handlers.getFirst().handled);
+    }
+
+    private static Matrices createUniformDemand(List<String> zoneIds) {
+        var zones = new Zones(zoneIds.stream().map(zone -> new Zone(zone, zone, "CH")).toList());
+        double[][] m = new double[zoneIds.size()][zoneIds.size()];
+        for (double[] row : m) {
+            Arrays.fill(row, 1.0);
+        }
+        return new Matrices(List.of(new DemandMatrix(0, 60, m)), zones, zones.createDefaultZonesLookup());
+    }
+
+    /**
+     * Workflow whose worker fails on one zone. The failing zone waits until a later zone was created, so there are items submitted before the failure.
+     */
+    private static class FailingWorkflowFactory implements WorkflowFactory<MockWorkItem> {
+
+        final String failingZone;
+        final String waitForZone;
+        final CountDownLatch waitForZoneCreated = new CountDownLatch(1);
+        final List<MockWorkItem> workItems = new CopyOnWriteArrayList<>();
+        final List<CountingResultHandler> handlers = new CopyOnWriteArrayList<>();
+        final Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+
+        FailingWorkflowFactory(String failingZone, String waitForZone) {
+            this.failingZone = failingZone;
+            this.waitForZone = waitForZone;
+        }
+
+        @Override
+        public IntSet computeDestinationStopIndices(List<String> destinationZoneIds) {
+            return IntSet.of();
+        }
+
+        @Override
+        public AbstractWorker<MockWorkItem> createWorker(UmlegoParameters params, List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
+            return new AbstractWorker<>(params, destinationZoneIds, Mockito.mock(Matrices.class), null, deltaTCalculator) {
+                @Override
+                protected void processOriginZone(MockWorkItem workItem) {
+                    workerThreads.add(Thread.currentThread());
+                    if (failingZone.equals(workItem.originZone())) {
+                        try {
+                            waitForZoneCreated.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IllegalStateException("zone " + workItem.originZone() + " failed");
+                    }
+                    for (int i = 0; i < workItem.results().size(); i++) {
+                        ((CompletableFuture<WorkResult>) workItem.results().get(i)).complete(new MockWorkResult(workItem.originZone(), "result" + i));
+                    }
+                }
+            };
+        }
+
+        @Override
+        public MockWorkItem createWorkItem(String originZone) {
+            MockWorkItem item = new MockWorkItem(originZone, List.of(new CompletableFuture<MockWorkResult>(), new CompletableFuture<MockWorkResult>()));
+            this.workItems.add(item);
+            if (this.waitForZone.equals(originZone)) {
+                this.waitForZoneCreated.countDown();
+            }
+            return item;
+        }
+
+        @Override
+        public List<WorkResultHandler<?>> createResultHandler(UmlegoParameters params, String outputFolder, List<String> destinationZoneIds,
+            List<UmlegoListener> listeners) {
+            this.handlers.add(new CountingResultHandler());
+            this.handlers.add(new CountingResultHandler());
+            return List.copyOf(this.handlers);
+        }
+    }
+
+    private static class CountingResultHandler implements WorkResultHandler<MockWorkResult> {
+
+        volatile int handled = 0;
+        volatile boolean closed = false;
+
+        @Override
+        public void handleResult(MockWorkResult result) {
+            this.handled++;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
     /**
      * Mock implementation of WorkflowFactory for testing purposes.
      */
@@ -119,10 +274,10 @@ public class CustomWorkflowTest {
         }
 
         @Override
-        public AbstractWorker<MockWorkItem> createWorker(BlockingQueue<MockWorkItem> workerQueue, UmlegoParameters params,
+        public AbstractWorker<MockWorkItem> createWorker(UmlegoParameters params,
             List<String> destinationZoneIds, DeltaTCalculator deltaTCalculator) {
             createWorkerCalled = true;
-            return new AbstractWorker<>(workerQueue, params, destinationZoneIds, Mockito.mock(Matrices.class),  null, deltaTCalculator) {
+            return new AbstractWorker<>(params, destinationZoneIds, Mockito.mock(Matrices.class),  null, deltaTCalculator) {
                 @Override
                 protected void processOriginZone(MockWorkItem workItem) {
                     workItemProcessed = true;
@@ -4,12 +4,18 @@ import ch.sbb.matsim.umlego.config.CompressionType;
 import ch.sbb.matsim.umlego.config.PerceivedJourneyTimeParameters;
 import ch.sbb.matsim.umlego.config.PreselectionParameters;
 import ch.sbb.matsim.umlego.config.RouteImpedanceParameters;
+import ch.sbb.matsim.umlego.config.RoutePostprocessing;
+import ch.sbb.matsim.umlego.config.RouteSearchMode;
 import ch.sbb.matsim.umlego.config.RouteSelectionParameters;
+import ch.sbb.matsim.umlego.config.RouteShareMode;
+import ch.sbb.matsim.umlego.config.RoutingParameters;
+import ch.sbb.matsim.umlego.config.SchedulingParameters;
 import ch.sbb.matsim.umlego.config.SearchImpedanceParameters;
 import ch.sbb.matsim.umlego.config.SkimsParameters;
 import ch.sbb.matsim.umlego.config.UmlegoParameters;
 import ch.sbb.matsim.umlego.config.UtilityFunctionParams;
 import ch.sbb.matsim.umlego.config.WriterParameters;
+import ch.sbb.matsim.umlego.config.ZoneOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -63,14 +69,27 @@ import org.matsim.vehicles.Vehicles;
     }
 
     public static UmlegoParameters createUmlegoParameters() {
+        return createUmlegoParameters(new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED));
+    }
+
+    public static UmlegoParameters createUmlegoParameters(RoutingParameters routing) {
+        return createUmlegoParameters(routing, false);
+    }
+
+    public static UmlegoParameters createUmlegoParameters(RoutingParameters routing, boolean limitSelectionToTimewindow) {
+        return createUmlegoParameters(routing, limitSelectionToTimewindow, new WriterParameters(1e-5, CompressionType.NONE, Set.of()));
+    }
+
+    public static UmlegoParameters createUmlegoParameters(RoutingParameters routing, boolean limitSelectionToTimewindow, WriterParameters writer) {
         SearchImpedanceParameters search = new SearchImpedanceParameters(1.0, 1.0, 1.0, 1.0, 1.0, 10.0);
         PreselectionParameters preselection = new PreselectionParameters(2.0, 60.0);
         PerceivedJourneyTimeParameters pjt = new PerceivedJourneyTimeParameters(1.0, 2.94, 2.94, 2.25, 1.13, 17.24, 0.03, 58.0);
         RouteImpedanceParameters impedance = new RouteImpedanceParameters(1.0, 1.85, 1.85);
-        RouteSelectionParameters routeSelection = new RouteSelectionParameters(false, 3600.0, 3600.0, new UtilityFunctionParams(UtilityFunctionParams.Type.boxcox, Map.of("beta", 1.536, "tau", 0.5)));
+        RouteSelectionParameters routeSelection = new RouteSelectionParameters(limitSelectionToTimewindow, 3600.0, 3600.0, new UtilityFunctionParams(UtilityFunctionParams.Type.boxcox, Map.of("beta", 1.536, "tau", 0.5), 0.0),
+            RouteShareMode.SAMPLED, 0.001);
         SkimsParameters skims = new SkimsParameters(3 * 60, 22 * 60);
-        WriterParameters writer = new WriterParameters(1e-5, CompressionType.NONE, Set.of());
-        return new UmlegoParameters(5, 1, search, preselection, pjt, impedance, routeSelection, skims, writer, List.of(), null);
+        SchedulingParameters scheduling = new SchedulingParameters(ZoneOrder.ALPHABETICAL, "");
+        return new UmlegoParameters(5, 1, search, preselection, pjt, impedance, routeSelection, skims, writer, List.of(), null, routing, scheduling);
 
     }
 
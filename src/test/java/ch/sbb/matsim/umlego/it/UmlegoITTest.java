@@ -3,18 +3,36 @@ package ch.sbb.matsim.umlego.it;
 import static ch.sbb.matsim.umlego.it.UmlegoFixture.createUmlegoParameters;
 
 import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.FoundRoute;
 import ch.sbb.matsim.umlego.Umlego;
+import ch.sbb.matsim.umlego.config.CompressionType;
+import ch.sbb.matsim.umlego.config.RoutePostprocessing;
+import ch.sbb.matsim.umlego.config.RouteSearchMode;
+import ch.sbb.matsim.umlego.config.RoutingParameters;
+import ch.sbb.matsim.umlego.config.UmlegoParameters;
+import ch.sbb.matsim.umlego.config.UmlegoWriterType;
+import ch.sbb.matsim.umlego.config.WriterParameters;
+import ch.sbb.matsim.umlego.matrix.AbstractMatrix;
 import ch.sbb.matsim.umlego.matrix.Matrices;
 import ch.sbb.matsim.umlego.matrix.DemandMatrix;
+import ch.sbb.matsim.umlego.matrix.ShareMatrix;
 import ch.sbb.matsim.umlego.matrix.Zone;
 import ch.sbb.matsim.umlego.matrix.Zones;
 import ch.sbb.matsim.umlego.workflows.assignment.AssignmentWorkflowFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.pt.transitSchedule.api.TransitLine;
@@ -82,7 +100,8 @@ public class UmlegoITTest {
         for (var route : listener.routes) {
             var d = route.demand;
             var apz = route.adaptationTime;
-            var lines = route.stop2stopRoute.routeParts.stream().map(rp -> rp.line).filter(Objects::nonNull).map(TransitLine::getId).map(Object::toString).toList();
+            var s2s = route.stop2stopRoute;
+            var lines = IntStream.range(0, s2s.legCount()).filter(i -> !s2s.isChained(i)).mapToObj(s2s::legLine).filter(Objects::nonNull).map(TransitLine::getId).map(Object::toString).toList();
             System.out.println("\t" + lines + " \t|  #transfer = " + route.stop2stopRoute.transfers + "  \t| demand =" + +d + "\t" + apz / d / 60.0);
 
         }
@@ -167,4 +186,185 @@ public class UmlegoITTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * The shared route cache searches the routes from a stop for the whole day and all destinations, the assigned routes must not change.
+     */
+    @Test
+    void testRunWithRouteCache() throws Exception {
+        List<FoundRoute> uncached = runLausanneToGeneve(createUmlegoParameters());
+        List<FoundRoute> cached = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 1_000_000, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED)));
+
+        Assertions.assertFalse(uncached.isEmpty());
+        Assertions.assertEquals(describe(uncached), describe(cached));
+    }
+
+    /**
+     * The fused postprocessing selects the routes of all stops of a zone in one pass, the routes and their demand must be the same as with the staged steps.
+     */
+    @Test
+    void testRunWithFusedPostprocessing() throws Exception {
+        List<FoundRoute> staged = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED)));
+        List<FoundRoute> fused = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.FUSED)));
+
+        Assertions.assertFalse(staged.isEmpty());
+        Assertions.assertEquals(describe(staged), describe(fused));
+        Map<String, Double> stagedDemand = demandPerRoute(staged);
+        Map<String, Double> fusedDemand = demandPerRoute(fused);
+        Assertions.assertEquals(stagedDemand.keySet(), fusedDemand.keySet());
+        for (Map.Entry<String, Double> e : stagedDemand.entrySet()) {
+            Assertions.assertEquals(e.getValue(), fusedDemand.get(e.getKey()), 1e-9, e.getKey());
+        }
+    }
+
+    /**
+     * With the selection limited to the time window, limiting the search to the demand windows only drops routes that are no candidates of any time window.
+     */
+    @Test
+    void testRunLimitedToDemandWindows() throws Exception {
+        List<FoundRoute> wholeDay = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED), true));
+        List<FoundRoute> limited = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, true, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED), true));
+
+        Assertions.assertFalse(limited.isEmpty());
+        // the routes departing after 07:00 are only found for the whole day, they get no demand
+        Assertions.assertTrue(wholeDay.size() > limited.size());
+        Assertions.assertEquals(describe(wholeDay.stream().filter(r -> r.demand > 0).toList()), describe(limited.stream().filter(r -> r.demand > 0).toList()));
+        Assertions.assertEquals(wholeDay.stream().mapToDouble(r -> r.demand).sum(), limited.stream().mapToDouble(r -> r.demand).sum(), 1e-9);
+    }
+
+    /**
+     * The search from all stops of a zone only keeps the routes that are best for the raptor, so it finds a subset of the routes of the search per stop.
+     */
+    @Test
+    void testRunWithZoneSearch() throws Exception {
+        List<FoundRoute> perStop = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED)));
+        List<FoundRoute> perZone = runLausanneToGeneve(createUmlegoParameters(
+            new RoutingParameters("", 0, false, 0, RouteSearchMode.ZONE, false, RoutePostprocessing.STAGED)));
+
+        Assertions.assertFalse(perZone.isEmpty());
+        // routes from both connected stops are found per stop
+        Assertions.assertEquals(2, perStop.stream().map(r -> r.stop2stopRoute.originStop).distinct().count());
+        List<String> stopRoutes = perStop.stream().map(r -> r.stop2stopRoute.originStop.getId() + " " + r.stop2stopRoute.depTime).toList();
+        for (FoundRoute route : perZone) {
+            Assertions.assertTrue(stopRoutes.contains(route.stop2stopRoute.originStop.getId() + " " + route.stop2stopRoute.depTime));
+        }
+        // the demand is distributed differently, but completely assigned in both modes
+        Assertions.assertEquals(perStop.stream().mapToDouble(r -> r.demand).sum(), perZone.stream().mapToDouble(r -> r.demand).sum(), 1e-9);
+    }
+
+    /**
+     * The demand of each route is split by the shares of the OD pair, and the BLPs of the segments add up to the BLP of the total demand.
+     */
+    @Test
+    void testRunWithSegments(@TempDir Path outputFolder) throws Exception {
+        UmlegoParameters params = createUmlegoParameters(new RoutingParameters("", 0, false, 0, RouteSearchMode.STOP, false, RoutePostprocessing.STAGED),
+            false, new WriterParameters(0.0, CompressionType.NONE, Set.of(UmlegoWriterType.BLP, UmlegoWriterType.SegmentBLP)));
+        List<ShareMatrix> shares = List.of(
+            new ShareMatrix("leisure", new double[][]{{0, 0}, {0.75, 0}}),
+            new ShareMatrix("business", new double[][]{{0, 0}, {0.25, 0}}));
+        List<FoundRoute> routes = runLausanneToGeneve(params, shares, outputFolder.toString());
+
+        Assertions.assertFalse(routes.isEmpty());
+        Assertions.assertEquals(10.0, routes.stream().mapToDouble(r -> r.demand).sum(), 1e-9);
+        for (FoundRoute route : routes) {
+            // the segments are sorted by name
+            Assertions.assertEquals(0.25 * route.demand, route.getSegmentDemand(0), 1e-9);
+            Assertions.assertEquals(0.75 * route.demand, route.getSegmentDemand(1), 1e-9);
+        }
+
+        Path runFolder = outputFolder.resolve("lausanne");
+        Map<String, Double> total = readBlpVolumes(runFolder.resolve("belastungsteppich.csv"));
+        Map<String, Double> business = readBlpVolumes(runFolder.resolve("belastungsteppich_business.csv"));
+        Map<String, Double> leisure = readBlpVolumes(runFolder.resolve("belastungsteppich_leisure.csv"));
+
+        Assertions.assertTrue(total.values().stream().mapToDouble(v -> v).sum() > 0);
+        Assertions.assertEquals(total.keySet(), business.keySet());
+        Assertions.assertEquals(total.keySet(), leisure.keySet());
+        for (Map.Entry<String, Double> e : total.entrySet()) {
+            Assertions.assertEquals(e.getValue(), business.get(e.getKey()) + leisure.get(e.getKey()), 1e-9, "Volume of " + e.getKey());
+        }
+    }
+
+    /**
+     * @return the volume of each train section, by operator, departure, index and stop
+     */
+    private static Map<String, Double> readBlpVolumes(Path file) throws IOException {
+        Map<String, Double> volumes = new HashMap<>();
+        List<String> lines = Files.readAllLines(file);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.replace("\"", "").split(",");
+            volumes.put(values[0] + " " + values[1] + " " + values[3] + " " + values[7], Double.parseDouble(values[11]));
+        }
+        return volumes;
+    }
+
+    static List<FoundRoute> runLausanneToGeneve(UmlegoParameters params) throws Exception {
+        return runLausanneToGeneve(params, List.of(), "");
+    }
+
+    /**
+     * Runs the assignment on a small network, where Lausanne is connected to two stops with demand to Geneve between 05:00 and 06:00.
+     *
+     * @param shares the share matrices of the demand segments
+     * @return the routes from Lausanne to Geneve
+     */
+    static List<FoundRoute> runLausanneToGeneve(UmlegoParameters params, List<ShareMatrix> shares, String outputFolder) throws Exception {
+        var fixture = new UmlegoFixture();
+        var geneve = fixture.buildStop("geneve", 2499812.38, 1118367.70);
+        var lausanne = fixture.buildStop("lausanne", 2532820.15, 1154661.65);
+        var morges = fixture.buildStop("morges", 2526657.37, 1150360.32);
+
+        fixture.buildLine("livio", List.of(lausanne, morges, geneve), List.of("00:00", "00:30", "01:00"), List.of("04:00", "05:00", "06:00", "08:00"));
+        fixture.buildLine("regio", List.of(morges, geneve), List.of("00:00", "00:20"), List.of("05:45", "06:45", "09:45"));
+        // the BLP identifies the trains by operator and departure, the departure ids of both lines are the same
+        for (TransitLine line : fixture.schedule.getTransitLines().values()) {
+            line.getAttributes().putAttribute("operatorCode", line.getId().toString());
+        }
+        fixture.config.controller().setRunId("lausanne");
+
+        String LAUSANNE = "Lausanne";
+        String GENEVE = "Geneve";
+
+        var zones = new Zones(List.of(new Zone(GENEVE, GENEVE, "CH"), new Zone(LAUSANNE, LAUSANNE, "CH")));
+        // the zones are indexed by their sorted number, Geneve is 0 and Lausanne is 1
+        double[][] m = {{0, 0}, {10, 0}};
+        List<AbstractMatrix> matrices = new ArrayList<>(shares);
+        matrices.add(new DemandMatrix(5 * 60, 6 * 60, m));
+        final Matrices demand = new Matrices(matrices, zones, zones.createDefaultZonesLookup());
+
+        Map<String, List<ConnectedStop>> stopsPerZone = new HashMap<>();
+        stopsPerZone.put(GENEVE, List.of(new ConnectedStop(GENEVE, 0, geneve)));
+        stopsPerZone.put(LAUSANNE, List.of(new ConnectedStop(LAUSANNE, 0, lausanne), new ConnectedStop(LAUSANNE, 600, morges)));
+
+        var umlego = new Umlego(demand, new AssignmentWorkflowFactory(demand, stopsPerZone, fixture.scenario));
+        var listener = new UmlegoITListener(LAUSANNE, GENEVE);
+        umlego.addListener(listener);
+        umlego.run(params, 1, outputFolder);
+        return listener.routes;
+    }
+
+    private static Map<String, Double> demandPerRoute(List<FoundRoute> routes) {
+        Map<String, Double> demand = new HashMap<>();
+        for (FoundRoute r : routes) {
+            demand.merge(r.stop2stopRoute.originStop.getId() + " " + r.stop2stopRoute.getRouteAsString(), r.demand, Double::sum);
+        }
+        return demand;
+    }
+
+    /**
+     * @return the routes with their demand, in a sorted order to compare the results of two runs
+     */
+    static List<String> describe(List<FoundRoute> routes) {
+        return routes.stream()
+            .map(r -> String.format(Locale.US, "%s %.0f %s %.6f", r.stop2stopRoute.originStop.getId(), r.stop2stopRoute.depTime,
+                r.stop2stopRoute.getRouteAsString(), r.demand))
+            .sorted()
+            .toList();
+    }
+
+}
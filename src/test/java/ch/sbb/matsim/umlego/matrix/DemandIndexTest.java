@@ -0,0 +1,32 @@
+package ch.sbb.matsim.umlego.matrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DemandIndexTest {
+
+    @Test
+    void indexNonZeroCells() {
+        DemandMatrix m1 = new DemandMatrix(0, 10, new double[][]{{0, 1, 0}, {0, 0, 0}, {2, 0, 0}});
+        DemandMatrix m2 = new DemandMatrix(10, 20, new double[][]{{0, 3, 4}, {0, 0, 0}, {0, 0, 0}});
+
+        DemandIndex index = DemandIndex.create(List.of(m1, m2));
+
+        assertThat(index.size()).isEqualTo(3);
+
+        DemandIndex.OriginDemand origin0 = index.origin(0);
+        assertThat(origin0.size()).isEqualTo(2);
+        assertThat(origin0.destination(0)).isEqualTo(1);
+        assertThat(origin0.windowsEnd(0) - origin0.windowsStart(0)).isEqualTo(2);
+        assertThat(origin0.window(origin0.windowsStart(0))).isEqualTo(0);
+        assertThat(origin0.window(origin0.windowsStart(0) + 1)).isEqualTo(1);
+        assertThat(origin0.destination(1)).isEqualTo(2);
+        assertThat(origin0.window(origin0.windowsStart(1))).isEqualTo(1);
+
+        assertThat(index.origin(1).size()).isZero();
+        assertThat(index.origin(2).destination(0)).isZero();
+        assertThat(index.origin(5).size()).isZero();
+    }
+}
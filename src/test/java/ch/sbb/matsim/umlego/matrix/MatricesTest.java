@@ -91,6 +91,21 @@ class MatricesTest {
         assertMatricesEqual(expectedMatrix2, matrices.getDemandMatrix(new TimeWindow(20 , 30 )).getData());
     }
 
+    @Test
+    void testShareMatricesInSegmentOrder() throws ZoneNotFoundException {
+        double[][] demand = {{0, 1, 1}, {1, 0, 1}, {1, 1, 0}};
+        ShareMatrix leisure = new ShareMatrix("leisure", new double[][]{{0, 0.75, 0.5}, {0.75, 0, 0.5}, {0.5, 0.5, 0}});
+        ShareMatrix business = new ShareMatrix("business", new double[][]{{0, 0.25, 0.5}, {0.25, 0, 0.5}, {0.5, 0.5, 0}});
+        Matrices matrices = new Matrices(List.of(leisure, new DemandMatrix(0, 60, demand), business), zones, zones.createDefaultZonesLookup());
+
+        assertEquals(List.of("business", "leisure"), matrices.getSegments());
+        List<ShareMatrix> shareMatrices = matrices.getShareMatrices();
+        assertEquals(2, shareMatrices.size());
+        assertTrue(shareMatrices.get(0) == business);
+        assertTrue(shareMatrices.get(1) == leisure);
+        assertEquals(0.25, matrices.getShareMatrixValue("business", "1", "2"), 0.0);
+    }
+
     private static Path createCSVFile(Path filePath) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filePath.toFile()))) {
             writer.println("from,to,value");
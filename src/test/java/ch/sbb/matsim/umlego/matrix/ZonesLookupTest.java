@@ -32,6 +32,14 @@ class ZonesLookupTest {
         assertEquals(3, lookup.getIndex("2374"));
     }
 
+    @Test
+    void testZoneNoByIndex() {
+        for (int i = 0; i < zonesLookup.size(); i++) {
+            assertEquals(i, zonesLookup.getIndex(zonesLookup.getZoneNo(i)));
+        }
+        assertEquals("2372", zonesLookup.getZoneNo(1));
+    }
+
     @Test
     void testInvalidIndex() {
         // Test handling of invalid index
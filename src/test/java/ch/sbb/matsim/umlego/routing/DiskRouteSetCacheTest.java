@@ -0,0 +1,164 @@
+package ch.sbb.matsim.umlego.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.umlego.Connectors.ConnectedStop;
+import ch.sbb.matsim.umlego.RouteArena;
+import ch.sbb.matsim.umlego.RouteLeg;
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import ch.sbb.matsim.umlego.TestRoutes;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+class DiskRouteSetCacheTest {
+
+    private final TestRoutes fixture = new TestRoutes();
+    private final TransitSchedule schedule = this.fixture.schedule;
+    private final RouteArena arena = this.fixture.arena;
+
+    private final TransitStopFacility stopA = this.fixture.stop("A", 0);
+    private final TransitStopFacility stopB = this.fixture.stop("B", 1000);
+    private final TransitStopFacility stopC = this.fixture.stop("C", 1100);
+    private final TransitRoute transitRoute = this.fixture.transitRoute("L", "R", this.stopA, this.stopB);
+
+    private final Map<String, List<ConnectedStop>> stopsPerZone = Map.of(
+        "1", List.of(new ConnectedStop("1", 120, this.stopA)),
+        "2", List.of(new ConnectedStop("2", 60, this.stopB), new ConnectedStop("2", 180, this.stopC)));
+    private final IntSet destinationStops = new IntOpenHashSet(new int[]{this.stopB.getId().index(), this.stopC.getId().index()});
+
+    DiskRouteSetCacheTest() {
+        this.fixture.addDeparture(this.transitRoute, "D1", 8 * 3600);
+    }
+
+    @Test
+    void loadStoredRoutes(@TempDir Path directory) {
+        var cache = createCache(directory);
+        var direct = new Stop2StopRoute(this.arena, List.of(ride(8 * 3600)), this.stopB);
+        var withTransfer = new Stop2StopRoute(this.arena, List.of(ride(8 * 3600),
+            this.fixture.walk(this.stopB, this.stopC, 8 * 3600 + 600, 8 * 3600 + 720, 100)), this.stopC);
+
+        assertThat(cache.load(this.stopA)).isNull();
+        cache.store(this.stopA, List.of(direct, withTransfer));
+
+        // a new instance only finds the routes on disk
+        List<Stop2StopRoute> loaded = createCache(directory).load(this.stopA);
+        assertThat(loaded).containsExactly(direct, withTransfer);
+        Stop2StopRoute loadedTransfer = loaded.get(1);
+        assertThat(loadedTransfer.legCount()).isEqualTo(2);
+        assertThat(loadedTransfer.isTransferLeg(1)).isTrue();
+        assertThat(loadedTransfer.legMode(1)).isEqualTo("walk");
+        assertThat(loadedTransfer.legArrivalTime(1)).isEqualTo(8 * 3600 + 720);
+        assertThat(loadedTransfer.legDistance(1)).isEqualTo(100);
+    }
+
+    @Test
+    void unknownIdIsMiss(@TempDir Path directory) {
+        var cache = createCache(directory);
+        cache.store(this.stopA, List.of(new Stop2StopRoute(this.arena, List.of(ride(8 * 3600),
+            this.fixture.walk(this.stopB, this.stopC, 8 * 3600 + 600, 8 * 3600 + 720, 100)), this.stopC)));
+
+        this.schedule.removeStopFacility(this.stopC);
+
+        assertThat(cache.load(this.stopA)).isNull();
+    }
+
+    @Test
+    void unregisteredIdIsMiss(@TempDir Path directory) throws IOException {
+        var cache = createCache(directory);
+        cache.store(this.stopA, List.of());
+
+        String stopId = "never-created-stop";
+        Path file = cacheFile(directory);
+        byte[] header = Arrays.copyOf(Files.readAllBytes(file), 8);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(header);
+            out.writeInt(1);
+            out.writeUTF(stopId);
+        }
+
+        assertThat(cache.load(this.stopA)).isNull();
+        assertThat(Id.get(stopId, TransitStopFacility.class)).isNull();
+    }
+
+    @Test
+    void truncatedFileIsMiss(@TempDir Path directory) throws IOException {
+        var cache = createCache(directory);
+        cache.store(this.stopA, List.of(new Stop2StopRoute(this.arena, List.of(ride(8 * 3600)), this.stopB)));
+
+        Path file = cacheFile(directory);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 4));
+        assertThat(cache.load(this.stopA)).isNull();
+
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThat(cache.load(this.stopA)).isNull();
+    }
+
+    @Test
+    void failedStoreIsMiss(@TempDir Path directory) throws IOException {
+        var cache = createCache(directory);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+
+        cache.store(this.stopA, List.of(new Stop2StopRoute(this.arena, List.of(ride(8 * 3600)), this.stopB)));
+
+        assertThat(cache.load(this.stopA)).isNull();
+    }
+
+    @Test
+    void changedInputsChangeFingerprint() {
+        RaptorParameters raptorParams = RaptorUtils.createParameters(this.fixture.config);
+        String fingerprint = fingerprint(this.stopsPerZone, raptorParams);
+        assertThat(fingerprint(this.stopsPerZone, raptorParams)).isEqualTo(fingerprint);
+
+        var changedConnectors = Map.of(
+            "1", List.of(new ConnectedStop("1", 120, this.stopA)),
+            "2", List.of(new ConnectedStop("2", 60, this.stopB), new ConnectedStop("2", 240, this.stopC)));
+        assertThat(fingerprint(changedConnectors, raptorParams)).isNotEqualTo(fingerprint);
+
+        RaptorParameters changedParams = RaptorUtils.createParameters(this.fixture.config);
+        changedParams.setMarginalUtilityOfTravelTime_utl_s(TransportMode.pt, 2 * raptorParams.getMarginalUtilityOfTravelTime_utl_s(TransportMode.pt) - 1);
+        assertThat(fingerprint(this.stopsPerZone, changedParams)).isNotEqualTo(fingerprint);
+
+        this.fixture.addDeparture(this.transitRoute, "D2", 9 * 3600);
+        assertThat(fingerprint(this.stopsPerZone, raptorParams)).isNotEqualTo(fingerprint);
+    }
+
+    private DiskRouteSetCache createCache(Path directory) {
+        return DiskRouteSetCache.create(directory.toString(), this.schedule, this.arena, this.stopsPerZone, this.destinationStops, 3,
+            RaptorUtils.createParameters(this.fixture.config));
+    }
+
+    private static Path cacheFile(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(path -> path.toString().endsWith(".bin")).findFirst().orElseThrow();
+        }
+    }
+
+    private String fingerprint(Map<String, List<ConnectedStop>> stopsPerZone, RaptorParameters raptorParams) {
+        return RouteSetFingerprint.compute(this.schedule, stopsPerZone, this.destinationStops, 3, raptorParams);
+    }
+
+    private RouteLeg ride(double depTime) {
+        return this.fixture.ride(this.stopA, this.stopB, this.transitRoute, depTime, depTime, depTime + 600, 1000);
+    }
+}
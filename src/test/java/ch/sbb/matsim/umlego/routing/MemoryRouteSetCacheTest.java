@@ -0,0 +1,70 @@
+package ch.sbb.matsim.umlego.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.umlego.Stop2StopRoute;
+import ch.sbb.matsim.umlego.TestRoutes;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+class MemoryRouteSetCacheTest {
+
+    private final TestRoutes fixture = new TestRoutes();
+
+    @Test
+    void loadStoredRoutes() {
+        var cache = new MemoryRouteSetCache(10, new IntOpenHashSet(), null);
+        var stop = createStop("A");
+
+        assertThat(cache.load(stop)).isNull();
+        cache.store(stop, routes(stop, 2));
+
+        assertThat(cache.load(stop)).hasSize(2);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        var cache = new MemoryRouteSetCache(4, new IntOpenHashSet(), null);
+        var stopA = createStop("A");
+        var stopB = createStop("B");
+        var stopC = createStop("C");
+
+        cache.store(stopA, routes(stopA, 2));
+        cache.store(stopB, routes(stopB, 2));
+        // access A, so B is the least recently used
+        assertThat(cache.load(stopA)).isNotNull();
+        cache.store(stopC, routes(stopC, 2));
+
+        assertThat(cache.load(stopA)).isNotNull();
+        assertThat(cache.load(stopB)).isNull();
+        assertThat(cache.load(stopC)).isNotNull();
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    void useDelegateOnMiss() {
+        var delegate = new MemoryRouteSetCache(10, new IntOpenHashSet(), null);
+        var cache = new MemoryRouteSetCache(10, new IntOpenHashSet(), delegate);
+        var stop = createStop("A");
+
+        delegate.store(stop, routes(stop, 3));
+
+        assertThat(cache.load(stop)).hasSize(3);
+        assertThat(cache.getMisses()).isZero();
+        assertThat(cache.load(stop)).hasSize(3);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    private TransitStopFacility createStop(String id) {
+        return this.fixture.stop(id, 0);
+    }
+
+    private List<Stop2StopRoute> routes(TransitStopFacility destinationStop, int count) {
+        return IntStream.range(0, count).mapToObj(i -> this.fixture.route(destinationStop)).toList();
+    }
+}
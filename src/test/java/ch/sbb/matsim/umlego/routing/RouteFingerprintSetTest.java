@@ -0,0 +1,32 @@
+package ch.sbb.matsim.umlego.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class RouteFingerprintSetTest {
+
+    @Test
+    void addOnlyOnce() {
+        var set = new RouteFingerprintSet(4);
+
+        assertThat(set.add(1, 2, 42L)).isTrue();
+        assertThat(set.add(1, 2, 42L)).isFalse();
+        assertThat(set.add(2, 1, 42L)).isTrue();
+        assertThat(set.add(1, 2, 43L)).isTrue();
+        assertThat(set.size()).isEqualTo(3);
+    }
+
+    @Test
+    void growBeyondExpectedSize() {
+        var set = new RouteFingerprintSet(4);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(set.add(i % 7, i % 13, i * 31L)).isTrue();
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(set.add(i % 7, i % 13, i * 31L)).isFalse();
+        }
+        assertThat(set.size()).isEqualTo(10_000);
+    }
+}
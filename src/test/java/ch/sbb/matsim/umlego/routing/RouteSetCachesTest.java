@@ -0,0 +1,28 @@
+package ch.sbb.matsim.umlego.routing;
+
+import static ch.sbb.matsim.umlego.it.UmlegoFixture.createUmlegoParameters;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.sbb.matsim.umlego.TestRoutes;
+import ch.sbb.matsim.umlego.config.RoutePostprocessing;
+import ch.sbb.matsim.umlego.config.RouteSearchMode;
+import ch.sbb.matsim.umlego.config.RoutingParameters;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RouteSetCachesTest {
+
+    private final TestRoutes fixture = new TestRoutes();
+
+    @Test
+    void noCacheForZoneSearch() {
+        assertThat(create(RouteSearchMode.STOP)).isInstanceOf(MemoryRouteSetCache.class);
+        assertThat(create(RouteSearchMode.ZONE)).isNull();
+    }
+
+    private RouteSetCache create(RouteSearchMode searchMode) {
+        var params = createUmlegoParameters(new RoutingParameters("", 1000, false, 0, searchMode, false, RoutePostprocessing.STAGED));
+        return RouteSetCaches.create(params, this.fixture.schedule, this.fixture.arena, Map.of(), IntSet.of(), null);
+    }
+}
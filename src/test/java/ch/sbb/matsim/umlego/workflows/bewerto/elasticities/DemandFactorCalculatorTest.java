@@ -12,6 +12,7 @@ import ch.sbb.matsim.umlego.matrix.Matrices;
 import ch.sbb.matsim.umlego.matrix.ShareMatrix;
 import ch.sbb.matsim.umlego.matrix.Zones;
 import ch.sbb.matsim.umlego.matrix.ZonesLookup;
+import ch.sbb.matsim.umlego.skims.SkimBlock;
 import ch.sbb.matsim.umlego.workflows.bewerto.BewertoWorkResult;
 import ch.sbb.matsim.umlego.workflows.bewerto.config.ElasticitiesParameters;
 import java.util.HashMap;
@@ -29,6 +30,7 @@ class DemandFactorCalculatorTest {
 
     private ElasticitiesParameters params;
     private DemandFactorCalculator calculator;
+    private ZonesLookup zonesLookup;
     private Map<String, Map<String, double[]>> baseSkims;
     private Map<String, Map<String, double[]>> variantSkims;
 
@@ -60,9 +62,9 @@ class DemandFactorCalculatorTest {
         zoneLookupData.put("zone1", 0);
         zoneLookupData.put("zone2", 1);
         zoneLookupData.put("zone3", 2);
-        var zonesLookUp = new ZonesLookup(zoneLookupData);
+        zonesLookup = new ZonesLookup(zoneLookupData);
 
-        var matrices = new Matrices(List.of(matrix), mockLookup, zonesLookUp);
+        var matrices = new Matrices(List.of(matrix), mockLookup, zonesLookup);
 
         // Create the calculator
         calculator = new DemandFactorCalculator(params, matrices);
@@ -222,4 +224,26 @@ class DemandFactorCalculatorTest {
             .hasSize(3);
 
     }
+
+    @Test
+    void createMultiplier_fromSkimBlocks_shouldMatchMaps() {
+        SkimBlock base = new SkimBlock(zonesLookup, 7);
+        SkimBlock variant = new SkimBlock(zonesLookup, 7);
+        for (String zone : List.of("zone2", "zone3")) {
+            int index = zonesLookup.getIndex(zone);
+            for (int skim = 0; skim < 7; skim++) {
+                base.set(index, skim, baseSkims.get("zone1").get(zone)[skim]);
+                variant.set(index, skim, variantSkims.get("zone1").get(zone)[skim]);
+            }
+        }
+
+        DemandMatrixMultiplier fromBlocks = calculator.createMultiplier(base, variant);
+        DemandMatrixMultiplier fromMaps = calculator.createMultiplier(baseSkims.get("zone1"), variantSkims.get("zone1"));
+
+        for (String zone : List.of("zone2", "zone3")) {
+            assertThat(fromBlocks.getFactor("zone1", zone, 0)).isEqualTo(fromMaps.getFactor("zone1", zone, 0));
+        }
+        // no skims to the origin zone itself
+        assertThat(fromBlocks.getFactor("zone1", "zone1", 0)).isEqualTo(1.0);
+    }
 }